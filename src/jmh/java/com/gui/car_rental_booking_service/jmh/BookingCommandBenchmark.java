@@ -0,0 +1,57 @@
+package com.gui.car_rental_booking_service.jmh;
+
+import com.gui.car_rental_booking_service.entities.Booking;
+import com.gui.car_rental_booking_service.service.BookingDateValidator;
+import com.gui.car_rental_booking_service.service.BookingMapper;
+import com.gui.car_rental_common.commands.BookingCreationCommand;
+import com.gui.car_rental_common.dtos.BookingDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU side of handling a creation command before it reaches the database: validating the rental window and
+ * mapping the command onto a new {@link Booking}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BookingCommandBenchmark {
+
+    private LocalDate today;
+    private BookingDto bookingDto;
+    private BookingCreationCommand command;
+
+    @Setup
+    public void setUp() {
+        today = LocalDate.now();
+        bookingDto = BookingFixtures.bookingDto(today);
+        command = new BookingCreationCommand(UUID.randomUUID(), bookingDto);
+    }
+
+    @Benchmark
+    public void validateDate(Blackhole blackhole) {
+        BookingDateValidator.validate(bookingDto);
+        blackhole.consume(bookingDto);
+    }
+
+    @Benchmark
+    public void validateDateWithFixedToday(Blackhole blackhole) {
+        BookingDateValidator.validate(bookingDto, today);
+        blackhole.consume(bookingDto);
+    }
+
+    @Benchmark
+    public Booking mapFromCommand() {
+        return BookingMapper.fromCommand(command, new Booking(), bookingDto.getAmount());
+    }
+}
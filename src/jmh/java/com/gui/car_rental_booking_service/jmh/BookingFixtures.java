@@ -0,0 +1,37 @@
+package com.gui.car_rental_booking_service.jmh;
+
+import com.gui.car_rental_common.dtos.BookingDto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Payloads shaped like a typical creation command, shared by the benchmarks.
+ */
+final class BookingFixtures {
+
+    static final String COMMANDS_TOPIC = "rental-saga-booking-commands";
+    static final String EVENTS_TOPIC = "rental-saga-booking-events";
+
+    private BookingFixtures() {
+    }
+
+    static BookingDto bookingDto(LocalDate today) {
+        BookingDto dto = new BookingDto();
+        dto.setBookingId(UUID.randomUUID());
+        dto.setCarId(UUID.randomUUID());
+        dto.setUserId(UUID.randomUUID());
+        dto.setEmail("customer@example.com");
+        dto.setPricePerDay(new BigDecimal("89.90"));
+        dto.setAmount(new BigDecimal("359.60"));
+        dto.setRentalStartDate(today.plusDays(3).atTime(10, 0));
+        dto.setRentalEndDate(today.plusDays(7).atTime(10, 0));
+        return dto;
+    }
+
+    static LocalDateTime at(LocalDate day) {
+        return day.atTime(10, 0);
+    }
+}
@@ -0,0 +1,84 @@
+package com.gui.car_rental_booking_service.jmh;
+
+import com.gui.car_rental_common.commands.BookingCreationCommand;
+import com.gui.car_rental_common.events.booking.BookingCreatedEvent;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JSON path every saga message takes today: the producer's {@link JsonSerializer} with type headers and the
+ * consumer's {@link JsonDeserializer} resolving them. The deserializer removes the type headers it read, so
+ * each decode works on a fresh copy, as a consumed record would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BookingJsonBenchmark {
+
+    private JsonSerializer<Object> serializer;
+    private JsonDeserializer<Object> deserializer;
+    private BookingCreationCommand command;
+    private BookingCreatedEvent event;
+    private byte[] commandBytes;
+    private RecordHeaders commandHeaders;
+    private byte[] eventBytes;
+    private RecordHeaders eventHeaders;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> configs = Map.of(JsonDeserializer.TRUSTED_PACKAGES, "com.gui.car_rental_common.*");
+        serializer = new JsonSerializer<>();
+        serializer.configure(configs, false);
+        deserializer = new JsonDeserializer<>();
+        deserializer.configure(configs, false);
+
+        command = new BookingCreationCommand(UUID.randomUUID(), BookingFixtures.bookingDto(LocalDate.now()));
+        event = new BookingCreatedEvent(UUID.randomUUID(), BookingFixtures.bookingDto(LocalDate.now()));
+        commandHeaders = new RecordHeaders();
+        commandBytes = serializer.serialize(BookingFixtures.COMMANDS_TOPIC, commandHeaders, command);
+        eventHeaders = new RecordHeaders();
+        eventBytes = serializer.serialize(BookingFixtures.EVENTS_TOPIC, eventHeaders, event);
+    }
+
+    @TearDown
+    public void tearDown() {
+        serializer.close();
+        deserializer.close();
+    }
+
+    @Benchmark
+    public byte[] serializeCreationCommand() {
+        return serializer.serialize(BookingFixtures.COMMANDS_TOPIC, new RecordHeaders(), command);
+    }
+
+    @Benchmark
+    public Object deserializeCreationCommand() {
+        return deserializer.deserialize(BookingFixtures.COMMANDS_TOPIC, new RecordHeaders(commandHeaders.toArray()),
+                commandBytes);
+    }
+
+    @Benchmark
+    public byte[] serializeCreatedEvent() {
+        return serializer.serialize(BookingFixtures.EVENTS_TOPIC, new RecordHeaders(), event);
+    }
+
+    @Benchmark
+    public Object deserializeCreatedEvent() {
+        return deserializer.deserialize(BookingFixtures.EVENTS_TOPIC, new RecordHeaders(eventHeaders.toArray()),
+                eventBytes);
+    }
+}
@@ -0,0 +1,71 @@
+package com.gui.car_rental_booking_service.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link LocalDate}/{@link LocalDateTime} conversions on the hot path: truncating the rental window to days
+ * for validation, reading today's date, binding to and reading from JDBC, and the ISO text JSON carries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DateConversionBenchmark {
+
+    private LocalDateTime rentalStart;
+    private Timestamp timestamp;
+    private String isoText;
+
+    @Setup
+    public void setUp() {
+        rentalStart = BookingFixtures.at(LocalDate.now().plusDays(3));
+        timestamp = Timestamp.valueOf(rentalStart);
+        isoText = DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(rentalStart);
+    }
+
+    @Benchmark
+    public LocalDate toLocalDate() {
+        return rentalStart.toLocalDate();
+    }
+
+    @Benchmark
+    public LocalDate today() {
+        return LocalDate.now();
+    }
+
+    @Benchmark
+    public LocalDateTime plusMonths() {
+        return rentalStart.plusMonths(2);
+    }
+
+    @Benchmark
+    public Timestamp toTimestamp() {
+        return Timestamp.valueOf(rentalStart);
+    }
+
+    @Benchmark
+    public LocalDateTime fromTimestamp() {
+        return timestamp.toLocalDateTime();
+    }
+
+    @Benchmark
+    public String formatIso() {
+        return DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(rentalStart);
+    }
+
+    @Benchmark
+    public LocalDateTime parseIso() {
+        return LocalDateTime.parse(isoText);
+    }
+}
@@ -0,0 +1,81 @@
+package com.gui.car_rental_booking_service.jmh;
+
+import com.gui.car_rental_booking_service.service.PricingEngine;
+import com.gui.car_rental_booking_service.service.RateCalendar;
+import com.gui.car_rental_common.dtos.BookingDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Quoting a rental with {@link PricingEngine}, against multiplying {@link BigDecimal}s day by day. Run with
+ * {@code -prof gc}; {@code gc.alloc.rate.norm} is the bytes allocated per quote.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PricingBenchmark {
+
+    @Param({"4", "28"})
+    private int rentalDays;
+
+    private PricingEngine pricingEngine;
+    private BookingDto bookingDto;
+    private long pricePerDayMinor;
+    private BigDecimal weekendMultiplier;
+
+    @Setup
+    public void setUp() {
+        LocalDate today = LocalDate.now();
+        bookingDto = BookingFixtures.bookingDto(today);
+        bookingDto.setRentalEndDate(bookingDto.getRentalStartDate().plusDays(rentalDays));
+        weekendMultiplier = new BigDecimal("1.25");
+        pricingEngine = new PricingEngine(BigDecimal.ONE, "", "");
+        pricingEngine.setRateCalendar(bookingDto.getCarId(), RateCalendar.of(weekendMultiplier,
+                List.of(RateCalendar.Season.parse("06-15/09-15:1.4"), RateCalendar.Season.parse("12-20/01-05:1.3"))));
+        pricePerDayMinor = bookingDto.getPricePerDay().movePointRight(2).longValueExact();
+    }
+
+    @Benchmark
+    public long quoteMinor() {
+        return pricingEngine.quoteMinor(bookingDto.getCarId(), pricePerDayMinor, bookingDto.getRentalStartDate(),
+                bookingDto.getRentalEndDate());
+    }
+
+    @Benchmark
+    public BigDecimal quote() {
+        return pricingEngine.quote(bookingDto);
+    }
+
+    /**
+     * The weekend rule alone, done the straightforward way.
+     */
+    @Benchmark
+    public BigDecimal bigDecimalPerDay() {
+        BigDecimal total = BigDecimal.ZERO;
+        LocalDate day = bookingDto.getRentalStartDate().toLocalDate();
+        long minutes = Duration.between(bookingDto.getRentalStartDate(), bookingDto.getRentalEndDate()).toMinutes();
+        long days = Math.max(1, (minutes + 1439) / 1440);
+        for (long i = 0; i < days; i++, day = day.plusDays(1)) {
+            BigDecimal price = bookingDto.getPricePerDay();
+            if (day.getDayOfWeek().getValue() >= 6) {
+                price = price.multiply(weekendMultiplier);
+            }
+            total = total.add(price);
+        }
+        return total.setScale(2, RoundingMode.HALF_UP);
+    }
+}
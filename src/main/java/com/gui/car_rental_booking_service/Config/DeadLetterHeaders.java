@@ -0,0 +1,69 @@
+package com.gui.car_rental_booking_service.Config;
+
+import com.gui.car_rental_booking_service.service.BookingService;
+import com.gui.car_rental_common.commands.BookingCreationCommand;
+import com.gui.car_rental_common.commands.CancelBookingCommand;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.kafka.support.serializer.DeserializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Headers added to saga commands sent to the dead-letter topic, next to the {@code kafka_dlt-*} ones of
+ * {@link org.springframework.kafka.listener.DeadLetterPublishingRecoverer} (original topic, partition, offset and
+ * timestamp, exception class, message and stack trace), so an operator can triage them without decoding the value:
+ * <ul>
+ *     <li>{@value #FAILURE}: {@code deserialization}, {@code transient} or {@code terminal}</li>
+ *     <li>{@value #COMMAND_TYPE}: the command class, when the value could be read</li>
+ *     <li>{@value #SAGA_ID}: the saga the command belongs to, when the value could be read</li>
+ * </ul>
+ */
+public final class DeadLetterHeaders {
+
+    public static final String FAILURE = "booking-dlt-failure";
+    public static final String COMMAND_TYPE = "booking-dlt-command-type";
+    public static final String SAGA_ID = "booking-dlt-saga-id";
+
+    private DeadLetterHeaders() {
+    }
+
+    public static Headers of(ConsumerRecord<?, ?> record, Exception failure) {
+        Headers headers = new RecordHeaders();
+        headers.add(FAILURE, bytes(failureKind(failure)));
+        Object value = record.value();
+        if (value != null && !(value instanceof byte[])) {
+            headers.add(COMMAND_TYPE, bytes(value.getClass().getName()));
+        }
+        UUID sagaId = sagaId(value);
+        if (sagaId != null) {
+            headers.add(SAGA_ID, bytes(sagaId.toString()));
+        }
+        return headers;
+    }
+
+    private static String failureKind(Exception failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DeserializationException) {
+                return "deserialization";
+            }
+        }
+        return BookingService.isTransient(failure) ? "transient" : "terminal";
+    }
+
+    private static UUID sagaId(Object value) {
+        if (value instanceof BookingCreationCommand command) {
+            return command.getSagaTransactionId();
+        }
+        if (value instanceof CancelBookingCommand command) {
+            return command.getSagaTransactionId();
+        }
+        return null;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,29 @@
+package com.gui.car_rental_booking_service.Config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Turns on JDBC batching so {@code saveAll} of a polled command batch goes out as batched inserts.
+ * On MySQL the JDBC URL also needs {@code rewriteBatchedStatements=true} for the driver to collapse
+ * them into multi-row statements.
+ */
+@Configuration
+public class JpaConfig {
+
+    @Value("${booking.jpa.batch-size:50}")
+    private int batchSize;
+
+    @Bean
+    public HibernatePropertiesCustomizer jdbcBatchingCustomizer() {
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_BATCH_SIZE, batchSize);
+            properties.put(AvailableSettings.ORDER_INSERTS, true);
+            properties.put(AvailableSettings.ORDER_UPDATES, true);
+            properties.put(AvailableSettings.BATCH_VERSIONED_DATA, true);
+        };
+    }
+}
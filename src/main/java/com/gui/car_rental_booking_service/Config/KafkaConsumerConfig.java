@@ -1,37 +1,100 @@
 package com.gui.car_rental_booking_service.Config;
 
+import com.gui.car_rental_booking_service.serde.BookingBinaryDeserializer;
+import com.gui.car_rental_booking_service.service.BookingService;
+import com.gui.car_rental_booking_service.service.KeyedCommandDispatcher;
 import com.gui.car_rental_common.commands.BookingCreationCommand;
 import com.gui.car_rental_common.commands.ReserveCarCommand;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.util.backoff.ExponentialBackOff;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Listener container factories for the saga command topic.
+ * <p>
+ * {@code booking.kafka.listener.mode} selects which listener consumes
+ * {@code rental-saga-booking-commands}: {@code record} (default) dispatches one record at a time to the
+ * {@code @KafkaHandler}s in {@code BookingService}, {@code batch} hands whole polls to
+ * {@code BookingCommandBatchListener} through
+ * {@link #batchKafkaListenerContainerFactory(DeadLetterPublishingRecoverer, ObjectProvider)}, {@code keyed} fans
+ * each poll out by car to {@code KeyedCommandListener} through
+ * {@link #keyedKafkaListenerContainerFactory(KeyedCommandDispatcher)}.
+ * <p>
+ * With {@code spring.threads.virtual.enabled=true} on Java 21+, the listener consumers run on virtual threads,
+ * like Tomcat and the scheduler do under that property. {@code booking.kafka.listener.concurrency} can then
+ * go up to the partition count cheaply. {@code DatabaseBulkhead} keeps the extra consumers from running more
+ * commands against the database than the connection pool serves.
+ * <p>
+ * Values are read with {@link BookingBinaryDeserializer}, which accepts the compact binary format as well as
+ * JSON, behind an {@link ErrorHandlingDeserializer}: a value it can't read reaches the listener as a record
+ * without value, carrying the failure in a header, instead of failing every poll of its partition. Such records
+ * and commands that keep failing end up on {@code rental-saga-booking-commands-dlt}; see
+ * {@link #deadLetterPublishingRecoverer(KafkaTemplate)}.
+ */
 @Configuration
 public class KafkaConsumerConfig {
 
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
+    @Value("${booking.kafka.batch.max-poll-records:500}")
+    private int batchMaxPollRecords;
+
+    @Value("${booking.kafka.listener.concurrency:1}")
+    private int listenerConcurrency;
+
+    @Value("${booking.kafka.keyed.idle-commit-interval-ms:1000}")
+    private long keyedIdleCommitIntervalMs;
+
+    @Value("${booking.kafka.keyed.drain-timeout-ms:10000}")
+    private long keyedDrainTimeoutMs;
+
+    @Value("${booking.kafka.retry.attempts:4}")
+    private int retryAttempts;
+
+    @Value("${booking.kafka.retry.delay-ms:1000}")
+    private long retryDelayMs;
+
+    @Value("${booking.kafka.retry.multiplier:5}")
+    private double retryMultiplier;
+
+    @Value("${booking.kafka.retry.max-delay-ms:60000}")
+    private long retryMaxDelayMs;
+
+    private final Environment environment;
+
+    public KafkaConsumerConfig(Environment environment) {
+        this.environment = environment;
+    }
+
     @Bean
     public ConsumerFactory<String, Object> consumerFactory() {
-        Map<String, Object> props = new HashMap<>();
-        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, "booking-service-group");
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
-
-        props.put(JsonDeserializer.TRUSTED_PACKAGES, "com.gui.car_rental_common.*");
-        return new DefaultKafkaConsumerFactory<>(props);
+        return new DefaultKafkaConsumerFactory<>(consumerProps());
     }
 
     @Bean
@@ -39,7 +102,111 @@ public class KafkaConsumerConfig {
         ConcurrentKafkaListenerContainerFactory<String, Object> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        configureThreading(factory);
+        return factory;
+    }
+
+    @Bean
+    public ConsumerFactory<String, Object> batchConsumerFactory() {
+        Map<String, Object> props = consumerProps();
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchMaxPollRecords);
+        return new DefaultKafkaConsumerFactory<>(props);
+    }
+
+    /**
+     * Sends records to the {@code -dlt} topic of their topic, keeping the key so the producer picks the
+     * partition, with {@link DeadLetterHeaders} added. Used by the batch and keyed listeners; the {@code record}
+     * listener's retry topics set up their own from the same template in {@link KafkaRetryTopicConfig}.
+     */
+    @Bean
+    public DeadLetterPublishingRecoverer deadLetterPublishingRecoverer(KafkaTemplate<String, Object> kafkaTemplate) {
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate,
+                (record, exception) -> new TopicPartition(record.topic() + "-dlt", -1));
+        recoverer.addHeadersFunction(DeadLetterHeaders::of);
+        return recoverer;
+    }
+
+    /**
+     * Batch container whose error handler retries the remainder of a failed batch from the failed record,
+     * {@code booking.kafka.retry.attempts} times in all with the {@code booking.kafka.retry.*} backoff, before
+     * dead-lettering that record and answering its saga with the failure event of the command.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> batchKafkaListenerContainerFactory(
+            DeadLetterPublishingRecoverer deadLetterPublishingRecoverer,
+            ObjectProvider<BookingService> bookingService) {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(batchConsumerFactory());
+        factory.setBatchListener(true);
+        factory.setCommonErrorHandler(new DefaultErrorHandler((record, failure) -> {
+            deadLetterPublishingRecoverer.accept(record, failure);
+            bookingService.getObject().publishCommandFailed(record.value(), failure);
+        }, retryBackOff()));
+        configureThreading(factory);
+        return factory;
+    }
+
+    /**
+     * Batch container that leaves committing to {@code KeyedCommandListener}. Before partitions are revoked
+     * their in-flight records get {@code booking.kafka.keyed.drain-timeout-ms} to finish and whatever finished
+     * is committed, so the next owner doesn't redo it.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> keyedKafkaListenerContainerFactory(
+            KeyedCommandDispatcher dispatcher) {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(batchConsumerFactory());
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setIdleEventInterval(keyedIdleCommitIntervalMs);
+        factory.getContainerProperties().setConsumerRebalanceListener(new ConsumerAwareRebalanceListener() {
+            @Override
+            public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                dispatcher.drain(partitions, Duration.ofMillis(keyedDrainTimeoutMs));
+                Map<TopicPartition, OffsetAndMetadata> offsets = dispatcher.committableOffsets(partitions);
+                if (!offsets.isEmpty()) {
+                    consumer.commitSync(offsets);
+                }
+                dispatcher.forget(partitions);
+            }
+
+            @Override
+            public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                dispatcher.forget(partitions);
+            }
+        });
+        configureThreading(factory);
         return factory;
     }
 
+    private void configureThreading(ConcurrentKafkaListenerContainerFactory<String, Object> factory) {
+        factory.setConcurrency(listenerConcurrency);
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("booking-kafka-");
+            executor.setVirtualThreads(true);
+            factory.getContainerProperties().setListenerTaskExecutor(executor);
+        }
+    }
+
+    private ExponentialBackOff retryBackOff() {
+        ExponentialBackOff backOff = new ExponentialBackOff(retryDelayMs, retryMultiplier);
+        backOff.setMaxInterval(retryMaxDelayMs);
+        backOff.setMaxAttempts(retryAttempts - 1);
+        return backOff;
+    }
+
+    private Map<String, Object> consumerProps() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, "booking-service-group");
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
+        props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, BookingBinaryDeserializer.class);
+
+        props.put(JsonDeserializer.TRUSTED_PACKAGES, "com.gui.car_rental_common.*");
+        return props;
+    }
+
 }
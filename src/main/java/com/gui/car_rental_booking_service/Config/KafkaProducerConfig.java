@@ -1,5 +1,6 @@
 package com.gui.car_rental_booking_service.Config;
 
+import com.gui.car_rental_booking_service.serde.BookingBinarySerializer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
@@ -8,23 +9,62 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
-import org.springframework.kafka.support.serializer.JsonSerializer;
 
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Producer used by {@code OutboxRelay}. Idempotence with {@code acks=all} keeps broker-side retries from
+ * duplicating or reordering events; linger, batch size and compression let the relay's chunked sends leave as
+ * few, large requests. All of it can be tuned under {@code booking.kafka.producer.*}.
+ * <p>
+ * Topics listed in {@code booking.kafka.serde.binary-topics} get the compact binary encoding of
+ * {@link BookingBinarySerializer}; everything else stays JSON.
+ */
 @Configuration
 public class KafkaProducerConfig {
 
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
+    @Value("${booking.kafka.producer.enable-idempotence:true}")
+    private boolean enableIdempotence;
+
+    @Value("${booking.kafka.producer.acks:all}")
+    private String acks;
+
+    @Value("${booking.kafka.producer.linger-ms:20}")
+    private int lingerMs;
+
+    @Value("${booking.kafka.producer.batch-size:65536}")
+    private int batchSize;
+
+    @Value("${booking.kafka.producer.compression-type:lz4}")
+    private String compressionType;
+
+    @Value("${booking.kafka.producer.max-in-flight-requests-per-connection:5}")
+    private int maxInFlightRequestsPerConnection;
+
+    @Value("${booking.kafka.producer.delivery-timeout-ms:120000}")
+    private int deliveryTimeoutMs;
+
+    @Value("${booking.kafka.serde.binary-topics:}")
+    private String binaryTopics;
+
     @Bean
     public ProducerFactory<String, Object> producerFactory() {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, BookingBinarySerializer.class);
+        configProps.put(BookingBinarySerializer.BINARY_TOPICS, binaryTopics);
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, enableIdempotence);
+        configProps.put(ProducerConfig.ACKS_CONFIG, acks);
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        configProps.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, maxInFlightRequestsPerConnection);
+        configProps.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, deliveryTimeoutMs);
         return new DefaultKafkaProducerFactory<>(configProps);
     }
 
@@ -0,0 +1,18 @@
+package com.gui.car_rental_booking_service.Config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.retrytopic.RetryTopicConfigurationSupport;
+
+/**
+ * Infrastructure of the retry topics {@code @RetryableTopic} declares on {@code BookingService}. Records forwarded
+ * to a retry or the dead-letter topic carry {@link DeadLetterHeaders} besides Spring's own diagnostic headers.
+ */
+@Configuration
+public class KafkaRetryTopicConfig extends RetryTopicConfigurationSupport {
+
+    @Override
+    protected void configureCustomizers(CustomizersConfigurer customizersConfigurer) {
+        customizersConfigurer.customizeDeadLetterPublishingRecoverer(
+                recoverer -> recoverer.addHeadersFunction(DeadLetterHeaders::of));
+    }
+}
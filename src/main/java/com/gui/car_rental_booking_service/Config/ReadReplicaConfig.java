@@ -0,0 +1,105 @@
+package com.gui.car_rental_booking_service.Config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Offloads read-only transactions to read replicas when {@code booking.datasource.replica-urls} lists any
+ * (comma separated). Without it the single Boot-configured datasource is used as before.
+ * <p>
+ * The primary keeps its {@code spring.datasource.*} settings. Replicas share its credentials and driver and get
+ * pools of {@code booking.datasource.replica-pool-size} read-only connections; a replica that is down at startup
+ * doesn't fail it. Routing is done by {@link ReplicaRoutingDataSource}; the number of replicas currently used is
+ * published as {@code booking.datasource.replicas.up}. Every {@code booking.datasource.replica-lag-check-ms} the
+ * replicas' lag is checked, and those more than {@code booking.datasource.replica-max-lag} behind are skipped.
+ */
+@Configuration
+@ConditionalOnProperty(name = "booking.datasource.replica-urls")
+public class ReadReplicaConfig {
+
+    @Value("${booking.datasource.replica-urls}")
+    private String[] replicaUrls;
+
+    @Value("${booking.datasource.replica-pool-size:10}")
+    private int replicaPoolSize;
+
+    @Value("${booking.datasource.replica-connection-timeout-ms:2000}")
+    private long replicaConnectionTimeoutMs;
+
+    @Value("${booking.datasource.replica-retry-after-failure:PT30S}")
+    private Duration replicaRetryAfterFailure;
+
+    @Value("${booking.datasource.replica-max-lag:PT5S}")
+    private Duration replicaMaxLag;
+
+    private final ObjectProvider<ReplicaRoutingDataSource> replicaRoutingDataSource;
+
+    public ReadReplicaConfig(ObjectProvider<ReplicaRoutingDataSource> replicaRoutingDataSource) {
+        this.replicaRoutingDataSource = replicaRoutingDataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        if (StringUtils.hasText(properties.getName())) {
+            dataSource.setPoolName(properties.getName());
+        }
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            @Qualifier("primaryDataSource") DataSource primaryDataSource, DataSourceProperties properties,
+            MeterRegistry meterRegistry) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.length; i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("booking-replica-" + i);
+            replica.setJdbcUrl(replicaUrls[i].trim());
+            replica.setUsername(properties.determineUsername());
+            replica.setPassword(properties.determinePassword());
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setMaximumPoolSize(replicaPoolSize);
+            replica.setConnectionTimeout(replicaConnectionTimeoutMs);
+            replica.setInitializationFailTimeout(-1);
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        ReplicaRoutingDataSource routingDataSource =
+                new ReplicaRoutingDataSource(primaryDataSource, replicas, replicaRetryAfterFailure);
+        Gauge.builder("booking.datasource.replicas.up", routingDataSource, ReplicaRoutingDataSource::upReplicaCount)
+                .description("Read replicas read-only transactions are currently sent to")
+                .register(meterRegistry);
+        return routingDataSource;
+    }
+
+    @Scheduled(fixedDelayString = "${booking.datasource.replica-lag-check-ms:5000}")
+    public void checkReplicaLag() {
+        replicaRoutingDataSource.ifAvailable(routingDataSource -> routingDataSource.checkLag(replicaMaxLag));
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
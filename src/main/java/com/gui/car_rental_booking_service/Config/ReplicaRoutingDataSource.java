@@ -0,0 +1,183 @@
+package com.gui.car_rental_booking_service.Config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Sends connections of read-only transactions to the read replicas, round-robin, and everything else to the
+ * primary. Must sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, so the
+ * connection is only taken once the transaction's read-only flag is known.
+ * <p>
+ * A replica that fails to hand out a connection is skipped for {@code retryAfterFailure}; the connection is taken
+ * from the next replica instead, or from the primary when none is left. {@link #checkLag(Duration)} also skips
+ * replicas that fell too far behind their source, until a later check finds them caught up. Code that must read
+ * what it just wrote, before the replicas caught up, runs through {@link #onPrimary(Supplier)}.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+    private static final String PRIMARY = "primary";
+    private static final ThreadLocal<Boolean> PRIMARY_PINNED = new ThreadLocal<>();
+    private static final int LAG_QUERY_TIMEOUT_SECONDS = 2;
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final long retryAfterFailureNanos;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicaDataSources, Duration retryAfterFailure) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicaDataSources.size(); i++) {
+            Replica replica = new Replica("replica-" + i, replicaDataSources.get(i));
+            replicas.add(replica);
+            targets.put(replica.key, replica.dataSource);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        this.retryAfterFailureNanos = retryAfterFailure.toNanos();
+    }
+
+    /**
+     * Runs the action with every connection it takes on this thread coming from the primary, read-only
+     * transactions included.
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        Boolean outer = PRIMARY_PINNED.get();
+        PRIMARY_PINNED.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (outer == null) {
+                PRIMARY_PINNED.remove();
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            Object key = determineCurrentLookupKey();
+            if (PRIMARY.equals(key)) {
+                break;
+            }
+            try {
+                return getResolvedDataSources().get(key).getConnection();
+            } catch (SQLException e) {
+                markDown(key, e);
+            }
+        }
+        return getResolvedDataSources().get(PRIMARY).getConnection();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || PRIMARY_PINNED.get() != null) {
+            return PRIMARY;
+        }
+        long now = System.nanoTime();
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            Replica replica = replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+            if (replica.isUp(now)) {
+                return replica.key;
+            }
+        }
+        return PRIMARY;
+    }
+
+    /**
+     * Reads {@code Seconds_Behind_Source} of every replica and skips those more than {@code maxLag} behind, or
+     * whose replication is stopped, until the next check. A server that reports no replication status serves
+     * the primary's data and counts as caught up. A replica that can't be connected to is skipped like on any
+     * connection failure; one that refuses the query, e.g. for lack of the {@code REPLICATION CLIENT}
+     * privilege, is left as it was.
+     */
+    public void checkLag(Duration maxLag) {
+        for (Replica replica : replicas) {
+            Long lagSeconds;
+            try (Connection connection = replica.dataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.setQueryTimeout(LAG_QUERY_TIMEOUT_SECONDS);
+                    try (ResultSet status = statement.executeQuery("SHOW REPLICA STATUS")) {
+                        // a boxed 0, so a NULL lag isn't unboxed
+                        lagSeconds = status.next()
+                                ? status.getObject("Seconds_Behind_Source", Long.class) : Long.valueOf(0);
+                    }
+                } catch (SQLException e) {
+                    logger.warn("Can't read the replication status of read replica {}, its lag is not checked: {}",
+                            replica.key, e.getMessage());
+                    continue;
+                }
+            } catch (SQLException e) {
+                markDown(replica.key, e);
+                continue;
+            }
+            boolean lagging = lagSeconds == null || lagSeconds > maxLag.toSeconds();
+            if (lagging && !replica.lagging) {
+                logger.warn("Skipping read replica {}: {}", replica.key,
+                        lagSeconds == null ? "replication stopped" : lagSeconds + " s behind its source");
+            } else if (!lagging && replica.lagging) {
+                logger.info("Read replica {} caught up with its source, using it again", replica.key);
+            }
+            replica.lagging = lagging;
+        }
+    }
+
+    public int upReplicaCount() {
+        long now = System.nanoTime();
+        return (int) replicas.stream().filter(replica -> replica.isUp(now)).count();
+    }
+
+    private void markDown(Object key, SQLException e) {
+        for (Replica replica : replicas) {
+            if (replica.key.equals(key)) {
+                replica.downUntil = System.nanoTime() + retryAfterFailureNanos;
+            }
+        }
+        logger.warn("Read replica {} failed to hand out a connection, skipping it for {} ms: {}", key,
+                Duration.ofNanos(retryAfterFailureNanos).toMillis(), e.getMessage());
+    }
+
+    /**
+     * Closes the replica pools; the primary is a bean of its own.
+     */
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private static final class Replica {
+        private final String key;
+        private final DataSource dataSource;
+        private volatile long downUntil = System.nanoTime();
+        private volatile boolean lagging;
+
+        private Replica(String key, DataSource dataSource) {
+            this.key = key;
+            this.dataSource = dataSource;
+        }
+
+        private boolean isUp(long now) {
+            return !lagging && now - downUntil >= 0;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.gui.car_rental_booking_service.Config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Keeps the long maintenance jobs off the scheduler the frequent ones run on. {@code @Scheduled} methods and the
+ * retry topics use {@code taskScheduler}, built by Boot from {@code spring.task.scheduling.*}, so the outbox relay
+ * and the command flow controller keep their pace. {@code BookingArchiver} and {@code BookingLifecycleJob}, which
+ * can run for minutes and pause between chunks, run on {@value #MAINTENANCE_SCHEDULER} instead, with
+ * {@code booking.maintenance.pool-size} threads.
+ */
+@Configuration
+public class SchedulingConfig {
+
+    public static final String MAINTENANCE_SCHEDULER = "bookingMaintenanceScheduler";
+
+    @Value("${booking.maintenance.pool-size:2}")
+    private int maintenancePoolSize;
+
+    @Bean
+    @Primary
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+
+    @Bean(MAINTENANCE_SCHEDULER)
+    public ThreadPoolTaskScheduler bookingMaintenanceScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(maintenancePoolSize);
+        scheduler.setThreadNamePrefix("booking-maintenance-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(30);
+        return scheduler;
+    }
+}
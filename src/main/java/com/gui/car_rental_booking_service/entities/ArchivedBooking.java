@@ -0,0 +1,110 @@
+package com.gui.car_rental_booking_service.entities;
+
+import com.gui.car_rental_booking_service.enums.BookingStatus;
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A finished {@link Booking} moved out of {@code bookings} by the archiver. Same columns, plus when it was
+ * archived; rows are only ever inserted by {@code ArchivedBookingRepository#archive}.
+ */
+@Entity
+@Table(name = "bookings_archive", indexes = {
+        @Index(name = "idx_bookings_archive_user_created", columnList = "user_id, created_at"),
+        @Index(name = "idx_bookings_archive_archived", columnList = "archived_at")
+})
+public class ArchivedBooking {
+
+    @Id
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(length = 16)
+    private UUID bookingId;
+
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(length = 16, nullable = false)
+    private UUID carId;
+
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(length = 16)
+    private UUID userId;
+
+    private String userEmail;
+
+    private LocalDateTime rentalStartDate;
+
+    private LocalDateTime rentalEndDate;
+
+    @Enumerated(EnumType.STRING)
+    private BookingStatus bookingStatus;
+
+    private BigDecimal totalPrice;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+
+    public ArchivedBooking() {
+    }
+
+    /**
+     * @return a detached copy of the booking as it was when archived
+     */
+    public Booking toBooking() {
+        return new Booking(bookingId, carId, userId, userEmail, rentalStartDate, rentalEndDate, bookingStatus,
+                totalPrice, createdAt, updatedAt);
+    }
+
+    public UUID getBookingId() {
+        return bookingId;
+    }
+
+    public UUID getCarId() {
+        return carId;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public String getUserEmail() {
+        return userEmail;
+    }
+
+    public LocalDateTime getRentalStartDate() {
+        return rentalStartDate;
+    }
+
+    public LocalDateTime getRentalEndDate() {
+        return rentalEndDate;
+    }
+
+    public BookingStatus getBookingStatus() {
+        return bookingStatus;
+    }
+
+    public BigDecimal getTotalPrice() {
+        return totalPrice;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public LocalDateTime getArchivedAt() {
+        return archivedAt;
+    }
+}
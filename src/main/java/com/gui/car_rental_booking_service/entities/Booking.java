@@ -4,23 +4,37 @@ import com.gui.car_rental_booking_service.enums.BookingStatus;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.annotations.UuidGenerator;
+import org.hibernate.type.SqlTypes;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 
 @Entity
-@Table(name = "bookings")
+@Table(name = "bookings", indexes = {
+        @Index(name = "idx_bookings_car_rental_window", columnList = "car_id, rental_start_date, rental_end_date"),
+        @Index(name = "idx_bookings_user_created", columnList = "user_id, created_at"),
+        @Index(name = "idx_bookings_created", columnList = "created_at, booking_id"),
+        @Index(name = "idx_bookings_status_rental_start", columnList = "booking_status, rental_start_date"),
+        @Index(name = "idx_bookings_status_created", columnList = "booking_status, created_at")
+})
 public class Booking {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidGenerator(algorithm = TimeOrderedUuidGenerator.class)
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(length = 16)
     private UUID bookingId;
     @NotNull
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(length = 16)
     private UUID carId;
 
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(length = 16)
     private UUID userId;
 
     private String userEmail;
@@ -41,6 +55,15 @@ public class Booking {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    /**
+     * Bumped by every write, including the bulk {@code UPDATE}s of {@code BookingRepository}, so a writer holding
+     * a stale copy is detected instead of silently overwriting the newer row. Existing schemas get the column
+     * from {@code db/mysql/booking-version.sql}.
+     */
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     public Booking() {
     }
 
@@ -133,8 +156,15 @@ public class Booking {
     public void setUpdatedAt(LocalDateTime updatedAt) {
         this.updatedAt = updatedAt;
     }
-    public void setTotalPrice(BigDecimal pricePerDay) {
-        long daysBetween = ChronoUnit.DAYS.between(rentalStartDate, rentalEndDate) + 1;
-        this.totalPrice = pricePerDay.multiply(BigDecimal.valueOf(daysBetween));
+    public void setTotalPrice(BigDecimal totalPrice) {
+        this.totalPrice = totalPrice;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
     }
 }
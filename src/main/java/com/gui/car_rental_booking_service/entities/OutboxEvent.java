@@ -0,0 +1,135 @@
+package com.gui.car_rental_booking_service.entities;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * An event waiting to be relayed to Kafka. Rows are written in the same transaction as the
+ * {@link Booking} change they describe and deleted once the broker acknowledged them. Rows whose payload can't
+ * be read are kept with {@code failed_at} set, out of the relay's way, until someone fixes and resets them.
+ * <p>
+ * Ids come from the {@code AUTO_INCREMENT} column, so they follow the order of the inserts across all instances
+ * and an event enqueued after another one committed, such as the cancellation of a booking whose creation the
+ * saga has seen, always gets the higher id. Blocks of sequence ids would be handed out per instance and break
+ * that. Events of transactions running at the same time may still commit out of id order.
+ */
+@Entity
+@Table(name = "booking_outbox")
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String topic;
+
+    private String messageKey;
+
+    @Column(nullable = false)
+    private String payloadType;
+
+    @Lob
+    @Column(nullable = false)
+    private String payload;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * Epoch millis of the Kafka record whose handling produced the event, if known.
+     */
+    @Column(name = "record_timestamp", updatable = false)
+    private Long recordTimestamp;
+
+    @Column(name = "failed_at")
+    private LocalDateTime failedAt;
+
+    @Column(length = 1000)
+    private String failure;
+
+    public OutboxEvent() {
+    }
+
+    public OutboxEvent(String topic, String messageKey, String payloadType, String payload) {
+        this.topic = topic;
+        this.messageKey = messageKey;
+        this.payloadType = payloadType;
+        this.payload = payload;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public void setTopic(String topic) {
+        this.topic = topic;
+    }
+
+    public String getMessageKey() {
+        return messageKey;
+    }
+
+    public void setMessageKey(String messageKey) {
+        this.messageKey = messageKey;
+    }
+
+    public String getPayloadType() {
+        return payloadType;
+    }
+
+    public void setPayloadType(String payloadType) {
+        this.payloadType = payloadType;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Long getRecordTimestamp() {
+        return recordTimestamp;
+    }
+
+    public void setRecordTimestamp(Long recordTimestamp) {
+        this.recordTimestamp = recordTimestamp;
+    }
+
+    public LocalDateTime getFailedAt() {
+        return failedAt;
+    }
+
+    public void setFailedAt(LocalDateTime failedAt) {
+        this.failedAt = failedAt;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    public void setFailure(String failure) {
+        this.failure = failure;
+    }
+}
@@ -0,0 +1,44 @@
+package com.gui.car_rental_booking_service.entities;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lease that makes one instance the outbox relay. The holder renews it while relaying; once it lapses any
+ * instance may take it over.
+ */
+@Entity
+@Table(name = "booking_outbox_relay_lease")
+public class OutboxRelayLease {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(length = 64)
+    private String owner;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    public OutboxRelayLease() {
+    }
+
+    public OutboxRelayLease(String name, LocalDateTime expiresAt) {
+        this.name = name;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+}
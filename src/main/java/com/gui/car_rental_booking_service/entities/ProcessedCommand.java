@@ -0,0 +1,102 @@
+package com.gui.car_rental_booking_service.entities;
+
+import com.gui.car_rental_booking_service.enums.CommandOutcome;
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.springframework.data.domain.Persistable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Result of a saga command this service already handled, keyed by saga and command type (a saga sends both a
+ * creation and, on compensation, a cancellation with the same {@code sagaTransactionId}). The primary key
+ * doubles as the uniqueness guard against two consumers processing the same redelivered command. Results are
+ * pruned by {@link com.gui.car_rental_booking_service.service.BookingArchiver} once no redelivery can reach them.
+ */
+@Entity
+@Table(name = "processed_commands", indexes = {
+        @Index(name = "idx_processed_commands_processed_at", columnList = "processed_at")
+})
+@IdClass(ProcessedCommandId.class)
+public class ProcessedCommand implements Persistable<ProcessedCommandId> {
+
+    @Id
+    private UUID sagaTransactionId;
+
+    @Id
+    @Column(length = 64)
+    private String commandType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private CommandOutcome outcome;
+
+    private UUID bookingId;
+
+    private BigDecimal totalPrice;
+
+    @CreationTimestamp
+    @Column(name = "processed_at", updatable = false)
+    private LocalDateTime processedAt;
+
+    @Transient
+    private boolean isNew = true;
+
+    public ProcessedCommand() {
+    }
+
+    public ProcessedCommand(UUID sagaTransactionId, String commandType, CommandOutcome outcome, UUID bookingId,
+                            BigDecimal totalPrice) {
+        this.sagaTransactionId = sagaTransactionId;
+        this.commandType = commandType;
+        this.outcome = outcome;
+        this.bookingId = bookingId;
+        this.totalPrice = totalPrice;
+    }
+
+    @Override
+    public ProcessedCommandId getId() {
+        return new ProcessedCommandId(sagaTransactionId, commandType);
+    }
+
+    /**
+     * Always inserted, never merged: a duplicate must fail on the primary key instead of overwriting the
+     * original result.
+     */
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    public UUID getSagaTransactionId() {
+        return sagaTransactionId;
+    }
+
+    public String getCommandType() {
+        return commandType;
+    }
+
+    public CommandOutcome getOutcome() {
+        return outcome;
+    }
+
+    public UUID getBookingId() {
+        return bookingId;
+    }
+
+    public BigDecimal getTotalPrice() {
+        return totalPrice;
+    }
+
+    public LocalDateTime getProcessedAt() {
+        return processedAt;
+    }
+}
@@ -0,0 +1,40 @@
+package com.gui.car_rental_booking_service.entities;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.UUID;
+
+public class ProcessedCommandId implements Serializable {
+
+    private UUID sagaTransactionId;
+
+    private String commandType;
+
+    public ProcessedCommandId() {
+    }
+
+    public ProcessedCommandId(UUID sagaTransactionId, String commandType) {
+        this.sagaTransactionId = sagaTransactionId;
+        this.commandType = commandType;
+    }
+
+    public UUID getSagaTransactionId() {
+        return sagaTransactionId;
+    }
+
+    public String getCommandType() {
+        return commandType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ProcessedCommandId that)) return false;
+        return Objects.equals(sagaTransactionId, that.sagaTransactionId) && Objects.equals(commandType, that.commandType);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sagaTransactionId, commandType);
+    }
+}
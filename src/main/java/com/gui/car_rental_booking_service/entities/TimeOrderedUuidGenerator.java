@@ -0,0 +1,34 @@
+package com.gui.car_rental_booking_service.entities;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.uuid.UuidValueGenerator;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates version 7 UUIDs (RFC 9562): 48 bits of Unix epoch milliseconds, then a 12-bit counter that keeps
+ * ids generated within the same millisecond increasing, then 62 random bits. Stored big-endian in
+ * {@code BINARY(16)} they sort by creation time, so inserts append to the right edge of the primary key
+ * instead of landing on random pages.
+ */
+public class TimeOrderedUuidGenerator implements UuidValueGenerator {
+
+    private static final AtomicLong lastTimestamp = new AtomicLong();
+    private static final ThreadLocal<SecureRandom> random = ThreadLocal.withInitial(SecureRandom::new);
+
+    @Override
+    public UUID generateUuid(SharedSessionContractImplementor session) {
+        return generate();
+    }
+
+    public static UUID generate() {
+        long now = System.currentTimeMillis() << 12;
+        // millis in the upper 52 bits, counter in the lower 12; a counter overflow borrows the next millisecond
+        long timestamp = lastTimestamp.updateAndGet(last -> Math.max(now, last + 1));
+        long mostSigBits = (timestamp >>> 12) << 16 | 0x7000L | (timestamp & 0xFFFL);
+        long leastSigBits = random.get().nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
@@ -1,8 +1,51 @@
 package com.gui.car_rental_booking_service.enums;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
 public enum BookingStatus {
     PENDING,
     COMPLETED,
     CANCELLED,
-    CONFIRMED
+    CONFIRMED,
+    /** Pending for longer than the saga may take to confirm it. */
+    EXPIRED;
+
+    /**
+     * Statuses in which the booked car is unavailable to anyone else for the rental window.
+     */
+    public static final Set<BookingStatus> ACTIVE = Collections.unmodifiableSet(EnumSet.of(PENDING, CONFIRMED));
+
+    /**
+     * Statuses a booking doesn't leave anymore.
+     */
+    public static final Set<BookingStatus> FINISHED = Collections.unmodifiableSet(EnumSet.of(COMPLETED, CANCELLED, EXPIRED));
+
+    private static final Map<BookingStatus, Set<BookingStatus>> PREDECESSORS = new EnumMap<>(BookingStatus.class);
+
+    static {
+        PREDECESSORS.put(PENDING, Collections.unmodifiableSet(EnumSet.noneOf(BookingStatus.class)));
+        PREDECESSORS.put(CONFIRMED, Collections.unmodifiableSet(EnumSet.of(PENDING)));
+        PREDECESSORS.put(CANCELLED, ACTIVE);
+        PREDECESSORS.put(COMPLETED, Collections.unmodifiableSet(EnumSet.of(CONFIRMED)));
+        PREDECESSORS.put(EXPIRED, Collections.unmodifiableSet(EnumSet.of(PENDING)));
+    }
+
+    /**
+     * The statuses a booking may move to {@code to} from; conditional status updates use it as their
+     * {@code from} set.
+     */
+    public static Set<BookingStatus> predecessorsOf(BookingStatus to) {
+        return PREDECESSORS.get(to);
+    }
+
+    /**
+     * @return whether a booking in this status may be moved to {@code to}; staying in the same status is allowed
+     */
+    public boolean canBecome(BookingStatus to) {
+        return this == to || PREDECESSORS.get(to).contains(this);
+    }
 }
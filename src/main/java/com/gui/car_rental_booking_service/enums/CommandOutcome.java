@@ -0,0 +1,6 @@
+package com.gui.car_rental_booking_service.enums;
+
+public enum CommandOutcome {
+    SUCCEEDED,
+    FAILED
+}
@@ -0,0 +1,56 @@
+package com.gui.car_rental_booking_service.events;
+
+import com.gui.car_rental_common.dtos.BookingDto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A booking reaching the end of its life outside any saga, published on
+ * {@code booking-lifecycle-events} by {@code BookingLifecycleJob}.
+ */
+public class BookingLifecycleEvent {
+
+    public enum Type {
+        /** A confirmed booking whose rental has ended. */
+        COMPLETED,
+        /** A pending booking the saga never confirmed. */
+        EXPIRED
+    }
+
+    private Type type;
+    private BookingDto bookingDto;
+    private LocalDateTime occurredAt;
+
+    public BookingLifecycleEvent() {
+    }
+
+    public BookingLifecycleEvent(Type type, BookingDto bookingDto, LocalDateTime occurredAt) {
+        this.type = type;
+        this.bookingDto = bookingDto;
+        this.occurredAt = occurredAt;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public BookingDto getBookingDto() {
+        return bookingDto;
+    }
+
+    public void setBookingDto(BookingDto bookingDto) {
+        this.bookingDto = bookingDto;
+    }
+
+    public LocalDateTime getOccurredAt() {
+        return occurredAt;
+    }
+
+    public void setOccurredAt(LocalDateTime occurredAt) {
+        this.occurredAt = occurredAt;
+    }
+}
@@ -0,0 +1,28 @@
+package com.gui.car_rental_booking_service.respositories;
+
+import com.gui.car_rental_booking_service.entities.ArchivedBooking;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.UUID;
+
+public interface ArchivedBookingRepository extends JpaRepository<ArchivedBooking, UUID> {
+
+    /**
+     * Copies the bookings into the archive with a single {@code insert ... select}, without loading them. Must
+     * run in the transaction that then deletes them from {@code bookings}.
+     *
+     * @return the number of rows copied
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("insert into ArchivedBooking (bookingId, carId, userId, userEmail, rentalStartDate, rentalEndDate, " +
+            "bookingStatus, totalPrice, createdAt, updatedAt, archivedAt) " +
+            "select b.bookingId, b.carId, b.userId, b.userEmail, b.rentalStartDate, b.rentalEndDate, " +
+            "b.bookingStatus, b.totalPrice, b.createdAt, b.updatedAt, :archivedAt " +
+            "from Booking b where b.bookingId in :bookingIds")
+    int archive(@Param("bookingIds") Collection<UUID> bookingIds, @Param("archivedAt") LocalDateTime archivedAt);
+}
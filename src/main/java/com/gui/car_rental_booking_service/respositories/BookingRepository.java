@@ -1,12 +1,204 @@
 package com.gui.car_rental_booking_service.respositories;
 
 import com.gui.car_rental_booking_service.entities.Booking;
+import com.gui.car_rental_booking_service.enums.BookingStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface BookingRepository extends JpaRepository<Booking, UUID> {
 
+    /**
+     * Bookings of the car whose rental window overlaps {@code [start, end)}, served by
+     * {@code idx_bookings_car_rental_window}.
+     */
+    @Query("select b from Booking b where b.carId = :carId " +
+            "and b.rentalStartDate < :end and b.rentalEndDate > :start order by b.rentalStartDate")
+    List<Booking> findOverlapping(@Param("carId") UUID carId,
+                                  @Param("start") LocalDateTime start,
+                                  @Param("end") LocalDateTime end);
 
+    /**
+     * Most recent bookings of a user first, served by {@code idx_bookings_user_created}.
+     */
+    List<Booking> findByUserIdOrderByCreatedAtDesc(UUID userId, Limit limit);
+
+    /**
+     * Bookings in the status whose rental starts before the given time, oldest first, served by
+     * {@code idx_bookings_status_rental_start}.
+     */
+    List<Booking> findByBookingStatusAndRentalStartDateBeforeOrderByRentalStartDateAsc(BookingStatus status,
+                                                                                      LocalDateTime before,
+                                                                                      Limit limit);
+
+    /**
+     * Ids of bookings in the status whose rental ended before the given time, earliest rental first, served by
+     * {@code idx_bookings_status_rental_start}.
+     */
+    @Query("select b.bookingId from Booking b where b.bookingStatus = :status " +
+            "and b.rentalStartDate < :before and b.rentalEndDate < :before order by b.rentalStartDate")
+    List<UUID> findIdsEndedBefore(@Param("status") BookingStatus status,
+                                  @Param("before") LocalDateTime before,
+                                  Limit limit);
+
+    /**
+     * Next chunk of bookings in the status whose rental ended before the given time, in
+     * {@code (rentalStartDate, bookingId)} order after the cursor, served by
+     * {@code idx_bookings_status_rental_start}. Locks the returned rows until the transaction ends.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Booking b where b.bookingStatus = :status " +
+            "and b.rentalStartDate < :before and b.rentalEndDate < :before " +
+            "and (b.rentalStartDate > :afterStart or (b.rentalStartDate = :afterStart and b.bookingId > :afterId)) " +
+            "order by b.rentalStartDate, b.bookingId")
+    List<Booking> findEndedBeforeForUpdate(@Param("status") BookingStatus status,
+                                           @Param("before") LocalDateTime before,
+                                           @Param("afterStart") LocalDateTime afterStart,
+                                           @Param("afterId") UUID afterId,
+                                           Limit limit);
+
+    /**
+     * Next chunk of bookings in the status created before the given time, in {@code (createdAt, bookingId)}
+     * order after the cursor, served by {@code idx_bookings_status_created}. Locks the returned rows until the
+     * transaction ends.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Booking b where b.bookingStatus = :status and b.createdAt < :before " +
+            "and (b.createdAt > :afterCreated or (b.createdAt = :afterCreated and b.bookingId > :afterId)) " +
+            "order by b.createdAt, b.bookingId")
+    List<Booking> findCreatedBeforeForUpdate(@Param("status") BookingStatus status,
+                                             @Param("before") LocalDateTime before,
+                                             @Param("afterCreated") LocalDateTime afterCreated,
+                                             @Param("afterId") UUID afterId,
+                                             Limit limit);
+
+    /**
+     * Next chunk of bookings in the status without a creation time, stored before {@code created_at} was filled
+     * in, in {@code bookingId} order after the cursor. An index on {@code created_at} finds them, as its entries
+     * also carry the id. Locks the returned rows until the transaction ends.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Booking b where b.bookingStatus = :status and b.createdAt is null " +
+            "and b.bookingId > :afterId order by b.bookingId")
+    List<Booking> findWithoutCreationTimeForUpdate(@Param("status") BookingStatus status,
+                                                   @Param("afterId") UUID afterId,
+                                                   Limit limit);
+
+    @Query("select b.carId from Booking b where b.bookingId = :bookingId")
+    Optional<UUID> findCarIdByBookingId(@Param("bookingId") UUID bookingId);
+
+    List<Booking> findAllByOrderByCreatedAtAscBookingIdAsc(Limit limit);
+
+    /**
+     * Keyset page following the booking identified by {@code (createdAt, bookingId)}, served by
+     * {@code idx_bookings_created}.
+     */
+    @Query("select b from Booking b where b.createdAt > :createdAt " +
+            "or (b.createdAt = :createdAt and b.bookingId > :bookingId) order by b.createdAt, b.bookingId")
+    List<Booking> findPageAfter(@Param("createdAt") LocalDateTime createdAt,
+                                @Param("bookingId") UUID bookingId,
+                                Limit limit);
+
+    /**
+     * Every booking in keyset order, fetched from the driver in chunks and loaded read-only. On MySQL the JDBC
+     * URL needs {@code useCursorFetch=true} for the fetch size to turn into a server-side cursor.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("select b from Booking b order by b.createdAt, b.bookingId")
+    Stream<Booking> streamAllInKeysetOrder();
+
+    Stream<BookingWindow> streamByBookingStatusInAndRentalEndDateAfter(Collection<BookingStatus> statuses,
+                                                                       LocalDateTime after);
+
+    /**
+     * Bookings of the car overlapping {@code [start, end)}, locked so a concurrent insert for the same car has
+     * to wait for this transaction.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Booking b where b.carId = :carId and b.bookingStatus in :statuses " +
+            "and b.rentalStartDate < :end and b.rentalEndDate > :start")
+    List<Booking> findOverlappingForUpdate(@Param("carId") UUID carId,
+                                           @Param("start") LocalDateTime start,
+                                           @Param("end") LocalDateTime end,
+                                           @Param("statuses") Collection<BookingStatus> statuses);
+
+    /**
+     * Moves the booking to {@code to} if it currently is in one of the {@code from} statuses, in a single
+     * statement without loading it. The status condition makes it a compare-and-set, so it needs no version
+     * check of its own; it bumps the version so writers holding the old one notice.
+     *
+     * @return the number of rows changed, 0 if the booking doesn't exist or is in another status
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Booking b set b.bookingStatus = :to, b.updatedAt = :updatedAt, b.version = b.version + 1 " +
+            "where b.bookingId = :bookingId and b.bookingStatus in :from")
+    int updateStatus(@Param("bookingId") UUID bookingId,
+                     @Param("from") Collection<BookingStatus> from,
+                     @Param("to") BookingStatus to,
+                     @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Bulk form of {@link #updateStatus(UUID, Collection, BookingStatus, LocalDateTime)}; ids that don't exist
+     * or aren't in one of the {@code from} statuses are left alone.
+     *
+     * @return the number of rows changed
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Booking b set b.bookingStatus = :to, b.updatedAt = :updatedAt, b.version = b.version + 1 " +
+            "where b.bookingId in :bookingIds and b.bookingStatus in :from")
+    int updateStatusIn(@Param("bookingIds") Collection<UUID> bookingIds,
+                       @Param("from") Collection<BookingStatus> from,
+                       @Param("to") BookingStatus to,
+                       @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Overwrites the mutable columns of an existing booking in a single statement, if the stored row still has
+     * the booking's version and is in one of the {@code from} statuses, and bumps the version.
+     *
+     * @return the number of rows changed, 0 if the booking doesn't exist, was changed since the given version was
+     * read or is in another status
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Booking b set b.carId = :#{#booking.carId}, b.userId = :#{#booking.userId}, " +
+            "b.userEmail = :#{#booking.userEmail}, b.rentalStartDate = :#{#booking.rentalStartDate}, " +
+            "b.rentalEndDate = :#{#booking.rentalEndDate}, b.bookingStatus = :#{#booking.bookingStatus}, " +
+            "b.totalPrice = :#{#booking.totalPrice}, b.updatedAt = :#{#booking.updatedAt}, " +
+            "b.version = b.version + 1 " +
+            "where b.bookingId = :#{#booking.bookingId} and b.version = :#{#booking.version} " +
+            "and b.bookingStatus in :from")
+    int updateDetails(@Param("booking") Booking booking, @Param("from") Collection<BookingStatus> from);
+
+    /**
+     * Deletes the bookings that are in one of the statuses, in a single statement.
+     *
+     * @return the number of rows deleted
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Booking b where b.bookingId in :bookingIds and b.bookingStatus in :statuses")
+    int deleteInStatus(@Param("bookingIds") Collection<UUID> bookingIds,
+                       @Param("statuses") Collection<BookingStatus> statuses);
 
 }
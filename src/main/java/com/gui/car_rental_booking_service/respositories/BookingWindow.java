@@ -0,0 +1,18 @@
+package com.gui.car_rental_booking_service.respositories;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Projection of the columns needed to know when a car is taken, without loading whole {@code Booking}s.
+ */
+public interface BookingWindow {
+
+    UUID getBookingId();
+
+    UUID getCarId();
+
+    LocalDateTime getRentalStartDate();
+
+    LocalDateTime getRentalEndDate();
+}
@@ -0,0 +1,26 @@
+package com.gui.car_rental_booking_service.respositories;
+
+import com.gui.car_rental_booking_service.entities.OutboxEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    List<OutboxEvent> findByIdGreaterThanAndFailedAtIsNullOrderByIdAsc(Long id, Limit limit);
+
+    /**
+     * Sets the event aside so the relay skips it from now on.
+     */
+    @Transactional
+    @Modifying
+    @Query("update OutboxEvent e set e.failedAt = :failedAt, e.failure = :failure where e.id = :id")
+    int markFailed(@Param("id") Long id, @Param("failedAt") LocalDateTime failedAt, @Param("failure") String failure);
+
+}
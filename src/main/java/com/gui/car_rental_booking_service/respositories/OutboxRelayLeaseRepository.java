@@ -0,0 +1,27 @@
+package com.gui.car_rental_booking_service.respositories;
+
+import com.gui.car_rental_booking_service.entities.OutboxRelayLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface OutboxRelayLeaseRepository extends JpaRepository<OutboxRelayLease, String> {
+
+    /**
+     * Takes or renews the lease for the owner if it holds it already or the lease lapsed, in a single statement.
+     *
+     * @return 1 if the owner now holds the lease, 0 if another owner does
+     */
+    @Transactional
+    @Modifying
+    @Query("update OutboxRelayLease l set l.owner = :owner, l.expiresAt = :expiresAt " +
+            "where l.name = :name and (l.owner = :owner or l.owner is null or l.expiresAt < :now)")
+    int acquire(@Param("name") String name,
+                @Param("owner") String owner,
+                @Param("now") LocalDateTime now,
+                @Param("expiresAt") LocalDateTime expiresAt);
+}
@@ -0,0 +1,21 @@
+package com.gui.car_rental_booking_service.respositories;
+
+import com.gui.car_rental_booking_service.entities.ProcessedCommand;
+import com.gui.car_rental_booking_service.entities.ProcessedCommandId;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ProcessedCommandRepository extends JpaRepository<ProcessedCommand, ProcessedCommandId> {
+
+    /**
+     * Next chunk of results recorded before the given time, or before {@code processed_at} was filled in, served
+     * by {@code idx_processed_commands_processed_at}.
+     */
+    @Query("select p from ProcessedCommand p where p.processedAt < :before or p.processedAt is null")
+    List<ProcessedCommand> findProcessedBefore(@Param("before") LocalDateTime before, Limit limit);
+}
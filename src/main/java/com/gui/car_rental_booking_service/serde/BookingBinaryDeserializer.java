@@ -0,0 +1,43 @@
+package com.gui.car_rental_booking_service.serde;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.util.Map;
+
+/**
+ * Value deserializer that reads both formats: payloads starting with the {@link BookingMessageCodec} magic byte
+ * are decoded as binary, anything else goes to Spring's {@link JsonDeserializer}, which receives the
+ * configuration. Topics can therefore move to binary one producer at a time.
+ */
+public class BookingBinaryDeserializer implements Deserializer<Object> {
+
+    private final JsonDeserializer<Object> jsonDeserializer = new JsonDeserializer<>();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        jsonDeserializer.configure(configs, isKey);
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        if (BookingMessageCodec.isBinary(data)) {
+            return BookingMessageCodec.decode(data);
+        }
+        return jsonDeserializer.deserialize(topic, data);
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        if (BookingMessageCodec.isBinary(data)) {
+            return BookingMessageCodec.decode(data);
+        }
+        return jsonDeserializer.deserialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        jsonDeserializer.close();
+    }
+}
@@ -0,0 +1,57 @@
+package com.gui.car_rental_booking_service.serde;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Value serializer that writes the messages {@link BookingMessageCodec} has a schema for in its binary format
+ * on the topics listed in {@value #BINARY_TOPICS} (comma separated), and everything else as JSON through
+ * Spring's {@link JsonSerializer}, which also receives the remaining configuration. Raw {@code byte[]} values,
+ * such as undeserializable records forwarded to a dead-letter topic, are written unchanged.
+ */
+public class BookingBinarySerializer implements Serializer<Object> {
+
+    public static final String BINARY_TOPICS = "booking.serde.binary-topics";
+
+    private final JsonSerializer<Object> jsonSerializer = new JsonSerializer<>();
+    private Set<String> binaryTopics = Set.of();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        Object topics = configs.get(BINARY_TOPICS);
+        if (topics != null) {
+            binaryTopics = Arrays.stream(topics.toString().split(","))
+                    .map(String::trim)
+                    .filter(topic -> !topic.isEmpty())
+                    .collect(Collectors.toUnmodifiableSet());
+        }
+        jsonSerializer.configure(configs, isKey);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        return serialize(topic, null, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        if (data instanceof byte[] raw) {
+            return raw;
+        }
+        if (data != null && binaryTopics.contains(topic) && BookingMessageCodec.supports(data)) {
+            return BookingMessageCodec.encode(data);
+        }
+        return headers == null ? jsonSerializer.serialize(topic, data) : jsonSerializer.serialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        jsonSerializer.close();
+    }
+}
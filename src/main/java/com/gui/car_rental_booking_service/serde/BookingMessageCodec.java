@@ -0,0 +1,384 @@
+package com.gui.car_rental_booking_service.serde;
+
+import com.gui.car_rental_common.commands.BookingCreationCommand;
+import com.gui.car_rental_common.commands.CancelBookingCommand;
+import com.gui.car_rental_common.dtos.BookingDto;
+import com.gui.car_rental_common.events.booking.BookingCancellationFailedEvent;
+import com.gui.car_rental_common.events.booking.BookingCancelledEvent;
+import com.gui.car_rental_common.events.booking.BookingCreatedEvent;
+import com.gui.car_rental_common.events.booking.BookingCreationFailedEvent;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of the saga commands and booking events.
+ * <p>
+ * Schema version 1:
+ * <pre>
+ * magic        1 byte   0xB7, never the first byte of a JSON document
+ * version      1 byte   1
+ * type         1 byte   1 BookingCreationCommand, 2 CancelBookingCommand, 3 BookingCreatedEvent,
+ *                       4 BookingCreationFailedEvent, 5 BookingCancelledEvent, 6 BookingCancellationFailedEvent
+ * presence     1 byte   bit 0 sagaTransactionId, bit 1 bookingDto, bit 2 message
+ * sagaId       16 bytes
+ * bookingDto   1 presence byte (bit 0 bookingId, 1 carId, 2 userId, 3 email, 4 pricePerDay, 5 amount,
+ *              6 rentalStartDate, 7 rentalEndDate), then the present fields in that order
+ * message      string
+ * </pre>
+ * UUIDs are 16 big-endian bytes, strings a varint length and UTF-8 bytes, decimals a zig-zag varint scale and a
+ * length-prefixed two's-complement unscaled value, date-times zig-zag varint epoch seconds at UTC and varint
+ * nanos. Adding a field to any of these messages needs a new version; readers reject versions they don't know.
+ */
+public final class BookingMessageCodec {
+
+    static final byte MAGIC = (byte) 0xB7;
+    static final byte VERSION = 1;
+
+    private static final byte BOOKING_CREATION_COMMAND = 1;
+    private static final byte CANCEL_BOOKING_COMMAND = 2;
+    private static final byte BOOKING_CREATED_EVENT = 3;
+    private static final byte BOOKING_CREATION_FAILED_EVENT = 4;
+    private static final byte BOOKING_CANCELLED_EVENT = 5;
+    private static final byte BOOKING_CANCELLATION_FAILED_EVENT = 6;
+
+    private BookingMessageCodec() {
+    }
+
+    public static boolean supports(Object message) {
+        return typeOf(message) != 0;
+    }
+
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length > 0 && data[0] == MAGIC;
+    }
+
+    public static byte[] encode(Object message) {
+        byte type = typeOf(message);
+        if (type == 0) {
+            throw new SerializationException("No binary schema for " + message.getClass().getName());
+        }
+        UUID sagaId;
+        BookingDto bookingDto;
+        String text = null;
+        switch (type) {
+            case BOOKING_CREATION_COMMAND -> {
+                BookingCreationCommand command = (BookingCreationCommand) message;
+                sagaId = command.getSagaTransactionId();
+                bookingDto = command.getBookingDto();
+            }
+            case CANCEL_BOOKING_COMMAND -> {
+                CancelBookingCommand command = (CancelBookingCommand) message;
+                sagaId = command.getSagaTransactionId();
+                bookingDto = command.getBookingDto();
+            }
+            case BOOKING_CREATED_EVENT -> {
+                BookingCreatedEvent event = (BookingCreatedEvent) message;
+                sagaId = event.getSagaTransactionId();
+                bookingDto = event.getBookingDto();
+                text = event.getMessage();
+            }
+            case BOOKING_CREATION_FAILED_EVENT -> {
+                BookingCreationFailedEvent event = (BookingCreationFailedEvent) message;
+                sagaId = event.getSagaTransactionId();
+                bookingDto = event.getBookingDto();
+                text = event.getMessage();
+            }
+            case BOOKING_CANCELLED_EVENT -> {
+                BookingCancelledEvent event = (BookingCancelledEvent) message;
+                sagaId = event.getSagaTransactionId();
+                bookingDto = event.getBookingDto();
+                text = event.getMessage();
+            }
+            default -> {
+                BookingCancellationFailedEvent event = (BookingCancellationFailedEvent) message;
+                sagaId = event.getSagaTransactionId();
+                bookingDto = event.getBookingDto();
+                text = event.getMessage();
+            }
+        }
+
+        Writer out = new Writer();
+        out.put(MAGIC);
+        out.put(VERSION);
+        out.put(type);
+        out.put((byte) ((sagaId != null ? 1 : 0) | (bookingDto != null ? 2 : 0) | (text != null ? 4 : 0)));
+        if (sagaId != null) {
+            out.putUuid(sagaId);
+        }
+        if (bookingDto != null) {
+            writeBookingDto(out, bookingDto);
+        }
+        if (text != null) {
+            out.putString(text);
+        }
+        return out.toByteArray();
+    }
+
+    public static Object decode(byte[] data) {
+        Reader in = new Reader(data);
+        if (in.get() != MAGIC) {
+            throw new SerializationException("Not a binary booking message");
+        }
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new SerializationException("Unsupported binary booking message version " + version);
+        }
+        byte type = in.get();
+        byte presence = in.get();
+        UUID sagaId = (presence & 1) != 0 ? in.getUuid() : null;
+        BookingDto bookingDto = (presence & 2) != 0 ? readBookingDto(in) : null;
+        String text = (presence & 4) != 0 ? in.getString() : null;
+        return switch (type) {
+            case BOOKING_CREATION_COMMAND -> new BookingCreationCommand(sagaId, bookingDto);
+            case CANCEL_BOOKING_COMMAND -> new CancelBookingCommand(sagaId, bookingDto);
+            case BOOKING_CREATED_EVENT -> {
+                BookingCreatedEvent event = new BookingCreatedEvent(sagaId, bookingDto);
+                event.setMessage(text);
+                yield event;
+            }
+            case BOOKING_CREATION_FAILED_EVENT -> {
+                BookingCreationFailedEvent event = new BookingCreationFailedEvent(sagaId, bookingDto);
+                event.setMessage(text);
+                yield event;
+            }
+            case BOOKING_CANCELLED_EVENT -> {
+                BookingCancelledEvent event = new BookingCancelledEvent(sagaId, bookingDto);
+                event.setMessage(text);
+                yield event;
+            }
+            case BOOKING_CANCELLATION_FAILED_EVENT -> new BookingCancellationFailedEvent(sagaId, bookingDto, text);
+            default -> throw new SerializationException("Unknown binary booking message type " + type);
+        };
+    }
+
+    private static byte typeOf(Object message) {
+        if (message instanceof BookingCreationCommand) {
+            return BOOKING_CREATION_COMMAND;
+        }
+        if (message instanceof CancelBookingCommand) {
+            return CANCEL_BOOKING_COMMAND;
+        }
+        if (message instanceof BookingCreatedEvent) {
+            return BOOKING_CREATED_EVENT;
+        }
+        if (message instanceof BookingCreationFailedEvent) {
+            return BOOKING_CREATION_FAILED_EVENT;
+        }
+        if (message instanceof BookingCancelledEvent) {
+            return BOOKING_CANCELLED_EVENT;
+        }
+        if (message instanceof BookingCancellationFailedEvent) {
+            return BOOKING_CANCELLATION_FAILED_EVENT;
+        }
+        return 0;
+    }
+
+    private static void writeBookingDto(Writer out, BookingDto dto) {
+        int presence = (dto.getBookingId() != null ? 1 : 0)
+                | (dto.getCarId() != null ? 1 << 1 : 0)
+                | (dto.getUserId() != null ? 1 << 2 : 0)
+                | (dto.getEmail() != null ? 1 << 3 : 0)
+                | (dto.getPricePerDay() != null ? 1 << 4 : 0)
+                | (dto.getAmount() != null ? 1 << 5 : 0)
+                | (dto.getRentalStartDate() != null ? 1 << 6 : 0)
+                | (dto.getRentalEndDate() != null ? 1 << 7 : 0);
+        out.put((byte) presence);
+        if (dto.getBookingId() != null) {
+            out.putUuid(dto.getBookingId());
+        }
+        if (dto.getCarId() != null) {
+            out.putUuid(dto.getCarId());
+        }
+        if (dto.getUserId() != null) {
+            out.putUuid(dto.getUserId());
+        }
+        if (dto.getEmail() != null) {
+            out.putString(dto.getEmail());
+        }
+        if (dto.getPricePerDay() != null) {
+            out.putDecimal(dto.getPricePerDay());
+        }
+        if (dto.getAmount() != null) {
+            out.putDecimal(dto.getAmount());
+        }
+        if (dto.getRentalStartDate() != null) {
+            out.putDateTime(dto.getRentalStartDate());
+        }
+        if (dto.getRentalEndDate() != null) {
+            out.putDateTime(dto.getRentalEndDate());
+        }
+    }
+
+    private static BookingDto readBookingDto(Reader in) {
+        int presence = in.get() & 0xFF;
+        BookingDto dto = new BookingDto();
+        if ((presence & 1) != 0) {
+            dto.setBookingId(in.getUuid());
+        }
+        if ((presence & 1 << 1) != 0) {
+            dto.setCarId(in.getUuid());
+        }
+        if ((presence & 1 << 2) != 0) {
+            dto.setUserId(in.getUuid());
+        }
+        if ((presence & 1 << 3) != 0) {
+            dto.setEmail(in.getString());
+        }
+        if ((presence & 1 << 4) != 0) {
+            dto.setPricePerDay(in.getDecimal());
+        }
+        if ((presence & 1 << 5) != 0) {
+            dto.setAmount(in.getDecimal());
+        }
+        if ((presence & 1 << 6) != 0) {
+            dto.setRentalStartDate(in.getDateTime());
+        }
+        if ((presence & 1 << 7) != 0) {
+            dto.setRentalEndDate(in.getDateTime());
+        }
+        return dto;
+    }
+
+    private static final class Writer {
+        private byte[] buffer = new byte[128];
+        private int position;
+
+        void put(byte b) {
+            ensure(1);
+            buffer[position++] = b;
+        }
+
+        void putBytes(byte[] bytes) {
+            putVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void putLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        void putVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void putZigZag(long value) {
+            putVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void putUuid(UUID uuid) {
+            putLong(uuid.getMostSignificantBits());
+            putLong(uuid.getLeastSignificantBits());
+        }
+
+        void putString(String value) {
+            putBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void putDecimal(BigDecimal value) {
+            putZigZag(value.scale());
+            putBytes(value.unscaledValue().toByteArray());
+        }
+
+        void putDateTime(LocalDateTime value) {
+            putZigZag(value.toEpochSecond(ZoneOffset.UTC));
+            putVarLong(value.getNano());
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensure(int bytes) {
+            if (position + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        byte get() {
+            if (position >= data.length) {
+                throw new SerializationException("Truncated binary booking message");
+            }
+            return data[position++];
+        }
+
+        byte[] getBytes() {
+            int length = (int) getVarLong();
+            if (length < 0 || position + length > data.length) {
+                throw new SerializationException("Truncated binary booking message");
+            }
+            byte[] bytes = Arrays.copyOfRange(data, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        long getLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = value << 8 | (get() & 0xFF);
+            }
+            return value;
+        }
+
+        long getVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("Malformed varint in binary booking message");
+        }
+
+        long getZigZag() {
+            long raw = getVarLong();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        UUID getUuid() {
+            return new UUID(getLong(), getLong());
+        }
+
+        String getString() {
+            return new String(getBytes(), StandardCharsets.UTF_8);
+        }
+
+        BigDecimal getDecimal() {
+            int scale = (int) getZigZag();
+            return new BigDecimal(new BigInteger(getBytes()), scale);
+        }
+
+        LocalDateTime getDateTime() {
+            long epochSecond = getZigZag();
+            int nanos = (int) getVarLong();
+            return LocalDateTime.ofEpochSecond(epochSecond, nanos, ZoneOffset.UTC);
+        }
+    }
+}
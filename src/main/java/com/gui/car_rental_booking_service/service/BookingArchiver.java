@@ -0,0 +1,186 @@
+package com.gui.car_rental_booking_service.service;
+
+import com.gui.car_rental_booking_service.Config.SchedulingConfig;
+import com.gui.car_rental_booking_service.entities.ProcessedCommand;
+import com.gui.car_rental_booking_service.enums.BookingStatus;
+import com.gui.car_rental_booking_service.respositories.ArchivedBookingRepository;
+import com.gui.car_rental_booking_service.respositories.BookingRepository;
+import com.gui.car_rental_booking_service.respositories.ProcessedCommandRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Moves {@link BookingStatus#FINISHED finished} bookings whose rental ended more than
+ * {@code booking.archive.min-age} ago from {@code bookings} to {@code bookings_archive}, so the live table and its
+ * indexes only hold the rows that are still read and written.
+ * <p>
+ * Each chunk of {@code booking.archive.chunk-size} rows is copied with one {@code insert ... select} and deleted
+ * with one {@code delete} in its own short transaction, holding a {@link DatabaseBulkhead} permit so commands
+ * keep priority, and the job pauses {@code booking.archive.pause-ms} between chunks. Runs on
+ * {@code booking.archive.cron}, on the maintenance scheduler of {@link SchedulingConfig}; {@code -} turns it off.
+ * <p>
+ * Moved rows are counted as {@code booking.archive.rows} and chunks timed as {@code booking.archive.chunk}.
+ * {@link BookingService#getBookingById(UUID)} falls back to the archive, so archiving doesn't change what it
+ * returns.
+ * <p>
+ * On MySQL, {@code db/mysql/bookings-partitioning.sql} range-partitions {@code bookings} by month of the rental
+ * start, and its {@code archive_booking_partitions} procedure moves whole months to the archive at once, leaving
+ * this job the finished bookings of months that still hold an active one.
+ * <p>
+ * On {@code booking.dedup.retention-cron} it also deletes, in chunks of the same size, the
+ * {@code processed_commands} results older than {@code booking.dedup.retention}, counted as
+ * {@code booking.dedup.pruned}. The retention must outlast the longest a command can still be redelivered: the
+ * retention of the command topics and of their dead-letter topics, from which a command may be replayed. The
+ * default of 14 days covers Kafka's default of 7 days twice over.
+ */
+@Component
+public class BookingArchiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookingArchiver.class);
+
+    private final BookingRepository bookingRepository;
+    private final ArchivedBookingRepository archivedBookingRepository;
+    private final ProcessedCommandRepository processedCommandRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final DatabaseBulkhead databaseBulkhead;
+    private final Counter archivedRows;
+    private final Timer chunkTimer;
+    private final Counter prunedCommands;
+
+    @Value("${booking.archive.min-age:P180D}")
+    private Duration minAge;
+
+    @Value("${booking.archive.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${booking.archive.pause-ms:200}")
+    private long pauseMs;
+
+    @Value("${booking.dedup.retention:P14D}")
+    private Duration commandRetention;
+
+    public BookingArchiver(BookingRepository bookingRepository, ArchivedBookingRepository archivedBookingRepository,
+                           ProcessedCommandRepository processedCommandRepository,
+                           TransactionTemplate transactionTemplate, DatabaseBulkhead databaseBulkhead,
+                           MeterRegistry meterRegistry) {
+        this.bookingRepository = bookingRepository;
+        this.archivedBookingRepository = archivedBookingRepository;
+        this.processedCommandRepository = processedCommandRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.databaseBulkhead = databaseBulkhead;
+        this.archivedRows = Counter.builder("booking.archive.rows")
+                .description("Bookings moved to the archive table")
+                .register(meterRegistry);
+        this.chunkTimer = Timer.builder("booking.archive.chunk")
+                .description("Time to move one chunk of bookings to the archive table")
+                .register(meterRegistry);
+        this.prunedCommands = Counter.builder("booking.dedup.pruned")
+                .description("Processed-command results deleted after their retention")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${booking.archive.cron:0 30 3 * * *}", scheduler = SchedulingConfig.MAINTENANCE_SCHEDULER)
+    public void archive() {
+        archiveEndedBefore(LocalDateTime.now().minus(minAge));
+    }
+
+    @Scheduled(cron = "${booking.dedup.retention-cron:0 0 4 * * *}",
+            scheduler = SchedulingConfig.MAINTENANCE_SCHEDULER)
+    public void pruneProcessedCommands() {
+        pruneProcessedCommandsBefore(LocalDateTime.now().minus(commandRetention));
+    }
+
+    /**
+     * Archives the finished bookings whose rental ended before the given time.
+     *
+     * @return the number of bookings archived
+     */
+    public int archiveEndedBefore(LocalDateTime before) {
+        long started = System.nanoTime();
+        int archived = 0;
+        for (BookingStatus status : BookingStatus.FINISHED) {
+            while (true) {
+                int moved = databaseBulkhead.call(() -> chunkTimer.record(() -> moveChunk(status, before)));
+                archived += moved;
+                archivedRows.increment(moved);
+                if (moved < chunkSize) {
+                    break;
+                }
+                if (!pause()) {
+                    logger.info("Archiving interrupted after {} bookings", archived);
+                    return archived;
+                }
+            }
+        }
+        logger.info("Archived {} bookings that ended before {} in {} ms", archived, before,
+                Duration.ofNanos(System.nanoTime() - started).toMillis());
+        return archived;
+    }
+
+    /**
+     * Deletes the processed-command results recorded before the given time.
+     *
+     * @return the number of results deleted
+     */
+    public int pruneProcessedCommandsBefore(LocalDateTime before) {
+        int pruned = 0;
+        while (true) {
+            int deleted = databaseBulkhead.call(() -> transactionTemplate.execute(tx -> {
+                List<ProcessedCommand> chunk = processedCommandRepository.findProcessedBefore(before,
+                        Limit.of(chunkSize));
+                processedCommandRepository.deleteAllInBatch(chunk);
+                return chunk.size();
+            }));
+            pruned += deleted;
+            prunedCommands.increment(deleted);
+            if (deleted < chunkSize) {
+                break;
+            }
+            if (!pause()) {
+                logger.info("Pruning processed commands interrupted after {} results", pruned);
+                return pruned;
+            }
+        }
+        logger.info("Pruned {} processed commands recorded before {}", pruned, before);
+        return pruned;
+    }
+
+    private int moveChunk(BookingStatus status, LocalDateTime before) {
+        return transactionTemplate.execute(tx -> {
+            List<UUID> bookingIds = bookingRepository.findIdsEndedBefore(status, before, Limit.of(chunkSize));
+            if (bookingIds.isEmpty()) {
+                return 0;
+            }
+            int copied = archivedBookingRepository.archive(bookingIds, LocalDateTime.now());
+            int deleted = bookingRepository.deleteInStatus(bookingIds, BookingStatus.FINISHED);
+            if (copied != deleted) {
+                throw new IllegalStateException(String.format(
+                        "Copied %d bookings to the archive but deleted %d, rolling the chunk back", copied, deleted));
+            }
+            return deleted;
+        });
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(pauseMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
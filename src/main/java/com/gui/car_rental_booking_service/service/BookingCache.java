@@ -0,0 +1,50 @@
+package com.gui.car_rental_booking_service.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gui.car_rental_booking_service.entities.Booking;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Bounded, TTL-evicting read-through cache of bookings by id. Concurrent misses for the same id wait for a
+ * single load. Absent bookings are not cached. Hit, miss and eviction counts are published as the
+ * {@code cache.*} meters tagged {@code cache=bookings}.
+ * <p>
+ * Cached instances are shared between callers and must be treated as read-only.
+ */
+@Component
+public class BookingCache {
+
+    private final Cache<UUID, Booking> cache;
+
+    public BookingCache(MeterRegistry meterRegistry,
+                        @Value("${booking.cache.maximum-size:10000}") long maximumSize,
+                        @Value("${booking.cache.ttl:PT5M}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "bookings");
+    }
+
+    public Optional<Booking> get(UUID bookingId, Function<UUID, Optional<Booking>> loader) {
+        return Optional.ofNullable(cache.get(bookingId, id -> loader.apply(id).orElse(null)));
+    }
+
+    public void put(Booking booking) {
+        cache.put(booking.getBookingId(), booking);
+    }
+
+    public void invalidate(UUID bookingId) {
+        cache.invalidate(bookingId);
+    }
+}
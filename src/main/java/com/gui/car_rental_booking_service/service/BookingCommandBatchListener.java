@@ -0,0 +1,108 @@
+package com.gui.car_rental_booking_service.service;
+
+import com.gui.car_rental_common.commands.BookingCreationCommand;
+import com.gui.car_rental_common.commands.CancelBookingCommand;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Consumes {@code rental-saga-booking-commands} a whole poll at a time when
+ * {@code booking.kafka.listener.mode=batch}. Consecutive creation commands are handed to
+ * {@link BookingService#consumeBookingCreationCommands(List)} as one batch, cancellations are handled
+ * individually in between so their relative order within the poll is kept. Events of a creation batch are
+ * stamped with the timestamp of its oldest record.
+ * <p>
+ * A failure escaping a command is reported as a {@link BatchListenerFailedException} naming its record. When a
+ * creation batch fails, its commands are handled again one at a time, those already created being skipped as
+ * duplicates, to find the record that fails. The container commits everything before it and retries the rest with
+ * backoff, sending the record to the dead-letter topic once the retries are used up. A record that couldn't be deserialized
+ * goes there right away. Batch listeners can't use retry topics, so unlike the {@code record} mode these retries
+ * hold up the partition.
+ */
+@Component
+public class BookingCommandBatchListener {
+
+    public static final String LISTENER_ID = "booking-command-batch-listener";
+
+    private static final Logger logger = LoggerFactory.getLogger(BookingCommandBatchListener.class);
+    private static final LogAccessor headerLogger = new LogAccessor(BookingCommandBatchListener.class);
+
+    private final BookingService bookingService;
+
+    public BookingCommandBatchListener(BookingService bookingService) {
+        this.bookingService = bookingService;
+    }
+
+    @KafkaListener(id = LISTENER_ID, topics = "rental-saga-booking-commands",
+            groupId = "booking-service-group", containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "#{'${booking.kafka.listener.mode:record}' == 'batch'}")
+    public void consumeCommands(List<ConsumerRecord<String, Object>> records) {
+        List<ConsumerRecord<String, Object>> creations = new ArrayList<>();
+        for (ConsumerRecord<String, Object> record : records) {
+            Object command = record.value();
+            long recordTimestamp = record.timestamp();
+            if (command instanceof BookingCreationCommand) {
+                creations.add(record);
+                continue;
+            }
+            flush(creations);
+            DeserializationException poisonPill = SerializationUtils.getExceptionFromHeader(record,
+                    SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, headerLogger);
+            if (poisonPill != null) {
+                throw new BatchListenerFailedException("Command could not be deserialized", poisonPill, record);
+            }
+            if (command instanceof CancelBookingCommand cancelCommand) {
+                try {
+                    BookingEventOutbox.withRecordTimestamp(recordTimestamp, () -> {
+                        bookingService.consumeCancelBookingCommand(cancelCommand);
+                        return null;
+                    });
+                } catch (RuntimeException e) {
+                    throw new BatchListenerFailedException("CancelBookingCommand failed", e, record);
+                }
+            } else {
+                logger.warn("Skipping unsupported command type {}", command == null ? null : command.getClass().getName());
+            }
+        }
+        flush(creations);
+    }
+
+    private void flush(List<ConsumerRecord<String, Object>> creations) {
+        if (creations.isEmpty()) {
+            return;
+        }
+        List<BookingCreationCommand> commands = new ArrayList<>(creations.size());
+        long oldestTimestamp = Long.MAX_VALUE;
+        for (ConsumerRecord<String, Object> record : creations) {
+            commands.add((BookingCreationCommand) record.value());
+            oldestTimestamp = Math.min(oldestTimestamp, record.timestamp());
+        }
+        try {
+            BookingEventOutbox.withRecordTimestamp(oldestTimestamp,
+                    () -> bookingService.consumeBookingCreationCommands(commands));
+        } catch (RuntimeException e) {
+            logger.warn("BookingCreationCommand batch of {} failed, handling its commands one at a time: {}",
+                    creations.size(), e.getMessage());
+            // commands created before the failure are skipped as duplicates
+            for (ConsumerRecord<String, Object> record : creations) {
+                try {
+                    BookingEventOutbox.withRecordTimestamp(record.timestamp(), () ->
+                            bookingService.consumeBookingCreationCommand((BookingCreationCommand) record.value()));
+                } catch (RuntimeException failure) {
+                    throw new BatchListenerFailedException("BookingCreationCommand failed", failure, record);
+                }
+            }
+        }
+        creations.clear();
+    }
+}
@@ -0,0 +1,45 @@
+package com.gui.car_rental_booking_service.service;
+
+import com.gui.car_rental_common.dtos.BookingDto;
+
+import java.time.LocalDate;
+
+/**
+ * Rental window rules every creation command has to satisfy: start at least one day from today, end at least
+ * one day after the start and no more than two months after it.
+ */
+public final class BookingDateValidator {
+
+    private BookingDateValidator() {
+    }
+
+    public static void validate(BookingDto bookingDto) {
+        validate(bookingDto, LocalDate.now());
+    }
+
+    /**
+     * @throws IllegalArgumentException describing the first rule the window breaks
+     */
+    public static void validate(BookingDto bookingDto, LocalDate now) {
+        LocalDate start = bookingDto.getRentalStartDate().toLocalDate();
+        LocalDate end   = bookingDto.getRentalEndDate().toLocalDate();
+
+        if (start.isBefore(now.plusDays(1))) {
+            throw new IllegalArgumentException(
+                    String.format("Start date %s must be at least one day after now %s", start, now)
+            );
+        }
+        if(end.isBefore(start.plusDays(1))){
+            throw new IllegalArgumentException(
+                    String.format("End date %s must be at least one day after start date %s", end, start)
+            );
+        }
+
+        if (start.plusMonths(2).isBefore(end)) {
+            throw new IllegalArgumentException(
+                    String.format("Booking duration should not exceeds 2 months. Start date %s, End date %s", start, end)
+            );
+        }
+
+    }
+}
@@ -0,0 +1,128 @@
+package com.gui.car_rental_booking_service.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gui.car_rental_booking_service.entities.OutboxEvent;
+import com.gui.car_rental_booking_service.events.BookingLifecycleEvent;
+import com.gui.car_rental_booking_service.respositories.OutboxEventRepository;
+import com.gui.car_rental_common.dtos.BookingDto;
+import com.gui.car_rental_common.events.booking.BookingCancellationFailedEvent;
+import com.gui.car_rental_common.events.booking.BookingCancelledEvent;
+import com.gui.car_rental_common.events.booking.BookingCreatedEvent;
+import com.gui.car_rental_common.events.booking.BookingCreationFailedEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Writes booking events to the {@code booking_outbox} table instead of sending them to Kafka directly.
+ * Callers must already be inside the transaction that changes the booking, so the event becomes visible
+ * to {@link OutboxRelay} exactly when that change commits.
+ * <p>
+ * Events are keyed by {@link #messageKey(BookingDto) car}, so everything that happens to one car lands on one
+ * partition in order. Saga replies go to {@value #BOOKING_EVENTS_TOPIC}, {@link BookingLifecycleEvent}s to
+ * {@value #BOOKING_LIFECYCLE_TOPIC}.
+ * <p>
+ * Rows are stamped with the timestamp of the Kafka record being handled on the current thread, if the
+ * listener provided one through {@link #withRecordTimestamp(Long, Supplier)}.
+ */
+@Service
+public class BookingEventOutbox {
+
+    public static final String BOOKING_EVENTS_TOPIC = "booking-service-events";
+    public static final String BOOKING_LIFECYCLE_TOPIC = "booking-lifecycle-events";
+
+    private static final ThreadLocal<Long> RECORD_TIMESTAMP = new ThreadLocal<>();
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    public BookingEventOutbox(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(Object event) {
+        outboxEventRepository.save(toOutboxEvent(event));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueAll(List<?> events) {
+        List<OutboxEvent> outboxEvents = new ArrayList<>(events.size());
+        for (Object event : events) {
+            outboxEvents.add(toOutboxEvent(event));
+        }
+        outboxEventRepository.saveAll(outboxEvents);
+    }
+
+    /**
+     * Runs the action with the given record timestamp, in epoch millis, attached to every event it enqueues on
+     * this thread. A {@code null} timestamp leaves the events unstamped.
+     */
+    public static <T> T withRecordTimestamp(Long recordTimestamp, Supplier<T> action) {
+        Long outer = RECORD_TIMESTAMP.get();
+        RECORD_TIMESTAMP.set(recordTimestamp);
+        try {
+            return action.get();
+        } finally {
+            if (outer == null) {
+                RECORD_TIMESTAMP.remove();
+            } else {
+                RECORD_TIMESTAMP.set(outer);
+            }
+        }
+    }
+
+    private OutboxEvent toOutboxEvent(Object event) {
+        try {
+            String topic = event instanceof BookingLifecycleEvent ? BOOKING_LIFECYCLE_TOPIC : BOOKING_EVENTS_TOPIC;
+            OutboxEvent outboxEvent = new OutboxEvent(topic, messageKey(bookingDto(event)),
+                    event.getClass().getName(), objectMapper.writeValueAsString(event));
+            outboxEvent.setRecordTimestamp(RECORD_TIMESTAMP.get());
+            return outboxEvent;
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize " + event.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Partitioning key for messages about a booking: the car id, or the booking id when the car isn't known.
+     * {@link BookingService} fills in the car of cancellations from the stored booking, so only events about a
+     * booking that doesn't exist fall back to its id.
+     *
+     * @return the key, or {@code null} if the DTO carries neither
+     */
+    public static String messageKey(BookingDto bookingDto) {
+        if (bookingDto == null) {
+            return null;
+        }
+        if (bookingDto.getCarId() != null) {
+            return bookingDto.getCarId().toString();
+        }
+        return bookingDto.getBookingId() == null ? null : bookingDto.getBookingId().toString();
+    }
+
+    private static BookingDto bookingDto(Object event) {
+        if (event instanceof BookingCreatedEvent created) {
+            return created.getBookingDto();
+        }
+        if (event instanceof BookingCreationFailedEvent creationFailed) {
+            return creationFailed.getBookingDto();
+        }
+        if (event instanceof BookingCancelledEvent cancelled) {
+            return cancelled.getBookingDto();
+        }
+        if (event instanceof BookingCancellationFailedEvent cancellationFailed) {
+            return cancellationFailed.getBookingDto();
+        }
+        if (event instanceof BookingLifecycleEvent lifecycle) {
+            return lifecycle.getBookingDto();
+        }
+        return null;
+    }
+}
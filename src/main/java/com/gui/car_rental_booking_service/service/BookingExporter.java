@@ -0,0 +1,467 @@
+package com.gui.car_rental_booking_service.service;
+
+import com.gui.car_rental_booking_service.enums.BookingStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports bookings to a gzip compressed NDJSON or CSV file for bulk readers such as finance and fleet analytics,
+ * without loading them as entities.
+ * <p>
+ * Rows are read in {@code (created_at, booking_id)} order from a single forward-only cursor, fetched
+ * {@code booking.export.fetch-size} at a time (on MySQL the JDBC URL needs {@code useCursorFetch=true}), and
+ * written through a {@code booking.export.buffer-bytes} buffer straight to a {@link FileChannel}, so memory use
+ * doesn't depend on the number of rows. The export runs in a read-only transaction and so reads from a replica
+ * when replicas are configured.
+ * <p>
+ * Every {@code booking.export.checkpoint-rows} rows the current gzip member is finished, the file forced to disk
+ * and the keyset position saved next to it in {@code <file>.checkpoint}. Exporting again to the same file with
+ * the same format and filter after a failure cuts off whatever was written after the checkpoint and carries on
+ * from it; gzip readers read the members as one stream. The checkpoint is removed once the export completes.
+ * Bookings stored before {@code created_at} was filled in have it {@code NULL}; MySQL sorts them first, and a
+ * checkpoint among them keeps {@code createdAt} empty and resumes on {@code booking_id} alone. The order stays
+ * the one of {@code idx_bookings_created}, so the cursor doesn't need a sort. A {@code createdFrom} or
+ * {@code createdTo} bound leaves these bookings out.
+ * Exported rows are counted as {@code booking.export.rows}.
+ */
+@Component
+public class BookingExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookingExporter.class);
+    private static final String[] COLUMNS = {"booking_id", "car_id", "user_id", "user_email", "rental_start_date",
+            "rental_end_date", "booking_status", "total_price", "created_at", "updated_at", "version"};
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Counter exportedRows;
+
+    @Value("${booking.export.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${booking.export.checkpoint-rows:50000}")
+    private long checkpointRows;
+
+    @Value("${booking.export.buffer-bytes:65536}")
+    private int bufferBytes;
+
+    public BookingExporter(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.exportedRows = Counter.builder("booking.export.rows")
+                .description("Bookings written to export files")
+                .register(meterRegistry);
+    }
+
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    /**
+     * Bookings created in {@code [createdFrom, createdTo)} in one of the statuses; {@code null} bounds and an
+     * empty status set don't filter.
+     */
+    public record Filter(LocalDateTime createdFrom, LocalDateTime createdTo, Set<BookingStatus> statuses) {
+
+        public Filter {
+            statuses = statuses == null || statuses.isEmpty()
+                    ? Set.of() : Set.copyOf(EnumSet.copyOf(statuses));
+        }
+
+        public static Filter all() {
+            return new Filter(null, null, Set.of());
+        }
+    }
+
+    /**
+     * @param rows    the rows in the file, including those written before a resumed checkpoint
+     * @param bytes   the size of the file
+     * @param resumed whether the export carried on from a checkpoint
+     */
+    public record Result(long rows, long bytes, boolean resumed) {
+    }
+
+    /**
+     * Exports the bookings matching the filter to {@code target}, resuming from its checkpoint if an earlier
+     * export of the same format and filter to it didn't complete.
+     *
+     * @throws IllegalStateException if the checkpoint belongs to an export of another format or filter
+     */
+    @Transactional(readOnly = true)
+    public Result export(Format format, Filter filter, Path target) throws IOException {
+        Path checkpointFile = checkpointFile(target);
+        Checkpoint checkpoint = Checkpoint.read(checkpointFile, format, filter);
+        boolean resumed = checkpoint != null;
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            Export export = new Export(channel, checkpointFile, format, filter, resumed ? checkpoint : Checkpoint.START);
+            List<Object> args = new ArrayList<>();
+            String sql = query(filter, resumed ? checkpoint : null, args);
+            try {
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(sql,
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    statement.setFetchSize(fetchSize);
+                    for (int i = 0; i < args.size(); i++) {
+                        statement.setObject(i + 1, args.get(i));
+                    }
+                    return statement;
+                }, export);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            export.finish();
+            Files.deleteIfExists(checkpointFile);
+            logger.info("Exported {} bookings to {}{} ({} bytes)", export.rows, target,
+                    resumed ? " resuming from a checkpoint" : "", channel.size());
+            return new Result(export.rows, channel.size(), resumed);
+        }
+    }
+
+    private static Path checkpointFile(Path target) {
+        return target.resolveSibling(target.getFileName() + ".checkpoint");
+    }
+
+    private static String query(Filter filter, Checkpoint after, List<Object> args) {
+        StringBuilder sql = new StringBuilder("select ").append(String.join(", ", COLUMNS))
+                .append(" from bookings where 1 = 1");
+        if (filter.createdFrom() != null) {
+            sql.append(" and created_at >= ?");
+            args.add(filter.createdFrom());
+        }
+        if (filter.createdTo() != null) {
+            sql.append(" and created_at < ?");
+            args.add(filter.createdTo());
+        }
+        if (!filter.statuses().isEmpty()) {
+            sql.append(" and booking_status in (")
+                    .append(filter.statuses().stream().map(status -> "?").collect(Collectors.joining(", ")))
+                    .append(')');
+            filter.statuses().stream().sorted().forEach(status -> args.add(status.name()));
+        }
+        if (after != null && after.createdAt == null) {
+            sql.append(" and (created_at is not null or booking_id > ?)");
+            args.add(after.bookingId);
+        } else if (after != null) {
+            sql.append(" and (created_at > ? or (created_at = ? and booking_id > ?))");
+            args.add(after.createdAt);
+            args.add(after.createdAt);
+            args.add(after.bookingId);
+        }
+        return sql.append(" order by created_at, booking_id").toString();
+    }
+
+    /**
+     * Writes the rows of one export as they come off the cursor and checkpoints it.
+     */
+    private final class Export implements RowCallbackHandler {
+        private final FileChannel channel;
+        private final Path checkpointFile;
+        private final Format format;
+        private final Filter filter;
+        private final ChannelSink sink;
+        private final StringBuilder line = new StringBuilder(256);
+        private Writer writer;
+        private long rows;
+        private long rowsSinceCheckpoint;
+        private LocalDateTime lastCreatedAt;
+        private byte[] lastBookingId;
+
+        private Export(FileChannel channel, Path checkpointFile, Format format, Filter filter, Checkpoint from)
+                throws IOException {
+            this.channel = channel;
+            this.checkpointFile = checkpointFile;
+            this.format = format;
+            this.filter = filter;
+            this.rows = from.rows;
+            channel.truncate(from.offset);
+            channel.position(from.offset);
+            this.sink = new ChannelSink(channel, bufferBytes);
+            startMember();
+            if (from.offset == 0 && format == Format.CSV) {
+                writer.write(String.join(",", COLUMNS));
+                writer.write('\n');
+            }
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            line.setLength(0);
+            if (format == Format.CSV) {
+                appendCsv(rs);
+            } else {
+                appendJson(rs);
+            }
+            lastCreatedAt = rs.getObject("created_at", LocalDateTime.class);
+            lastBookingId = rs.getBytes("booking_id");
+            try {
+                writer.append(line);
+                rows++;
+                if (++rowsSinceCheckpoint >= checkpointRows) {
+                    checkpoint();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void appendCsv(ResultSet rs) throws SQLException {
+            line.append(uuid(rs.getBytes("booking_id"))).append(',')
+                    .append(nullToEmpty(uuid(rs.getBytes("car_id")))).append(',')
+                    .append(nullToEmpty(uuid(rs.getBytes("user_id")))).append(',');
+            appendCsvField(rs.getString("user_email"));
+            line.append(',').append(nullToEmpty(rs.getObject("rental_start_date", LocalDateTime.class)))
+                    .append(',').append(nullToEmpty(rs.getObject("rental_end_date", LocalDateTime.class)))
+                    .append(',').append(nullToEmpty(rs.getString("booking_status")))
+                    .append(',').append(nullToEmpty(plain(rs.getBigDecimal("total_price"))))
+                    .append(',').append(nullToEmpty(rs.getObject("created_at", LocalDateTime.class)))
+                    .append(',').append(nullToEmpty(rs.getObject("updated_at", LocalDateTime.class)))
+                    .append(',').append(rs.getLong("version"))
+                    .append('\n');
+        }
+
+        private void appendJson(ResultSet rs) throws SQLException {
+            line.append("{\"bookingId\":");
+            appendJsonString(uuid(rs.getBytes("booking_id")));
+            line.append(",\"carId\":");
+            appendJsonString(uuid(rs.getBytes("car_id")));
+            line.append(",\"userId\":");
+            appendJsonString(uuid(rs.getBytes("user_id")));
+            line.append(",\"userEmail\":");
+            appendJsonString(rs.getString("user_email"));
+            line.append(",\"rentalStartDate\":");
+            appendJsonString(rs.getObject("rental_start_date", LocalDateTime.class));
+            line.append(",\"rentalEndDate\":");
+            appendJsonString(rs.getObject("rental_end_date", LocalDateTime.class));
+            line.append(",\"bookingStatus\":");
+            appendJsonString(rs.getString("booking_status"));
+            line.append(",\"totalPrice\":").append(plain(rs.getBigDecimal("total_price")));
+            line.append(",\"createdAt\":");
+            appendJsonString(rs.getObject("created_at", LocalDateTime.class));
+            line.append(",\"updatedAt\":");
+            appendJsonString(rs.getObject("updated_at", LocalDateTime.class));
+            line.append(",\"version\":").append(rs.getLong("version")).append("}\n");
+        }
+
+        private void appendCsvField(String value) {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                line.append(value);
+                return;
+            }
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    line.append('"');
+                }
+                line.append(c);
+            }
+            line.append('"');
+        }
+
+        private void appendJsonString(Object value) {
+            if (value == null) {
+                line.append("null");
+                return;
+            }
+            String string = value.toString();
+            line.append('"');
+            for (int i = 0; i < string.length(); i++) {
+                char c = string.charAt(i);
+                switch (c) {
+                    case '"' -> line.append("\\\"");
+                    case '\\' -> line.append("\\\\");
+                    case '\n' -> line.append("\\n");
+                    case '\r' -> line.append("\\r");
+                    case '\t' -> line.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            line.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            line.append(c);
+                        }
+                    }
+                }
+            }
+            line.append('"');
+        }
+
+        private void startMember() throws IOException {
+            writer = new OutputStreamWriter(new GZIPOutputStream(sink, bufferBytes), StandardCharsets.UTF_8);
+        }
+
+        private void finishMember() throws IOException {
+            // closing finishes the member and frees its deflater; the sink stays open
+            writer.close();
+            sink.drain();
+            channel.force(false);
+        }
+
+        private void checkpoint() throws IOException {
+            finishMember();
+            new Checkpoint(channel.position(), rows, lastCreatedAt, lastBookingId).write(checkpointFile, format, filter);
+            exportedRows.increment(rowsSinceCheckpoint);
+            rowsSinceCheckpoint = 0;
+            startMember();
+        }
+
+        private void finish() throws IOException {
+            finishMember();
+            exportedRows.increment(rowsSinceCheckpoint);
+            rowsSinceCheckpoint = 0;
+        }
+    }
+
+    /**
+     * Collects the compressed bytes in one buffer and hands it to the channel whenever it fills up. Closing it
+     * leaves the channel open.
+     */
+    private static final class ChannelSink extends OutputStream {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        private ChannelSink(FileChannel channel, int capacity) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(capacity);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (!buffer.hasRemaining()) {
+                    drain();
+                }
+                int chunk = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+                length -= chunk;
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Where an export stopped: the size of the file up to the last finished gzip member and the keyset of its
+     * last row, whose {@code createdAt} is {@code null} while the export is still among the bookings without one.
+     */
+    private static final class Checkpoint {
+        private static final Checkpoint START = new Checkpoint(0, 0, null, null);
+
+        private final long offset;
+        private final long rows;
+        private final LocalDateTime createdAt;
+        private final byte[] bookingId;
+
+        private Checkpoint(long offset, long rows, LocalDateTime createdAt, byte[] bookingId) {
+            this.offset = offset;
+            this.rows = rows;
+            this.createdAt = createdAt;
+            this.bookingId = bookingId;
+        }
+
+        private static Checkpoint read(Path file, Format format, Filter filter) throws IOException {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            Properties properties = new Properties();
+            try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            if (!describe(format, filter).equals(properties.getProperty("export"))) {
+                throw new IllegalStateException(String.format(
+                        "%s belongs to another export (%s); delete it to start over", file, properties.getProperty("export")));
+            }
+            return new Checkpoint(Long.parseLong(properties.getProperty("offset")),
+                    Long.parseLong(properties.getProperty("rows")),
+                    properties.getProperty("createdAt", "").isEmpty()
+                            ? null : LocalDateTime.parse(properties.getProperty("createdAt")),
+                    HEX.parseHex(properties.getProperty("bookingId")));
+        }
+
+        private void write(Path file, Format format, Filter filter) throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("export", describe(format, filter));
+            properties.setProperty("offset", Long.toString(offset));
+            properties.setProperty("rows", Long.toString(rows));
+            properties.setProperty("createdAt", createdAt == null ? "" : createdAt.toString());
+            properties.setProperty("bookingId", HEX.formatHex(bookingId));
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (var writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                properties.store(writer, null);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private static String describe(Format format, Filter filter) {
+            return format + " " + filter.createdFrom() + " " + filter.createdTo() + " "
+                    + filter.statuses().stream().sorted().map(Enum::name).collect(Collectors.joining(","));
+        }
+    }
+
+    private static UUID uuid(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static String plain(BigDecimal amount) {
+        return amount == null ? null : amount.toPlainString();
+    }
+
+    private static Object nullToEmpty(Object value) {
+        return Objects.requireNonNullElse(value, "");
+    }
+}
@@ -0,0 +1,238 @@
+package com.gui.car_rental_booking_service.service;
+
+import com.gui.car_rental_booking_service.Config.SchedulingConfig;
+import com.gui.car_rental_booking_service.entities.Booking;
+import com.gui.car_rental_booking_service.enums.BookingStatus;
+import com.gui.car_rental_booking_service.events.BookingLifecycleEvent;
+import com.gui.car_rental_booking_service.respositories.BookingRepository;
+import com.gui.car_rental_common.dtos.BookingDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Moves bookings along once the saga is done with them: confirmed bookings whose rental has ended become
+ * {@link BookingStatus#COMPLETED}, and pending bookings older than {@code booking.lifecycle.pending-timeout} become
+ * {@link BookingStatus#EXPIRED}, freeing their car. Pending bookings stored before {@code created_at} was filled in
+ * have it {@code NULL}; they are older than any timeout, so they expire too. Each change is published as a
+ * {@link BookingLifecycleEvent}.
+ * <p>
+ * A run walks the candidates with a keyset cursor over the index serving each transition, in chunks of
+ * {@code booking.lifecycle.chunk-size}. A chunk locks its rows, moves them with one {@code UPDATE} and enqueues
+ * their events in one batch, all in one short transaction under a {@link DatabaseBulkhead} permit. Thanks to the
+ * cursor, a chunk's index range starts where the previous one ended instead of scanning again over the rows
+ * that were skipped, such as ongoing rentals. Runs on the maintenance scheduler of {@link SchedulingConfig}.
+ * <p>
+ * Per transition, each run is timed as {@code booking.lifecycle.run}, its number of bookings recorded as
+ * {@code booking.lifecycle.run.bookings} and the bookings counted as {@code booking.lifecycle.bookings}.
+ */
+@Component
+public class BookingLifecycleJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookingLifecycleJob.class);
+    private static final LocalDateTime CURSOR_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final UUID CURSOR_START_ID = new UUID(0L, 0L);
+
+    private final BookingRepository bookingRepository;
+    private final BookingEventOutbox bookingEventOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final DatabaseBulkhead databaseBulkhead;
+    private final CarAvailabilityIndex carAvailabilityIndex;
+    private final DailyOccupancyIndex dailyOccupancyIndex;
+    private final BookingCache bookingCache;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${booking.lifecycle.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${booking.lifecycle.pending-timeout:PT1H}")
+    private Duration pendingTimeout;
+
+    public BookingLifecycleJob(BookingRepository bookingRepository, BookingEventOutbox bookingEventOutbox,
+                               TransactionTemplate transactionTemplate, DatabaseBulkhead databaseBulkhead,
+                               CarAvailabilityIndex carAvailabilityIndex, DailyOccupancyIndex dailyOccupancyIndex,
+                               BookingCache bookingCache, MeterRegistry meterRegistry) {
+        this.bookingRepository = bookingRepository;
+        this.bookingEventOutbox = bookingEventOutbox;
+        this.transactionTemplate = transactionTemplate;
+        this.databaseBulkhead = databaseBulkhead;
+        this.carAvailabilityIndex = carAvailabilityIndex;
+        this.dailyOccupancyIndex = dailyOccupancyIndex;
+        this.bookingCache = bookingCache;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Scheduled(fixedDelayString = "${booking.lifecycle.interval-ms:60000}",
+            initialDelayString = "${booking.lifecycle.initial-delay-ms:60000}",
+            scheduler = SchedulingConfig.MAINTENANCE_SCHEDULER)
+    public void run() {
+        LocalDateTime now = LocalDateTime.now();
+        completeEndedBefore(now);
+        expirePendingCreatedBefore(now.minus(pendingTimeout));
+    }
+
+    /**
+     * Completes the confirmed bookings whose rental ended before the given time.
+     *
+     * @return the number of bookings completed
+     */
+    public int completeEndedBefore(LocalDateTime before) {
+        return run(Transition.COMPLETE, new Pass((afterAt, afterId) -> bookingRepository.findEndedBeforeForUpdate(
+                BookingStatus.CONFIRMED, before, afterAt, afterId, Limit.of(chunkSize)), Booking::getRentalStartDate));
+    }
+
+    /**
+     * Expires the pending bookings created before the given time, and those without a creation time.
+     *
+     * @return the number of bookings expired
+     */
+    public int expirePendingCreatedBefore(LocalDateTime before) {
+        return run(Transition.EXPIRE,
+                new Pass((afterAt, afterId) -> bookingRepository.findWithoutCreationTimeForUpdate(
+                        BookingStatus.PENDING, afterId, Limit.of(chunkSize)), Booking::getCreatedAt),
+                new Pass((afterAt, afterId) -> bookingRepository.findCreatedBeforeForUpdate(
+                        BookingStatus.PENDING, before, afterAt, afterId, Limit.of(chunkSize)), Booking::getCreatedAt));
+    }
+
+    private int run(Transition transition, Pass... passes) {
+        long started = System.nanoTime();
+        int moved = 0;
+        int chunks = 0;
+        for (Pass pass : passes) {
+            int[] movedAndChunks = walk(transition, pass);
+            moved += movedAndChunks[0];
+            chunks += movedAndChunks[1];
+        }
+        record(transition, moved, System.nanoTime() - started);
+        if (moved > 0) {
+            logger.info("{} {} bookings in {} chunks", transition.verb, moved, chunks);
+        }
+        return moved;
+    }
+
+    /**
+     * @return the bookings moved and the chunks it took
+     */
+    private int[] walk(Transition transition, Pass pass) {
+        LocalDateTime afterAt = CURSOR_START;
+        UUID afterId = CURSOR_START_ID;
+        int moved = 0;
+        int chunks = 0;
+        while (true) {
+            LocalDateTime chunkAfterAt = afterAt;
+            UUID chunkAfterId = afterId;
+            List<Booking> chunk = databaseBulkhead.call(() -> transactionTemplate.execute(status ->
+                    moveChunk(transition, pass.query().find(chunkAfterAt, chunkAfterId))));
+            chunks++;
+            moved += chunk.size();
+            for (Booking booking : chunk) {
+                carAvailabilityIndex.releaseBooking(booking.getBookingId())
+                        .ifPresent(hold -> dailyOccupancyIndex.release(hold.getCarId(), hold.getStart(), hold.getEnd()));
+                bookingCache.invalidate(booking.getBookingId());
+            }
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+            Booking last = chunk.get(chunk.size() - 1);
+            afterAt = pass.cursorColumn().apply(last);
+            afterId = last.getBookingId();
+        }
+        return new int[]{moved, chunks};
+    }
+
+    private List<Booking> moveChunk(Transition transition, List<Booking> candidates) {
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<UUID> bookingIds = new ArrayList<>(candidates.size());
+        List<BookingLifecycleEvent> events = new ArrayList<>(candidates.size());
+        for (Booking booking : candidates) {
+            bookingIds.add(booking.getBookingId());
+            events.add(new BookingLifecycleEvent(transition.eventType, toDto(booking), now));
+        }
+        int updated = bookingRepository.updateStatusIn(bookingIds, EnumSet.of(transition.from), transition.to, now);
+        if (updated != candidates.size()) {
+            throw new IllegalStateException(String.format("%s %d of %d locked bookings, rolling the chunk back",
+                    transition.verb, updated, candidates.size()));
+        }
+        bookingEventOutbox.enqueueAll(events);
+        return candidates;
+    }
+
+    private void record(Transition transition, int moved, long nanos) {
+        Timer.builder("booking.lifecycle.run")
+                .description("Time a lifecycle run took for one transition")
+                .tag("transition", transition.tag)
+                .register(meterRegistry)
+                .record(Duration.ofNanos(nanos));
+        DistributionSummary.builder("booking.lifecycle.run.bookings")
+                .description("Bookings moved by one lifecycle run")
+                .tag("transition", transition.tag)
+                .register(meterRegistry)
+                .record(moved);
+        Counter.builder("booking.lifecycle.bookings")
+                .description("Bookings moved by the lifecycle job")
+                .tag("transition", transition.tag)
+                .register(meterRegistry)
+                .increment(moved);
+    }
+
+    private static BookingDto toDto(Booking booking) {
+        BookingDto bookingDto = new BookingDto();
+        bookingDto.setBookingId(booking.getBookingId());
+        bookingDto.setCarId(booking.getCarId());
+        bookingDto.setUserId(booking.getUserId());
+        bookingDto.setEmail(booking.getUserEmail());
+        bookingDto.setRentalStartDate(booking.getRentalStartDate());
+        bookingDto.setRentalEndDate(booking.getRentalEndDate());
+        bookingDto.setAmount(booking.getTotalPrice());
+        return bookingDto;
+    }
+
+    private enum Transition {
+        COMPLETE(BookingStatus.CONFIRMED, BookingStatus.COMPLETED, BookingLifecycleEvent.Type.COMPLETED, "Completed"),
+        EXPIRE(BookingStatus.PENDING, BookingStatus.EXPIRED, BookingLifecycleEvent.Type.EXPIRED, "Expired");
+
+        private final BookingStatus from;
+        private final BookingStatus to;
+        private final BookingLifecycleEvent.Type eventType;
+        private final String verb;
+        private final String tag = name().toLowerCase(Locale.ROOT);
+
+        Transition(BookingStatus from, BookingStatus to, BookingLifecycleEvent.Type eventType, String verb) {
+            this.from = from;
+            this.to = to;
+            this.eventType = eventType;
+            this.verb = verb;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkQuery {
+        List<Booking> find(LocalDateTime afterAt, UUID afterId);
+    }
+
+    /**
+     * One keyset walk of a run: the chunk query and the column its cursor continues from besides the id.
+     */
+    private record Pass(ChunkQuery query, Function<Booking, LocalDateTime> cursorColumn) {
+    }
+}
@@ -0,0 +1,27 @@
+package com.gui.car_rental_booking_service.service;
+
+import com.gui.car_rental_booking_service.entities.Booking;
+import com.gui.car_rental_booking_service.enums.BookingStatus;
+import com.gui.car_rental_common.commands.BookingCreationCommand;
+
+import java.math.BigDecimal;
+
+/**
+ * Copies a creation command onto a new, pending {@link Booking}. The total price is quoted by {@link PricingEngine}.
+ */
+public final class BookingMapper {
+
+    private BookingMapper() {
+    }
+
+    public static Booking fromCommand(BookingCreationCommand command, Booking booking, BigDecimal totalPrice) {
+        booking.setCarId(command.getBookingDto().getCarId());
+        booking.setRentalStartDate(command.getBookingDto().getRentalStartDate());
+        booking.setRentalEndDate(command.getBookingDto().getRentalEndDate());
+        booking.setBookingStatus(BookingStatus.PENDING);
+        booking.setTotalPrice(totalPrice);
+        booking.setUserId(command.getBookingDto().getUserId());
+        booking.setUserEmail(command.getBookingDto().getEmail());
+        return booking;
+    }
+}
@@ -0,0 +1,160 @@
+package com.gui.car_rental_booking_service.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers and counters for the saga command handlers of {@link BookingService}.
+ * <p>
+ * A handler run is timed as {@code booking.handler} and split into {@link Stage stages} as
+ * {@code booking.handler.stage}, both tagged with the handler and the {@link Outcome} it ended with. Commands
+ * are counted per outcome as {@code booking.handler.commands}; a batch run counts each of its commands. Timers
+ * publish percentile histograms, so latency quantiles can be aggregated across instances. Commands given up on
+ * and left on the dead-letter topic are counted as {@code booking.kafka.dead-letters}, and writes rejected
+ * because they were based on a stale copy of the booking as {@code booking.conflicts}, tagged with the operation.
+ */
+@Component
+public class BookingMetrics {
+
+    public static final String CREATION = "creation";
+    public static final String CREATION_BATCH = "creation-batch";
+    public static final String CANCELLATION = "cancellation";
+
+    private final MeterRegistry meterRegistry;
+
+    public BookingMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Starts timing a handler run in the {@link Stage#VALIDATE} stage.
+     */
+    public Sample start(String handler) {
+        return new Sample(handler);
+    }
+
+    public void deadLettered() {
+        Counter.builder("booking.kafka.dead-letters")
+                .description("Saga commands left on the dead-letter topic")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void conflict(String operation) {
+        Counter.builder("booking.conflicts")
+                .description("Optimistic write conflicts on bookings")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public enum Stage {
+        /** Deduplication lookup, date rules and the availability check. */
+        VALIDATE,
+        /** Writing the booking, including the commit. */
+        PERSIST,
+        /** Enqueueing the resulting event and recording the command outcome. */
+        PUBLISH;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    public enum Outcome {
+        CREATED("created"),
+        FAILED("failed"),
+        CANCELLED("cancelled"),
+        CANCELLATION_FAILED("cancellation-failed"),
+        DUPLICATE("duplicate"),
+        /** A batch in which some commands were created and others failed. */
+        PARTIAL("partial"),
+        /** A transient failure, such as a lost connection, left to the listener to retry. */
+        RETRIED("retried");
+
+        private final String tag;
+
+        Outcome(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * One handler run. Time is charged to the current stage until another one is {@link #enter(Stage) entered}
+     * or the run is {@link #stop(Outcome) stopped}. Confined to the thread running the handler.
+     */
+    public final class Sample {
+        private final String handler;
+        private final long started;
+        private final long[] stageNanos = new long[Stage.values().length];
+        private final int[] commands = new int[Outcome.values().length];
+        private Stage stage = Stage.VALIDATE;
+        private long stageStarted;
+
+        private Sample(String handler) {
+            this.handler = handler;
+            this.started = System.nanoTime();
+            this.stageStarted = started;
+        }
+
+        public void enter(Stage next) {
+            long now = System.nanoTime();
+            stageNanos[stage.ordinal()] += now - stageStarted;
+            stage = next;
+            stageStarted = now;
+        }
+
+        /**
+         * Counts commands of a batch run. Without it, {@link #stop(Outcome)} counts one command.
+         */
+        public void count(Outcome outcome, int commandCount) {
+            commands[outcome.ordinal()] += commandCount;
+        }
+
+        public void stop(Outcome outcome) {
+            enter(stage);
+            Timer.builder("booking.handler")
+                    .description("Time a saga command handler took, from dequeuing the command to its outcome")
+                    .tag("handler", handler)
+                    .tag("outcome", outcome.tag)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            for (Stage timed : Stage.values()) {
+                if (stageNanos[timed.ordinal()] == 0) {
+                    continue;
+                }
+                Timer.builder("booking.handler.stage")
+                        .description("Time a saga command handler spent in one stage")
+                        .tag("handler", handler)
+                        .tag("stage", timed.tag)
+                        .tag("outcome", outcome.tag)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)
+                        .record(stageNanos[timed.ordinal()], TimeUnit.NANOSECONDS);
+            }
+            boolean counted = false;
+            for (Outcome commandOutcome : Outcome.values()) {
+                if (commands[commandOutcome.ordinal()] > 0) {
+                    countCommands(commandOutcome, commands[commandOutcome.ordinal()]);
+                    counted = true;
+                }
+            }
+            if (!counted) {
+                countCommands(outcome, 1);
+            }
+        }
+
+        private void countCommands(Outcome outcome, int count) {
+            Counter.builder("booking.handler.commands")
+                    .description("Saga commands handled, by outcome")
+                    .tag("handler", handler)
+                    .tag("outcome", outcome.tag)
+                    .register(meterRegistry)
+                    .increment(count);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.gui.car_rental_booking_service.service;
+
+import com.gui.car_rental_booking_service.entities.Booking;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One page of bookings in {@code (createdAt, bookingId)} order.
+ *
+ * @param bookings   the bookings of this page
+ * @param nextCursor opaque token to pass back for the following page, {@code null} on the last page
+ */
+public record BookingPage(List<Booking> bookings, String nextCursor) {
+
+    static String encodeCursor(Booking last) {
+        String key = last.getCreatedAt() + "|" + last.getBookingId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Cursor decodeCursor(String token) {
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = key.indexOf('|');
+            return new Cursor(LocalDateTime.parse(key.substring(0, separator)), UUID.fromString(key.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid booking page cursor: " + token, e);
+        }
+    }
+
+    record Cursor(LocalDateTime createdAt, UUID bookingId) {
+    }
+}
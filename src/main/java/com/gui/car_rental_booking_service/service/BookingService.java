@@ -1,8 +1,15 @@
 package com.gui.car_rental_booking_service.service;
 
+import com.gui.car_rental_booking_service.Config.ReplicaRoutingDataSource;
+import com.gui.car_rental_booking_service.entities.ArchivedBooking;
 import com.gui.car_rental_booking_service.entities.Booking;
+import com.gui.car_rental_booking_service.entities.ProcessedCommand;
 import com.gui.car_rental_booking_service.enums.BookingStatus;
+import com.gui.car_rental_booking_service.enums.CommandOutcome;
+import com.gui.car_rental_booking_service.respositories.ArchivedBookingRepository;
 import com.gui.car_rental_booking_service.respositories.BookingRepository;
+import com.gui.car_rental_booking_service.service.BookingMetrics.Outcome;
+import com.gui.car_rental_booking_service.service.BookingMetrics.Stage;
 import com.gui.car_rental_common.commands.BookingCreationCommand;
 import com.gui.car_rental_common.commands.CancelBookingCommand;
 import com.gui.car_rental_common.dtos.BookingDto;
@@ -10,155 +17,822 @@ import com.gui.car_rental_common.events.booking.BookingCancellationFailedEvent;
 import com.gui.car_rental_common.events.booking.BookingCancelledEvent;
 import com.gui.car_rental_common.events.booking.BookingCreatedEvent;
 import com.gui.car_rental_common.events.booking.BookingCreationFailedEvent;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.domain.Limit;
 import org.springframework.kafka.annotation.KafkaHandler;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.retrytopic.DltStrategy;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.time.LocalDate;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+/**
+ * Handles the saga commands and serves bookings.
+ * <p>
+ * A command that fails for good, such as one breaking a date rule or asking for a booked car, is answered with
+ * a failure event. A {@link #isTransient(Throwable) transient} failure, such as a lock timeout or a lost
+ * connection, is rethrown instead and nothing is recorded for the command, so it is handled again later. In
+ * {@code record} mode the record moves through retry topics {@code booking.kafka.retry.delay-ms} apart, growing
+ * by {@code booking.kafka.retry.multiplier} up to {@code booking.kafka.retry.max-delay-ms}, while the main
+ * partition keeps flowing. After {@code booking.kafka.retry.attempts} attempts in all it lands on
+ * {@code rental-saga-booking-commands-dlt}, as do records that can't be deserialized. In {@code keyed} mode it
+ * is retried in its lane as many times, then dead-lettered and answered with a failure event by
+ * {@link #publishCommandFailed(Object, Exception)}.
+ */
 @Service
-@KafkaListener(topics = "rental-saga-booking-commands", groupId = "booking-service-group")
+@RetryableTopic(attempts = "${booking.kafka.retry.attempts:4}",
+        backoff = @Backoff(delayExpression = "${booking.kafka.retry.delay-ms:1000}",
+                multiplierExpression = "${booking.kafka.retry.multiplier:5}",
+                maxDelayExpression = "${booking.kafka.retry.max-delay-ms:60000}"),
+        kafkaTemplate = "kafkaTemplate", dltStrategy = DltStrategy.FAIL_ON_ERROR)
+@KafkaListener(id = BookingService.LISTENER_ID, topics = "rental-saga-booking-commands",
+        groupId = "booking-service-group", autoStartup = "#{'${booking.kafka.listener.mode:record}' == 'record'}")
 public class BookingService {
+
+    public static final String LISTENER_ID = "booking-command-record-listener";
+
     private final BookingRepository bookingRepository;
+    private final ArchivedBookingRepository archivedBookingRepository;
 
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final BookingEventOutbox bookingEventOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final CommandDeduplicator commandDeduplicator;
+    private final CarAvailabilityIndex carAvailabilityIndex;
+    private final DailyOccupancyIndex dailyOccupancyIndex;
+    private final EntityManager entityManager;
+    private final BookingCache bookingCache;
+    private final DatabaseBulkhead databaseBulkhead;
+    private final BookingMetrics bookingMetrics;
+    private final PricingEngine pricingEngine;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BULK_UPDATE_SIZE = 1000;
     private static final Logger logger = LoggerFactory.getLogger(BookingService.class);
-    public BookingService(BookingRepository bookingRepository, KafkaTemplate<String, Object> kafkaTemplate) {
+    public BookingService(BookingRepository bookingRepository, ArchivedBookingRepository archivedBookingRepository,
+                          BookingEventOutbox bookingEventOutbox,
+                          TransactionTemplate transactionTemplate, CommandDeduplicator commandDeduplicator,
+                          CarAvailabilityIndex carAvailabilityIndex, DailyOccupancyIndex dailyOccupancyIndex,
+                          EntityManager entityManager,
+                          BookingCache bookingCache, DatabaseBulkhead databaseBulkhead,
+                          BookingMetrics bookingMetrics, PricingEngine pricingEngine) {
         this.bookingRepository = bookingRepository;
-        this.kafkaTemplate = kafkaTemplate;
+        this.archivedBookingRepository = archivedBookingRepository;
+        this.bookingEventOutbox = bookingEventOutbox;
+        this.transactionTemplate = transactionTemplate;
+        this.commandDeduplicator = commandDeduplicator;
+        this.carAvailabilityIndex = carAvailabilityIndex;
+        this.dailyOccupancyIndex = dailyOccupancyIndex;
+        this.entityManager = entityManager;
+        this.bookingCache = bookingCache;
+        this.databaseBulkhead = databaseBulkhead;
+        this.bookingMetrics = bookingMetrics;
+        this.pricingEngine = pricingEngine;
     }
+
+    /**
+     * Served from {@link BookingCache}; the returned booking is shared with other readers and must not be
+     * modified in place. Bookings moved out by {@link BookingArchiver} are looked up in the archive.
+     * <p>
+     * Misses are read from the primary even when replicas are configured, so a row a lagging replica hasn't caught
+     * up on is never cached for the whole TTL.
+     */
     public Optional<Booking> getBookingById(UUID bookingId) {
-        return bookingRepository.findById(bookingId);
+        return bookingCache.get(bookingId, id -> ReplicaRoutingDataSource.onPrimary(() ->
+                bookingRepository.findById(id)
+                        .or(() -> archivedBookingRepository.findById(id).map(ArchivedBooking::toBooking))));
     }
 
+    /**
+     * @deprecated loads the whole table into one list; use {@link #getBookingsPage(String, int)},
+     * {@link #forEachBooking(Consumer)} or, for bulk exports, {@link BookingExporter} instead
+     */
+    @Deprecated
     public List<Booking> getAllBookings() {
         return bookingRepository.findAll();
     }
 
+    /**
+     * Keyset page of bookings in {@code (createdAt, bookingId)} order. Pass {@code null} for the first page and
+     * the returned {@link BookingPage#nextCursor()} for the following ones.
+     */
+    @Transactional(readOnly = true)
+    public BookingPage getBookingsPage(String cursor, int pageSize) {
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException(
+                    String.format("Page size must be between 1 and %d, was %d", MAX_PAGE_SIZE, pageSize));
+        }
+        Limit limit = Limit.of(pageSize + 1);
+        List<Booking> bookings;
+        if (cursor == null) {
+            bookings = bookingRepository.findAllByOrderByCreatedAtAscBookingIdAsc(limit);
+        } else {
+            BookingPage.Cursor position = BookingPage.decodeCursor(cursor);
+            bookings = bookingRepository.findPageAfter(position.createdAt(), position.bookingId(), limit);
+        }
+        if (bookings.size() <= pageSize) {
+            return new BookingPage(bookings, null);
+        }
+        List<Booking> page = List.copyOf(bookings.subList(0, pageSize));
+        return new BookingPage(page, BookingPage.encodeCursor(page.get(pageSize - 1)));
+    }
+
+    /**
+     * Streams every booking to the consumer in keyset order for bulk readers. Rows are fetched in chunks and
+     * detached once consumed, so memory use doesn't depend on the table size.
+     *
+     * @return the number of bookings visited
+     */
+    @Transactional(readOnly = true)
+    public long forEachBooking(Consumer<Booking> consumer) {
+        long count = 0;
+        try (Stream<Booking> bookings = bookingRepository.streamAllInKeysetOrder()) {
+            for (Iterator<Booking> it = bookings.iterator(); it.hasNext(); count++) {
+                Booking booking = it.next();
+                consumer.accept(booking);
+                entityManager.detach(booking);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Overwrites the stored booking with a single {@code UPDATE}; {@code createdAt} is kept. The booking must
+     * carry the version it was read with, and the update only applies if nobody wrote the booking since and its
+     * stored status {@link BookingStatus#canBecome(BookingStatus) may become} the booking's status.
+     *
+     * @return the booking, with its new version
+     * @throws ObjectOptimisticLockingFailureException if the booking was changed since it was read; read it again
+     * and reapply the change
+     * @throws IllegalStateException if the stored status can't become the booking's status
+     */
     public Booking updateBooking(Booking booking) {
-        if (!bookingRepository.existsById(booking.getBookingId())) {
-            throw new EntityNotFoundException("Booking not found with ID: " + booking.getBookingId());
+        if (booking.getVersion() == null || booking.getBookingStatus() == null) {
+            throw new IllegalArgumentException(String.format(
+                    "Booking %s must carry its status and the version it was read with", booking.getBookingId()));
+        }
+        booking.setUpdatedAt(LocalDateTime.now());
+        Set<BookingStatus> from = EnumSet.of(booking.getBookingStatus());
+        from.addAll(BookingStatus.predecessorsOf(booking.getBookingStatus()));
+        int updated = bookingRepository.updateDetails(booking, from);
+        bookingCache.invalidate(booking.getBookingId());
+        if (updated == 0) {
+            throw updateRejected(booking);
+        }
+        booking.setVersion(booking.getVersion() + 1);
+        reindex(booking);
+        return booking;
+    }
+
+    /**
+     * Moves the booking's window in the availability indexes to its stored car, dates and status.
+     */
+    private void reindex(Booking booking) {
+        releaseBooking(booking.getBookingId());
+        if (BookingStatus.ACTIVE.contains(booking.getBookingStatus()) && booking.getCarId() != null
+                && booking.getRentalStartDate() != null && booking.getRentalEndDate() != null) {
+            confirmHold(carAvailabilityIndex.hold(booking.getCarId(), booking.getRentalStartDate(),
+                    booking.getRentalEndDate()), booking.getBookingId());
         }
-        return bookingRepository.save(booking);
+    }
+
+    private RuntimeException updateRejected(Booking booking) {
+        Optional<Booking> stored = ReplicaRoutingDataSource.onPrimary(() -> bookingRepository.findById(booking.getBookingId()));
+        if (stored.isEmpty()) {
+            return new EntityNotFoundException("Booking not found with ID: " + booking.getBookingId());
+        }
+        if (!booking.getVersion().equals(stored.get().getVersion())) {
+            bookingMetrics.conflict("update");
+            return new ObjectOptimisticLockingFailureException(Booking.class, booking.getBookingId());
+        }
+        return new IllegalStateException(String.format("Booking %s is %s and can't become %s",
+                booking.getBookingId(), stored.get().getBookingStatus(), booking.getBookingStatus()));
     }
 
     public void deleteBooking(UUID bookingId) {
         bookingRepository.deleteById(bookingId);
+        releaseBooking(bookingId);
+        bookingCache.invalidate(bookingId);
+    }
+
+    /**
+     * Confirms a pending booking with a single conditional {@code UPDATE}.
+     *
+     * @return false if the booking doesn't exist or isn't pending
+     */
+    public boolean confirmBooking(UUID bookingId) {
+        int updated = bookingRepository.updateStatus(bookingId, BookingStatus.predecessorsOf(BookingStatus.CONFIRMED),
+                BookingStatus.CONFIRMED, LocalDateTime.now());
+        bookingCache.invalidate(bookingId);
+        return updated == 1;
     }
 
-    public Booking confirmBooking(UUID bookingId) {
-        Optional<Booking> bookingOptional = bookingRepository.findById(bookingId);
-        if (bookingOptional.isPresent()) {
-            Booking booking = bookingOptional.get();
-            booking.setBookingStatus(BookingStatus.CONFIRMED);
-            return bookingRepository.save(booking);
+    /**
+     * Confirms every pending booking among the ids, {@value #MAX_BULK_UPDATE_SIZE} ids per statement.
+     *
+     * @return the number of bookings confirmed
+     */
+    public int confirmBookings(Collection<UUID> bookingIds) {
+        int confirmed = transactionTemplate.execute(status ->
+                updateStatuses(bookingIds, BookingStatus.predecessorsOf(BookingStatus.CONFIRMED), BookingStatus.CONFIRMED));
+        bookingIds.forEach(bookingCache::invalidate);
+        return confirmed;
+    }
+
+    /**
+     * Cancels every active booking among the ids, {@value #MAX_BULK_UPDATE_SIZE} ids per statement, and frees
+     * their windows in the {@link CarAvailabilityIndex} once committed.
+     *
+     * @return the number of bookings cancelled
+     */
+    public int cancelBookings(Collection<UUID> bookingIds) {
+        int cancelled = transactionTemplate.execute(status ->
+                updateStatuses(bookingIds, BookingStatus.predecessorsOf(BookingStatus.CANCELLED), BookingStatus.CANCELLED));
+        for (UUID bookingId : bookingIds) {
+            releaseBooking(bookingId);
+            bookingCache.invalidate(bookingId);
         }
-        return null;
+        return cancelled;
     }
+
+    private int updateStatuses(Collection<UUID> bookingIds, Set<BookingStatus> from, BookingStatus to) {
+        List<UUID> ids = List.copyOf(bookingIds);
+        LocalDateTime now = LocalDateTime.now();
+        int updated = 0;
+        for (int i = 0; i < ids.size(); i += MAX_BULK_UPDATE_SIZE) {
+            updated += bookingRepository.updateStatusIn(ids.subList(i, Math.min(i + MAX_BULK_UPDATE_SIZE, ids.size())),
+                    from, to, now);
+        }
+        return updated;
+    }
+    /**
+     * Listener entry point; stamps the events the command causes with the timestamp of its record, so the
+     * {@link OutboxRelay} can measure the end-to-end lag.
+     */
     @KafkaHandler
+    public Booking consumeBookingCreationCommand(BookingCreationCommand command,
+                                                 @Header(name = KafkaHeaders.RECEIVED_TIMESTAMP, required = false) Long recordTimestamp) {
+        return BookingEventOutbox.withRecordTimestamp(recordTimestamp, () -> consumeBookingCreationCommand(command));
+    }
+
     public Booking consumeBookingCreationCommand(BookingCreationCommand command){
+        return ReplicaRoutingDataSource.onPrimary(() -> databaseBulkhead.call(() -> createBooking(command)));
+    }
+
+    private Booking createBooking(BookingCreationCommand command) {
 
         logger.info("Received BookingCreationCommand");
+        BookingMetrics.Sample sample = bookingMetrics.start(BookingMetrics.CREATION);
 
+        Optional<ProcessedCommand> processed =
+                commandDeduplicator.findProcessed(command.getSagaTransactionId(), BookingCreationCommand.class);
+        if (processed.isPresent()) {
+            sample.stop(Outcome.DUPLICATE);
+            return replayBookingCreation(command, processed.get());
+        }
 
         try {
-            validateDate(command.getBookingDto());
+            BookingDateValidator.validate(command.getBookingDto());
+            BigDecimal totalPrice = pricingEngine.quote(command.getBookingDto());
+            CarAvailabilityIndex.Hold hold = holdCar(command.getBookingDto());
 
+            try {
+                sample.enter(Stage.PERSIST);
+                Booking created = transactionTemplate.execute(status -> {
+                    Booking booking = new Booking();
+                    Booking savedBooking = saveBookingFromCommand(command, booking, totalPrice);
 
-            Booking booking = new Booking();
-            Booking savedBooking = saveBookingFromCommand(command, booking);
+                    sample.enter(Stage.PUBLISH);
+                    bookingEventOutbox.enqueue(bookingCreatedEvent(command, savedBooking));
+                    commandDeduplicator.record(creationSucceeded(command, savedBooking));
+                    logger.info("Published BookingCreatedEvent for Saga ID: {}", command.getSagaTransactionId());
+                    sample.enter(Stage.PERSIST);
+                    return savedBooking;
+                });
+                confirmHold(hold, created.getBookingId());
+                bookingCache.put(created);
+                sample.stop(Outcome.CREATED);
+                return created;
+            } catch (RuntimeException e) {
+                carAvailabilityIndex.release(hold);
+                throw e;
+            }
+        } catch (DataIntegrityViolationException e) {
+            // a concurrent redelivery may have won the race on the processed_commands key
+            processed = commandDeduplicator.findProcessed(command.getSagaTransactionId(), BookingCreationCommand.class);
+            if (processed.isPresent()) {
+                sample.stop(Outcome.DUPLICATE);
+                return replayBookingCreation(command, processed.get());
+            }
+            sample.enter(Stage.PUBLISH);
+            publishBookingCreationFailed(command, e);
+            sample.stop(Outcome.FAILED);
+            return null;
+        } catch (RuntimeException e) {
+            if (isTransient(e)) {
+                logger.warn("BookingCreationCommand for Saga ID {} failed transiently, leaving it to be retried: {}",
+                        command.getSagaTransactionId(), e.getMessage());
+                sample.stop(Outcome.RETRIED);
+                throw e;
+            }
+            sample.enter(Stage.PUBLISH);
+            publishBookingCreationFailed(command, e);
+            sample.stop(Outcome.FAILED);
+            return null;
+        }
 
-            command.getBookingDto().setAmount(savedBooking.getTotalPrice());
-            command.getBookingDto().setBookingId(savedBooking.getBookingId());
+    }
 
-            BookingCreatedEvent bookingCreatedEvent = new BookingCreatedEvent(
-                    command.getSagaTransactionId(), command.getBookingDto());
+    /**
+     * Batch counterpart of {@link #consumeBookingCreationCommand(BookingCreationCommand)}. Commands that fail
+     * validation are answered with a {@link BookingCreationFailedEvent}, the rest are persisted with a single
+     * {@code saveAll} in one transaction together with their {@link BookingCreatedEvent}s. If that transaction
+     * fails the commands are retried one by one so a single bad row only fails its own saga.
+     *
+     * @return the persisted bookings, in command order
+     */
+    public List<Booking> consumeBookingCreationCommands(List<BookingCreationCommand> commands) {
+        return ReplicaRoutingDataSource.onPrimary(() -> databaseBulkhead.call(() -> createBookings(commands)));
+    }
 
-            kafkaTemplate.send("booking-service-events", bookingCreatedEvent);
-            logger.info("Published BookingCreatedEvent for Saga ID: {}", command.getSagaTransactionId());
+    private List<Booking> createBookings(List<BookingCreationCommand> commands) {
+        logger.info("Received batch of {} BookingCreationCommands", commands.size());
+        BookingMetrics.Sample sample = bookingMetrics.start(BookingMetrics.CREATION_BATCH);
 
-            return savedBooking;
+        Map<UUID, ProcessedCommand> processed = commandDeduplicator.findAllProcessed(
+                commands.stream().map(BookingCreationCommand::getSagaTransactionId).toList(), BookingCreationCommand.class);
+        Set<UUID> seen = new HashSet<>();
+        List<BookingCreationCommand> accepted = new ArrayList<>(commands.size());
+        List<Booking> bookings = new ArrayList<>(commands.size());
+        List<CarAvailabilityIndex.Hold> holds = new ArrayList<>(commands.size());
+        List<BookingCreationCommand> rejected = new ArrayList<>();
+        List<Exception> rejections = new ArrayList<>();
+        int duplicates = 0;
+        for (BookingCreationCommand command : commands) {
+            if (processed.containsKey(command.getSagaTransactionId()) || !seen.add(command.getSagaTransactionId())) {
+                logger.info("Skipping duplicate BookingCreationCommand for Saga ID: {}", command.getSagaTransactionId());
+                duplicates++;
+                continue;
+            }
+            try {
+                BookingDateValidator.validate(command.getBookingDto());
+                BigDecimal totalPrice = pricingEngine.quote(command.getBookingDto());
+                holds.add(holdCar(command.getBookingDto()));
+                bookings.add(BookingMapper.fromCommand(command, new Booking(), totalPrice));
+                accepted.add(command);
+            } catch (Exception e) {
+                rejected.add(command);
+                rejections.add(e);
+            }
+        }
+        sample.count(Outcome.DUPLICATE, duplicates);
+        sample.count(Outcome.FAILED, rejected.size());
+        sample.enter(Stage.PUBLISH);
+        publishBookingCreationFailed(rejected, rejections);
+        if (bookings.isEmpty()) {
+            sample.stop(rejected.isEmpty() ? Outcome.DUPLICATE : Outcome.FAILED);
+            return List.of();
+        }
+
+        List<Booking> created;
+        try {
+            sample.enter(Stage.PERSIST);
+            created = transactionTemplate.execute(status -> {
+                checkCarsNotBooked(bookings);
+                List<Booking> savedBookings = bookingRepository.saveAll(bookings);
+                sample.enter(Stage.PUBLISH);
+                List<BookingCreatedEvent> events = new ArrayList<>(savedBookings.size());
+                List<ProcessedCommand> results = new ArrayList<>(savedBookings.size());
+                for (int i = 0; i < savedBookings.size(); i++) {
+                    events.add(bookingCreatedEvent(accepted.get(i), savedBookings.get(i)));
+                    results.add(creationSucceeded(accepted.get(i), savedBookings.get(i)));
+                }
+                bookingEventOutbox.enqueueAll(events);
+                commandDeduplicator.recordAll(results);
+                logger.info("Published {} BookingCreatedEvents", events.size());
+                sample.enter(Stage.PERSIST);
+                return savedBookings;
+            });
         } catch (Exception e) {
-            logger.error("Error processing BookingCreationCommand for Saga ID {}: {}",
-                    command.getSagaTransactionId(), e.getMessage());
-            BookingCreationFailedEvent failedEvent = new BookingCreationFailedEvent(command.getSagaTransactionId(), command.getBookingDto());
+            logger.warn("Batch insert of {} bookings failed, retrying one by one: {}", bookings.size(), e.getMessage());
+            created = saveIndividually(accepted, bookings, holds, sample);
+            sample.stop(created.isEmpty() ? Outcome.FAILED
+                    : rejected.isEmpty() && created.size() == bookings.size() ? Outcome.CREATED : Outcome.PARTIAL);
+            return created;
+        }
+        for (int i = 0; i < created.size(); i++) {
+            confirmHold(holds.get(i), created.get(i).getBookingId());
+            bookingCache.put(created.get(i));
+        }
+        sample.count(Outcome.CREATED, created.size());
+        sample.stop(rejected.isEmpty() ? Outcome.CREATED : Outcome.PARTIAL);
+        return created;
+    }
+
+    private List<Booking> saveIndividually(List<BookingCreationCommand> commands, List<Booking> bookings,
+                                           List<CarAvailabilityIndex.Hold> holds, BookingMetrics.Sample sample) {
+        List<Booking> savedBookings = new ArrayList<>(bookings.size());
+        for (int i = 0; i < bookings.size(); i++) {
+            BookingCreationCommand command = commands.get(i);
+            Booking booking = bookings.get(i);
+            // the failed batch already assigned ids and versions; clear them so the retry persists instead of merging
+            booking.setBookingId(null);
+            booking.setVersion(null);
+            CarAvailabilityIndex.Hold hold = holds.get(i);
+            try {
+                sample.enter(Stage.PERSIST);
+                Booking created = transactionTemplate.execute(status -> {
+                    checkCarNotBooked(booking);
+                    Booking savedBooking = bookingRepository.save(booking);
+                    sample.enter(Stage.PUBLISH);
+                    bookingEventOutbox.enqueue(bookingCreatedEvent(command, savedBooking));
+                    commandDeduplicator.record(creationSucceeded(command, savedBooking));
+                    sample.enter(Stage.PERSIST);
+                    return savedBooking;
+                });
+                confirmHold(hold, created.getBookingId());
+                bookingCache.put(created);
+                savedBookings.add(created);
+                sample.count(Outcome.CREATED, 1);
+            } catch (RuntimeException e) {
+                carAvailabilityIndex.release(hold);
+                if (isTransient(e)) {
+                    // what was saved so far stays; the redelivered batch skips it as duplicates
+                    sample.count(Outcome.RETRIED, bookings.size() - i);
+                    sample.stop(Outcome.RETRIED);
+                    for (int j = i + 1; j < holds.size(); j++) {
+                        carAvailabilityIndex.release(holds.get(j));
+                    }
+                    throw e;
+                }
+                if (e instanceof DataIntegrityViolationException && commandDeduplicator
+                        .findProcessed(command.getSagaTransactionId(), BookingCreationCommand.class).isPresent()) {
+                    logger.info("Skipping duplicate BookingCreationCommand for Saga ID: {}", command.getSagaTransactionId());
+                    sample.count(Outcome.DUPLICATE, 1);
+                    continue;
+                }
+                sample.enter(Stage.PUBLISH);
+                publishBookingCreationFailed(command, e);
+                sample.count(Outcome.FAILED, 1);
+            }
+        }
+        return savedBookings;
+    }
+
+    private static BookingCreatedEvent bookingCreatedEvent(BookingCreationCommand command, Booking savedBooking) {
+        command.getBookingDto().setAmount(savedBooking.getTotalPrice());
+        command.getBookingDto().setBookingId(savedBooking.getBookingId());
+
+        return new BookingCreatedEvent(command.getSagaTransactionId(), command.getBookingDto());
+    }
 
-            failedEvent.setMessage("Booking creation failed: " + e.getMessage());
-            kafkaTemplate.send("booking-service-events", failedEvent);
+    private static ProcessedCommand creationSucceeded(BookingCreationCommand command, Booking savedBooking) {
+        return new ProcessedCommand(command.getSagaTransactionId(), BookingCreationCommand.class.getSimpleName(),
+                CommandOutcome.SUCCEEDED, savedBooking.getBookingId(), savedBooking.getTotalPrice());
+    }
+
+    private static ProcessedCommand creationFailed(BookingCreationCommand command) {
+        return new ProcessedCommand(command.getSagaTransactionId(), BookingCreationCommand.class.getSimpleName(),
+                CommandOutcome.FAILED, null, null);
+    }
 
-            logger.info("Published BookingCreationFailedEvent for Saga ID: {}", command.getSagaTransactionId());
+    /**
+     * Answers a redelivered creation command with the booking produced the first time, rebuilt from the
+     * recorded result and the command itself. Its events were already enqueued by the original run.
+     */
+    private static Booking replayBookingCreation(BookingCreationCommand command, ProcessedCommand processed) {
+        logger.info("Skipping duplicate BookingCreationCommand for Saga ID: {}", command.getSagaTransactionId());
+        if (processed.getOutcome() == CommandOutcome.FAILED) {
             return null;
         }
+        BookingDto bookingDto = command.getBookingDto();
+        bookingDto.setBookingId(processed.getBookingId());
+        bookingDto.setAmount(processed.getTotalPrice());
+        return new Booking(processed.getBookingId(), bookingDto.getCarId(), bookingDto.getUserId(), bookingDto.getEmail(),
+                bookingDto.getRentalStartDate(), bookingDto.getRentalEndDate(), BookingStatus.PENDING,
+                processed.getTotalPrice(), null, null);
+    }
+
+    /**
+     * Enqueues the failure in a transaction of its own, so it is not rolled back together with whatever
+     * caused it.
+     */
+    private void publishBookingCreationFailed(BookingCreationCommand command, Exception e) {
+        BookingCreationFailedEvent failedEvent = bookingCreationFailedEvent(command, e);
+        transactionTemplate.executeWithoutResult(status -> {
+            bookingEventOutbox.enqueue(failedEvent);
+            commandDeduplicator.record(creationFailed(command));
+        });
+
+        logger.info("Published BookingCreationFailedEvent for Saga ID: {}", command.getSagaTransactionId());
+    }
+
+    private void publishBookingCreationFailed(List<BookingCreationCommand> commands, List<Exception> causes) {
+        if (commands.isEmpty()) {
+            return;
+        }
+        List<BookingCreationFailedEvent> failedEvents = new ArrayList<>(commands.size());
+        List<ProcessedCommand> results = new ArrayList<>(commands.size());
+        for (int i = 0; i < commands.size(); i++) {
+            failedEvents.add(bookingCreationFailedEvent(commands.get(i), causes.get(i)));
+            results.add(creationFailed(commands.get(i)));
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            bookingEventOutbox.enqueueAll(failedEvents);
+            commandDeduplicator.recordAll(results);
+        });
+
+        logger.info("Published {} BookingCreationFailedEvents", failedEvents.size());
+    }
+
+    private static BookingCreationFailedEvent bookingCreationFailedEvent(BookingCreationCommand command, Exception e) {
+        logger.error("Error processing BookingCreationCommand for Saga ID {}: {}",
+                command.getSagaTransactionId(), e.getMessage());
+        BookingCreationFailedEvent failedEvent = new BookingCreationFailedEvent(command.getSagaTransactionId(), command.getBookingDto());
 
+        failedEvent.setMessage("Booking creation failed: " + e.getMessage());
+        return failedEvent;
     }
 
-    private Booking saveBookingFromCommand(BookingCreationCommand command, Booking booking) {
-        booking.setCarId(command.getBookingDto().getCarId());
-        booking.setRentalStartDate(command.getBookingDto().getRentalStartDate());
-        booking.setRentalEndDate(command.getBookingDto().getRentalEndDate());
-        booking.setBookingStatus(BookingStatus.PENDING);
-        booking.setTotalPrice(command.getBookingDto().getPricePerDay());
-        booking.setUserId(command.getBookingDto().getUserId());
-        booking.setUserEmail(command.getBookingDto().getEmail());
+    private Booking saveBookingFromCommand(BookingCreationCommand command, Booking booking, BigDecimal totalPrice) {
+        BookingMapper.fromCommand(command, booking, totalPrice);
+        checkCarNotBooked(booking);
         return bookingRepository.save(booking);
     }
 
-    private static void validateDate(BookingDto bookingDto) {
-        LocalDate now   = LocalDate.now();
-        LocalDate start = bookingDto.getRentalStartDate().toLocalDate();
-        LocalDate end   = bookingDto.getRentalEndDate().toLocalDate();
+    private void confirmHold(CarAvailabilityIndex.Hold hold, UUID bookingId) {
+        carAvailabilityIndex.confirm(hold, bookingId);
+        dailyOccupancyIndex.occupy(hold.getCarId(), hold.getStart(), hold.getEnd());
+    }
 
-        if (start.isBefore(now.plusDays(1))) {
-            throw new IllegalArgumentException(
-                    String.format("Start date %s must be at least one day after now %s", start, now)
-            );
+    private void releaseBooking(UUID bookingId) {
+        carAvailabilityIndex.releaseBooking(bookingId)
+                .ifPresent(hold -> dailyOccupancyIndex.release(hold.getCarId(), hold.getStart(), hold.getEnd()));
+    }
+
+    /**
+     * Takes the window in the {@link CarAvailabilityIndex}. The index misses what other instances cancelled,
+     * expired or updated, so a window taken by persisted bookings is checked against the database before the
+     * command is failed; if the car is free there, those stale windows are evicted and the window is tried again.
+     * A window still being persisted by another command isn't in the database yet, so it always fails the
+     * command. The insert transaction makes the final decision, see {@link #checkCarNotBooked(Booking)}.
+     */
+    private CarAvailabilityIndex.Hold holdCar(BookingDto bookingDto) {
+        UUID carId = bookingDto.getCarId();
+        LocalDateTime start = bookingDto.getRentalStartDate();
+        LocalDateTime end = bookingDto.getRentalEndDate();
+        Optional<CarAvailabilityIndex.Hold> hold = carAvailabilityIndex.tryHold(carId, start, end);
+        if (hold.isPresent()) {
+            return hold.get();
         }
-        if(end.isBefore(start.plusDays(1))){
-            throw new IllegalArgumentException(
-                    String.format("End date %s must be at least one day after start date %s", end, start)
-            );
+        boolean booked = Boolean.TRUE.equals(transactionTemplate.execute(status ->
+                !bookingRepository.findOverlappingForUpdate(carId, start, end, BookingStatus.ACTIVE).isEmpty()));
+        if (booked) {
+            throw carAlreadyBooked(carId, start, end);
+        }
+        for (CarAvailabilityIndex.Hold stale : carAvailabilityIndex.evictConfirmed(carId, start, end)) {
+            dailyOccupancyIndex.release(stale.getCarId(), stale.getStart(), stale.getEnd());
         }
+        return carAvailabilityIndex.tryHold(carId, start, end).orElseThrow(() -> carAlreadyBooked(carId, start, end));
+    }
 
-        if (start.plusMonths(2).isBefore(end)) {
-            throw new IllegalArgumentException(
-                    String.format("Booking duration should not exceeds 2 months. Start date %s, End date %s", start, end)
-            );
+    /**
+     * Final guard behind {@link CarAvailabilityIndex}: fails the booking if an active booking of the car overlaps
+     * it. The overlapping rows are locked, so they can't be cancelled or moved until this transaction ends. When
+     * none exist the locking read takes no row lock: under REPEATABLE READ it takes gap locks, and two instances
+     * inserting overlapping bookings of the car deadlock, leaving the loser to be retried as a transient failure;
+     * under READ COMMITTED it takes no lock at all and both inserts can pass.
+     */
+    private void checkCarNotBooked(Booking booking) {
+        if (!bookingRepository.findOverlappingForUpdate(booking.getCarId(), booking.getRentalStartDate(),
+                booking.getRentalEndDate(), BookingStatus.ACTIVE).isEmpty()) {
+            throw carAlreadyBooked(booking.getCarId(), booking.getRentalStartDate(), booking.getRentalEndDate());
         }
+    }
 
+    /**
+     * {@link #checkCarNotBooked(Booking)} for a batch, which the database can't check against itself before
+     * {@code saveAll}: the bookings must not overlap each other either.
+     */
+    private void checkCarsNotBooked(List<Booking> bookings) {
+        Map<UUID, List<Booking>> byCar = new HashMap<>();
+        for (Booking booking : bookings) {
+            List<Booking> ofCar = byCar.computeIfAbsent(booking.getCarId(), carId -> new ArrayList<>());
+            for (Booking other : ofCar) {
+                if (booking.getRentalStartDate().isBefore(other.getRentalEndDate())
+                        && booking.getRentalEndDate().isAfter(other.getRentalStartDate())) {
+                    throw carAlreadyBooked(booking.getCarId(), booking.getRentalStartDate(),
+                            booking.getRentalEndDate());
+                }
+            }
+            ofCar.add(booking);
+            checkCarNotBooked(booking);
+        }
     }
 
+    private static IllegalArgumentException carAlreadyBooked(UUID carId, LocalDateTime start, LocalDateTime end) {
+        return new IllegalArgumentException(
+                String.format("Car %s is already booked between %s and %s", carId, start, end));
+    }
 
+    /**
+     * Listener entry point, see {@link #consumeBookingCreationCommand(BookingCreationCommand, Long)}.
+     */
     @KafkaHandler
+    public void consumeCancelBookingCommand(CancelBookingCommand command,
+                                            @Header(name = KafkaHeaders.RECEIVED_TIMESTAMP, required = false) Long recordTimestamp) {
+        BookingEventOutbox.withRecordTimestamp(recordTimestamp, () -> {
+            consumeCancelBookingCommand(command);
+            return null;
+        });
+    }
+
     public void consumeCancelBookingCommand(CancelBookingCommand command){
+        ReplicaRoutingDataSource.onPrimary(() -> {
+            databaseBulkhead.run(() -> cancelBooking(command));
+            return null;
+        });
+    }
+
+    private void cancelBooking(CancelBookingCommand command) {
         logger.info("Received CancelBookingCommand from Saga Id: {}", command.getSagaTransactionId());
+        BookingMetrics.Sample sample = bookingMetrics.start(BookingMetrics.CANCELLATION);
+       if (commandDeduplicator.findProcessed(command.getSagaTransactionId(), CancelBookingCommand.class).isPresent()) {
+           logger.info("Skipping duplicate CancelBookingCommand for Saga Id: {}", command.getSagaTransactionId());
+           sample.stop(Outcome.DUPLICATE);
+           return;
+       }
        try{
-           Booking booking = bookingRepository.findById(command.getBookingDto().getBookingId()).orElseThrow();
-           booking.setBookingStatus(BookingStatus.CANCELLED);
-           Booking updatedBooking = bookingRepository.save(booking);
-           BookingCancelledEvent bookingCancelledEvent = new BookingCancelledEvent(command.getSagaTransactionId(), command.getBookingDto());
-           kafkaTemplate.send("booking-service-events", bookingCancelledEvent);
-           logger.info("Booking cancelled with Booking Id: {} for Saga Id: {}",updatedBooking.getBookingId() , command.getSagaTransactionId());
-       }catch(Exception e){
+           UUID bookingId = command.getBookingDto().getBookingId();
+           sample.enter(Stage.PERSIST);
+           transactionTemplate.executeWithoutResult(status -> {
+               if (bookingRepository.updateStatus(bookingId, BookingStatus.predecessorsOf(BookingStatus.CANCELLED),
+                       BookingStatus.CANCELLED, LocalDateTime.now()) == 0) {
+                   Booking booking = bookingRepository.findById(bookingId).orElseThrow();
+                   checkCancelled(booking);
+                   fillInCarId(command.getBookingDto(), booking.getCarId());
+               }
+               fillInCarId(command.getBookingDto());
+               sample.enter(Stage.PUBLISH);
+               bookingEventOutbox.enqueue(new BookingCancelledEvent(command.getSagaTransactionId(), command.getBookingDto()));
+               commandDeduplicator.record(new ProcessedCommand(command.getSagaTransactionId(),
+                       CancelBookingCommand.class.getSimpleName(), CommandOutcome.SUCCEEDED, bookingId, null));
+               sample.enter(Stage.PERSIST);
+           });
+           releaseBooking(bookingId);
+           bookingCache.invalidate(bookingId);
+           sample.stop(Outcome.CANCELLED);
+           logger.info("Booking cancelled with Booking Id: {} for Saga Id: {}", bookingId, command.getSagaTransactionId());
+       }catch(RuntimeException e){
+           if (isTransient(e)) {
+               logger.warn("CancelBookingCommand for Saga Id {} failed transiently, leaving it to be retried: {}",
+                       command.getSagaTransactionId(), e.getMessage());
+               sample.stop(Outcome.RETRIED);
+               throw e;
+           }
            logger.error("Error processing CancelBookingCommand: {}", e.getMessage(), e);
-
-           BookingCancellationFailedEvent event = new BookingCancellationFailedEvent(
-                   command.getSagaTransactionId(),
-                   command.getBookingDto(),
-                   e.getMessage()
-           );
-           kafkaTemplate.send("booking-service-events", event);
+           sample.enter(Stage.PUBLISH);
+           publishBookingCancellationFailed(command, e);
+           sample.stop(Outcome.CANCELLATION_FAILED);
 
            logger.error("Cancel booking failed {}. Car still booked", e.getMessage());
        }
 
     }
 
+    private void publishBookingCancellationFailed(CancelBookingCommand command, Exception e) {
+        BookingCancellationFailedEvent event = new BookingCancellationFailedEvent(
+                command.getSagaTransactionId(),
+                command.getBookingDto(),
+                e.getMessage()
+        );
+        transactionTemplate.executeWithoutResult(status -> {
+            fillInCarId(command.getBookingDto());
+            bookingEventOutbox.enqueue(event);
+            commandDeduplicator.record(new ProcessedCommand(command.getSagaTransactionId(),
+                    CancelBookingCommand.class.getSimpleName(), CommandOutcome.FAILED,
+                    command.getBookingDto().getBookingId(), null));
+        });
+    }
+
+    /**
+     * Fills in the car of a cancellation that only names the booking, from the stored booking if there is one, so
+     * its events are keyed by car like the booking's creation and land on the same partition after it.
+     */
+    private void fillInCarId(BookingDto bookingDto) {
+        if (bookingDto.getCarId() == null && bookingDto.getBookingId() != null) {
+            bookingRepository.findCarIdByBookingId(bookingDto.getBookingId())
+                    .ifPresent(carId -> fillInCarId(bookingDto, carId));
+        }
+    }
+
+    private static void fillInCarId(BookingDto bookingDto, UUID carId) {
+        if (bookingDto.getCarId() == null) {
+            bookingDto.setCarId(carId);
+        }
+    }
+
+    /**
+     * Answers a command that is given up on, such as one that kept failing transiently, with the failure event
+     * of its type, so the saga can compensate instead of waiting for it. Commands already answered and other
+     * values are ignored.
+     */
+    public void publishCommandFailed(Object command, Exception cause) {
+        if (command instanceof BookingCreationCommand creationCommand) {
+            databaseBulkhead.run(() -> {
+                if (commandDeduplicator.findProcessed(creationCommand.getSagaTransactionId(),
+                        BookingCreationCommand.class).isEmpty()) {
+                    publishBookingCreationFailed(creationCommand, cause);
+                }
+            });
+        } else if (command instanceof CancelBookingCommand cancelCommand) {
+            databaseBulkhead.run(() -> {
+                if (commandDeduplicator.findProcessed(cancelCommand.getSagaTransactionId(),
+                        CancelBookingCommand.class).isEmpty()) {
+                    publishBookingCancellationFailed(cancelCommand, cause);
+                }
+            });
+        }
+    }
+
+    /**
+     * Last stop of commands that failed every attempt: the saga is answered with a failure event, and the record
+     * stays on the dead-letter topic, with the failure in its headers, for an operator to inspect and replay.
+     */
+    @DltHandler
+    public void onDeadLetter(ConsumerRecord<String, Object> record) {
+        logger.error("{} with key {} dead-lettered to {}@{}",
+                record.value() == null ? null : record.value().getClass().getSimpleName(), record.key(),
+                record.topic(), record.offset());
+        bookingMetrics.deadLettered();
+        var failure = record.headers().lastHeader(KafkaHeaders.DLT_EXCEPTION_MESSAGE);
+        publishCommandFailed(record.value(), new IllegalStateException("Gave up after every attempt: "
+                + (failure == null ? "unknown failure" : new String(failure.value(), StandardCharsets.UTF_8))));
+    }
+
+    /**
+     * Whether the failure may go away by itself, so the command is worth handling again: lock and query
+     * timeouts, deadlocks, lost or refused connections. Optimistic conflicts are left out: the writer's copy is
+     * stale, and handling the same request again doesn't change that.
+     */
+    public static boolean isTransient(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockingFailureException) {
+                return false;
+            }
+            if (cause instanceof TransientDataAccessException || cause instanceof RecoverableDataAccessException
+                    || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof CannotCreateTransactionException
+                    || cause instanceof SQLTransientException || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The conditional update matches every booking that can still be cancelled, and nothing moves a booking back
+     * to an active status, so one it didn't match is either cancelled already, which makes the command a
+     * repeat, or finished some other way.
+     */
+    private static void checkCancelled(Booking booking) {
+        if (booking.getBookingStatus() != BookingStatus.CANCELLED) {
+            throw new IllegalStateException(String.format("Booking %s is %s and can no longer be cancelled",
+                    booking.getBookingId(), booking.getBookingStatus()));
+        }
+    }
+
 }
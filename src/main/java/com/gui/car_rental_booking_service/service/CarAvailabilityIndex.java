@@ -0,0 +1,341 @@
+package com.gui.car_rental_booking_service.service;
+
+import com.gui.car_rental_booking_service.enums.BookingStatus;
+import com.gui.car_rental_booking_service.respositories.BookingRepository;
+import com.gui.car_rental_booking_service.respositories.BookingWindow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of the {@code [rentalStartDate, rentalEndDate)} windows in which each car is taken, so
+ * overlapping creation commands are rejected without a range query against {@code bookings}.
+ * <p>
+ * Each car keeps its windows sorted by start; an overlap check only looks at the windows starting between
+ * {@code start - longest window of the car} and {@code end}. Cars are spread over a fixed set of lock stripes,
+ * so checks for unrelated cars don't contend. A window is first taken as a {@link Hold} while the booking is
+ * being persisted and is either {@link #confirm(Hold, UUID) confirmed} with the booking id or
+ * {@link #release(Hold) released} if that fails.
+ * <p>
+ * The index only covers what this instance has seen since startup, and misses what other instances cancel,
+ * expire or update, so a window it reports as taken is only a hint. Callers confirm it against the database
+ * and, if the car is free after all, {@link #evictConfirmed(UUID, LocalDateTime, LocalDateTime) evict} the stale
+ * windows and try again. Holds still being persisted are never evicted, so a window overlapping one of them stays
+ * taken. The locking overlap query in the insert transaction remains the final guard.
+ */
+@Component
+public class CarAvailabilityIndex implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(CarAvailabilityIndex.class);
+
+    private final BookingRepository bookingRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ReentrantReadWriteLock[] stripes;
+    private final Map<UUID, Timeline> timelines = new ConcurrentHashMap<>();
+    private final Map<UUID, UUID> carByBooking = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile boolean running;
+
+    public CarAvailabilityIndex(BookingRepository bookingRepository, TransactionTemplate transactionTemplate,
+                                @Value("${booking.availability.lock-stripes:64}") int lockStripes) {
+        this.bookingRepository = bookingRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.stripes = new ReentrantReadWriteLock[Integer.highestOneBit(Math.max(1, lockStripes - 1)) << 1];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * Takes the window for the car if no other window overlaps it.
+     *
+     * @return the hold, or empty if the car is already booked in that window
+     */
+    public Optional<Hold> tryHold(UUID carId, LocalDateTime start, LocalDateTime end) {
+        ReentrantReadWriteLock.WriteLock lock = stripe(carId).writeLock();
+        lock.lock();
+        try {
+            Timeline timeline = timelines.computeIfAbsent(carId, id -> new Timeline());
+            for (Hold ended : timeline.evictEndedBefore(LocalDateTime.now())) {
+                if (ended.bookingId != null) {
+                    carByBooking.remove(ended.bookingId);
+                }
+            }
+            if (timeline.overlaps(start, end)) {
+                return Optional.empty();
+            }
+            Hold hold = new Hold(carId, start, end, sequence.incrementAndGet());
+            timeline.add(hold);
+            return Optional.of(hold);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the window for the car whatever overlaps it, for a booking whose window was just stored.
+     */
+    public Hold hold(UUID carId, LocalDateTime start, LocalDateTime end) {
+        ReentrantReadWriteLock.WriteLock lock = stripe(carId).writeLock();
+        lock.lock();
+        try {
+            Hold hold = new Hold(carId, start, end, sequence.incrementAndGet());
+            timelines.computeIfAbsent(carId, id -> new Timeline()).add(hold);
+            return hold;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the windows of persisted bookings overlapping the window, once the database showed they no longer
+     * hold the car. Holds still being persisted are kept.
+     *
+     * @return the windows dropped
+     */
+    public List<Hold> evictConfirmed(UUID carId, LocalDateTime start, LocalDateTime end) {
+        List<Hold> evicted;
+        ReentrantReadWriteLock.WriteLock lock = stripe(carId).writeLock();
+        lock.lock();
+        try {
+            Timeline timeline = timelines.get(carId);
+            evicted = timeline == null ? List.of() : timeline.removeConfirmedOverlapping(start, end);
+        } finally {
+            lock.unlock();
+        }
+        for (Hold hold : evicted) {
+            carByBooking.remove(hold.bookingId);
+        }
+        if (!evicted.isEmpty()) {
+            logger.info("Evicted {} stale windows of car {} from the availability index", evicted.size(), carId);
+        }
+        return evicted;
+    }
+
+    public boolean isAvailable(UUID carId, LocalDateTime start, LocalDateTime end) {
+        ReentrantReadWriteLock.ReadLock lock = stripe(carId).readLock();
+        lock.lock();
+        try {
+            Timeline timeline = timelines.get(carId);
+            return timeline == null || !timeline.overlaps(start, end);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void confirm(Hold hold, UUID bookingId) {
+        hold.bookingId = bookingId;
+        carByBooking.put(bookingId, hold.carId);
+    }
+
+    public void release(Hold hold) {
+        ReentrantReadWriteLock.WriteLock lock = stripe(hold.carId).writeLock();
+        lock.lock();
+        try {
+            Timeline timeline = timelines.get(hold.carId);
+            if (timeline != null) {
+                timeline.remove(hold);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (hold.bookingId != null) {
+            carByBooking.remove(hold.bookingId);
+        }
+    }
+
+    /**
+     * Frees the window of a booking that was cancelled. Unknown ids are ignored.
+     *
+     * @return the window that was freed, or empty if the booking wasn't in the index
+     */
+    public Optional<Hold> releaseBooking(UUID bookingId) {
+        UUID carId = carByBooking.remove(bookingId);
+        if (carId == null) {
+            return Optional.empty();
+        }
+        ReentrantReadWriteLock.WriteLock lock = stripe(carId).writeLock();
+        lock.lock();
+        try {
+            Timeline timeline = timelines.get(carId);
+            return timeline == null ? Optional.empty() : timeline.removeBooking(bookingId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the index from the active bookings that haven't ended yet.
+     */
+    public void load() {
+        long started = System.nanoTime();
+        int loaded = transactionTemplate.execute(status -> {
+            int count = 0;
+            try (Stream<BookingWindow> windows = bookingRepository.streamByBookingStatusInAndRentalEndDateAfter(
+                    BookingStatus.ACTIVE, LocalDateTime.now())) {
+                for (Iterator<BookingWindow> it = windows.iterator(); it.hasNext(); count++) {
+                    BookingWindow window = it.next();
+                    if (window.getRentalStartDate() == null || window.getRentalEndDate() == null) {
+                        continue;
+                    }
+                    Hold hold = new Hold(window.getCarId(), window.getRentalStartDate(), window.getRentalEndDate(),
+                            sequence.incrementAndGet());
+                    ReentrantReadWriteLock.WriteLock lock = stripe(hold.carId).writeLock();
+                    lock.lock();
+                    try {
+                        timelines.computeIfAbsent(hold.carId, id -> new Timeline()).add(hold);
+                    } finally {
+                        lock.unlock();
+                    }
+                    confirm(hold, window.getBookingId());
+                }
+            }
+            return count;
+        });
+        logger.info("Loaded {} booking windows for {} cars into the availability index in {} ms",
+                loaded, timelines.size(), Duration.ofNanos(System.nanoTime() - started).toMillis());
+    }
+
+    private ReentrantReadWriteLock stripe(UUID carId) {
+        int h = carId.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * Loads before the Kafka listener containers start consuming.
+     */
+    @Override
+    public void start() {
+        load();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    public static final class Hold {
+        private final UUID carId;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final long sequence;
+        private volatile UUID bookingId;
+
+        private Hold(UUID carId, LocalDateTime start, LocalDateTime end, long sequence) {
+            this.carId = carId;
+            this.start = start;
+            this.end = end;
+            this.sequence = sequence;
+        }
+
+        public UUID getCarId() {
+            return carId;
+        }
+
+        public LocalDateTime getStart() {
+            return start;
+        }
+
+        public LocalDateTime getEnd() {
+            return end;
+        }
+
+        public UUID getBookingId() {
+            return bookingId;
+        }
+    }
+
+    /**
+     * Windows of one car ordered by start. Only accessed under the car's stripe lock.
+     */
+    private static final class Timeline {
+        private static final Comparator<Hold> BY_START =
+                Comparator.comparing((Hold h) -> h.start).thenComparingLong(h -> h.sequence);
+
+        private final TreeSet<Hold> holds = new TreeSet<>(BY_START);
+        private Duration longest = Duration.ZERO;
+
+        boolean overlaps(LocalDateTime start, LocalDateTime end) {
+            for (Hold hold : candidates(start, end)) {
+                if (hold.end.isAfter(start)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        List<Hold> removeConfirmedOverlapping(LocalDateTime start, LocalDateTime end) {
+            List<Hold> removed = new ArrayList<>();
+            for (Iterator<Hold> it = candidates(start, end).iterator(); it.hasNext(); ) {
+                Hold hold = it.next();
+                if (hold.bookingId != null && hold.end.isAfter(start)) {
+                    it.remove();
+                    removed.add(hold);
+                }
+            }
+            return removed;
+        }
+
+        private NavigableSet<Hold> candidates(LocalDateTime start, LocalDateTime end) {
+            Hold from = new Hold(null, start.minus(longest), null, Long.MIN_VALUE);
+            Hold to = new Hold(null, end, null, Long.MIN_VALUE);
+            return holds.subSet(from, true, to, false);
+        }
+
+        void add(Hold hold) {
+            holds.add(hold);
+            Duration length = Duration.between(hold.start, hold.end);
+            if (length.compareTo(longest) > 0) {
+                longest = length;
+            }
+        }
+
+        void remove(Hold hold) {
+            holds.remove(hold);
+        }
+
+        Optional<Hold> removeBooking(UUID bookingId) {
+            for (Iterator<Hold> it = holds.iterator(); it.hasNext(); ) {
+                Hold hold = it.next();
+                if (bookingId.equals(hold.bookingId)) {
+                    it.remove();
+                    return Optional.of(hold);
+                }
+            }
+            return Optional.empty();
+        }
+
+        /**
+         * Drops leading windows that are already over.
+         */
+        List<Hold> evictEndedBefore(LocalDateTime now) {
+            List<Hold> ended = new ArrayList<>();
+            while (!holds.isEmpty() && !holds.first().end.isAfter(now)) {
+                ended.add(holds.pollFirst());
+            }
+            return ended;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.gui.car_rental_booking_service.service;
+
+import com.gui.car_rental_booking_service.entities.ProcessedCommand;
+import com.gui.car_rental_booking_service.entities.ProcessedCommandId;
+import com.gui.car_rental_booking_service.respositories.ProcessedCommandRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+
+/**
+ * Remembers which saga commands were already handled so Kafka redeliveries don't create a second booking or
+ * emit a second event. Lookups go to a bounded LRU of recent results first and to the
+ * {@code processed_commands} table on a miss; results are recorded in the caller's transaction and only enter
+ * the LRU once it commits.
+ */
+@Service
+public class CommandDeduplicator {
+
+    private final ProcessedCommandRepository processedCommandRepository;
+    private final Map<ProcessedCommandId, ProcessedCommand> recent;
+    private final MeterRegistry meterRegistry;
+
+    public CommandDeduplicator(ProcessedCommandRepository processedCommandRepository, MeterRegistry meterRegistry,
+                               @Value("${booking.dedup.cache-size:10000}") int cacheSize) {
+        this.processedCommandRepository = processedCommandRepository;
+        this.meterRegistry = meterRegistry;
+        this.recent = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ProcessedCommandId, ProcessedCommand> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * @return the recorded result if this command was handled before
+     */
+    public Optional<ProcessedCommand> findProcessed(UUID sagaTransactionId, Class<?> commandType) {
+        ProcessedCommandId id = new ProcessedCommandId(sagaTransactionId, commandType.getSimpleName());
+        ProcessedCommand processed = recent.get(id);
+        if (processed == null) {
+            processed = processedCommandRepository.findById(id).orElse(null);
+            if (processed != null) {
+                recent.put(id, processed);
+            }
+        }
+        if (processed != null) {
+            duplicateCounter(commandType).increment();
+        }
+        return Optional.ofNullable(processed);
+    }
+
+    /**
+     * Batch lookup with a single query for the ids the LRU doesn't know.
+     *
+     * @return the recorded results keyed by saga id, for the commands handled before
+     */
+    public Map<UUID, ProcessedCommand> findAllProcessed(Collection<UUID> sagaTransactionIds, Class<?> commandType) {
+        Map<UUID, ProcessedCommand> found = new HashMap<>();
+        List<ProcessedCommandId> misses = new ArrayList<>();
+        for (UUID sagaTransactionId : sagaTransactionIds) {
+            ProcessedCommandId id = new ProcessedCommandId(sagaTransactionId, commandType.getSimpleName());
+            ProcessedCommand processed = recent.get(id);
+            if (processed != null) {
+                found.put(sagaTransactionId, processed);
+            } else {
+                misses.add(id);
+            }
+        }
+        if (!misses.isEmpty()) {
+            for (ProcessedCommand processed : processedCommandRepository.findAllById(misses)) {
+                recent.put(processed.getId(), processed);
+                found.put(processed.getSagaTransactionId(), processed);
+            }
+        }
+        if (!found.isEmpty()) {
+            duplicateCounter(commandType).increment(found.size());
+        }
+        return found;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(ProcessedCommand processed) {
+        processedCommandRepository.save(processed);
+        rememberAfterCommit(List.of(processed));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAll(List<ProcessedCommand> processed) {
+        processedCommandRepository.saveAll(processed);
+        rememberAfterCommit(processed);
+    }
+
+    private void rememberAfterCommit(List<ProcessedCommand> processed) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            processed.forEach(p -> recent.put(p.getId(), p));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                processed.forEach(p -> recent.put(p.getId(), p));
+            }
+        });
+    }
+
+    private Counter duplicateCounter(Class<?> commandType) {
+        return Counter.builder("booking.commands.duplicates")
+                .description("Redelivered saga commands answered from the processed-commands record")
+                .tag("command", commandType.getSimpleName())
+                .register(meterRegistry);
+    }
+}
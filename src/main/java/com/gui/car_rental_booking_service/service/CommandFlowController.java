@@ -0,0 +1,232 @@
+package com.gui.car_rental_booking_service.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throttles the {@code rental-saga-booking-commands} listener containers, and the retry topic containers of the
+ * {@code record} listener, before the Hikari pool saturates, so handler threads don't pile up waiting for
+ * connections until they blow {@code max.poll.interval.ms} and set off rebalances.
+ * <p>
+ * Every {@code booking.flow.interval-ms} it reads the primary pool's active connections and threads waiting for
+ * one from its MXBean, the mean connection acquire time ({@code hikaricp.connections.acquire}) and the mean
+ * handler latency ({@code booking.handler}) since the last look, and sets how many of the running listener
+ * consumers may poll, additive-increase / multiplicative-decrease:
+ * <ul>
+ *     <li>pool busier than {@code booking.flow.pool-high-utilization} with threads waiting or acquiring slower
+ *     than {@code booking.flow.acquire-wait-high-ms}: halve</li>
+ *     <li>acquire time or handler latency above {@code booking.flow.handler-latency-high-ms} alone: one less</li>
+ *     <li>pool below {@code booking.flow.pool-low-utilization} with nobody waiting: one more, up to all</li>
+ * </ul>
+ * never going below {@code booking.flow.min-consumers}, so by default one consumer keeps the topic moving; 0 lets
+ * the controller pause the topic altogether. Consumers over the limit are
+ * {@link MessageListenerContainer#pause() paused}, retry topic consumers first; they keep polling, without
+ * fetching, so they stay in the group. Turned off with {@code booking.flow.enabled=false}.
+ * <p>
+ * The controller can only be as gradual as there are consumers to pause. With the default
+ * {@code booking.kafka.listener.concurrency=1} the topic has a single consumer, which the floor keeps polling, so
+ * only retry topic consumers can be shed; without the floor, halving it would be the same as stopping. Run at
+ * least 2 consumers per instance, better as many as the topic has partitions, for load to be shed step by step.
+ * <p>
+ * Published as {@code booking.flow.consumers.allowed} and {@code booking.flow.consumers}, with each change counted
+ * as {@code booking.flow.decisions} tagged with its action.
+ */
+@Component
+@ConditionalOnProperty(name = "booking.flow.enabled", matchIfMissing = true)
+public class CommandFlowController {
+
+    static final List<String> LISTENER_IDS = List.of(BookingService.LISTENER_ID,
+            BookingCommandBatchListener.LISTENER_ID, KeyedCommandListener.LISTENER_ID);
+
+    private static final Logger logger = LoggerFactory.getLogger(CommandFlowController.class);
+
+    private final KafkaListenerEndpointRegistry registry;
+    private final ObjectProvider<HikariDataSource> dataSources;
+    private final MeterRegistry meterRegistry;
+    private final double poolHighUtilization;
+    private final double poolLowUtilization;
+    private final double acquireWaitHighMs;
+    private final double handlerLatencyHighMs;
+    private final int minConsumers;
+    private final MeanSince acquireWait = new MeanSince();
+    private final MeanSince handlerLatency = new MeanSince();
+
+    private volatile int consumers;
+    private volatile int allowed = Integer.MAX_VALUE;
+
+    public CommandFlowController(KafkaListenerEndpointRegistry registry, ObjectProvider<HikariDataSource> dataSources,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${booking.flow.pool-high-utilization:0.9}") double poolHighUtilization,
+                                 @Value("${booking.flow.pool-low-utilization:0.6}") double poolLowUtilization,
+                                 @Value("${booking.flow.acquire-wait-high-ms:50}") double acquireWaitHighMs,
+                                 @Value("${booking.flow.handler-latency-high-ms:2000}") double handlerLatencyHighMs,
+                                 @Value("${booking.flow.min-consumers:1}") int minConsumers) {
+        this.registry = registry;
+        this.dataSources = dataSources;
+        this.meterRegistry = meterRegistry;
+        this.poolHighUtilization = poolHighUtilization;
+        this.poolLowUtilization = poolLowUtilization;
+        this.acquireWaitHighMs = acquireWaitHighMs;
+        this.handlerLatencyHighMs = handlerLatencyHighMs;
+        this.minConsumers = Math.max(0, minConsumers);
+        Gauge.builder("booking.flow.consumers.allowed", this, controller -> Math.min(controller.allowed, controller.consumers))
+                .description("Command listener consumers currently allowed to poll")
+                .register(meterRegistry);
+        Gauge.builder("booking.flow.consumers", this, controller -> controller.consumers)
+                .description("Running command listener consumers")
+                .register(meterRegistry);
+    }
+
+    /**
+     * What the controller looks at; latencies are means over the last interval, 0 without samples.
+     */
+    public record Signals(int activeConnections, int maxConnections, int threadsAwaitingConnection,
+                         double acquireWaitMs, double handlerLatencyMs) {
+
+        double utilization() {
+            return maxConnections == 0 ? 0 : (double) activeConnections / maxConnections;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${booking.flow.interval-ms:1000}",
+            initialDelayString = "${booking.flow.interval-ms:1000}")
+    public void tick() {
+        HikariDataSource dataSource = dataSources.getIfUnique();
+        HikariPoolMXBean pool = dataSource == null ? null : dataSource.getHikariPoolMXBean();
+        if (pool == null) {
+            return;
+        }
+        control(new Signals(pool.getActiveConnections(), dataSource.getMaximumPoolSize(),
+                pool.getThreadsAwaitingConnection(),
+                acquireWait.next(meterRegistry.find("hikaricp.connections.acquire")
+                        .tag("pool", dataSource.getPoolName()).timers()),
+                handlerLatency.next(meterRegistry.find("booking.handler").timers())));
+    }
+
+    /**
+     * Adjusts the number of consumers allowed to poll to the signals and pauses or resumes consumers to match.
+     *
+     * @return the number of consumers now allowed to poll
+     */
+    public int control(Signals signals) {
+        List<MessageListenerContainer> running = runningConsumers();
+        consumers = running.size();
+        if (running.isEmpty()) {
+            return 0;
+        }
+        int floor = Math.min(minConsumers, consumers);
+        int current = Math.max(Math.min(allowed, consumers), floor);
+        int next = current;
+        if (signals.utilization() >= poolHighUtilization
+                && (signals.threadsAwaitingConnection() > 0 || signals.acquireWaitMs() >= acquireWaitHighMs)) {
+            next = Math.max(current / 2, floor);
+        } else if (signals.acquireWaitMs() >= acquireWaitHighMs || signals.handlerLatencyMs() >= handlerLatencyHighMs) {
+            next = Math.max(current - 1, floor);
+        } else if (signals.utilization() <= poolLowUtilization && signals.threadsAwaitingConnection() == 0) {
+            next = Math.min(current + 1, consumers);
+        }
+        if (next != current) {
+            decided(current, next, signals);
+        }
+        allowed = next;
+        for (int i = 0; i < running.size(); i++) {
+            MessageListenerContainer consumer = running.get(i);
+            if (i < next && consumer.isPauseRequested()) {
+                consumer.resume();
+            } else if (i >= next && !consumer.isPauseRequested()) {
+                consumer.pause();
+            }
+        }
+        return next;
+    }
+
+    /**
+     * The running consumers of the command listeners followed by those of their retry topics, one per child
+     * container of a concurrent container, in a stable order so the same ones, retries first, are paused first.
+     */
+    private List<MessageListenerContainer> runningConsumers() {
+        List<MessageListenerContainer> running = new ArrayList<>();
+        for (String id : LISTENER_IDS) {
+            addRunning(registry.getListenerContainer(id), running);
+        }
+        registry.getListenerContainers().stream()
+                .filter(container -> isRetryContainer(container.getListenerId()))
+                .sorted(Comparator.comparing(MessageListenerContainer::getListenerId))
+                .forEach(container -> addRunning(container, running));
+        return running;
+    }
+
+    /**
+     * Retry topic endpoints get the id of their listener with the retry topic's suffix; the dead-letter one, which
+     * doesn't touch the database, isn't throttled.
+     */
+    private static boolean isRetryContainer(String listenerId) {
+        return listenerId != null && LISTENER_IDS.stream().anyMatch(id -> listenerId.startsWith(id + "-retry"));
+    }
+
+    private static void addRunning(MessageListenerContainer container, List<MessageListenerContainer> running) {
+        if (container == null || !container.isRunning()) {
+            return;
+        }
+        if (container instanceof ConcurrentMessageListenerContainer<?, ?> concurrent) {
+            concurrent.getContainers().stream().filter(MessageListenerContainer::isRunning).forEach(running::add);
+        } else {
+            running.add(container);
+        }
+    }
+
+    private void decided(int from, int to, Signals signals) {
+        String action = to == 0 ? "pause" : from == 0 ? "resume" : to < from ? "shrink" : "grow";
+        Counter.builder("booking.flow.decisions")
+                .description("Changes to the number of command listener consumers allowed to poll")
+                .tag("action", action)
+                .register(meterRegistry)
+                .increment();
+        logger.info("Command consumers {} from {} to {}: {} of {} connections active, {} waiting, acquire {} ms, "
+                        + "handler {} ms", action, from, to, signals.activeConnections(), signals.maxConnections(),
+                signals.threadsAwaitingConnection(), Math.round(signals.acquireWaitMs()),
+                Math.round(signals.handlerLatencyMs()));
+    }
+
+    /**
+     * Mean of the timers' samples recorded since the previous call.
+     */
+    private static final class MeanSince {
+        private long count;
+        private double totalMs;
+
+        private synchronized double next(Collection<Timer> timers) {
+            long newCount = 0;
+            double newTotalMs = 0;
+            for (Timer timer : timers) {
+                newCount += timer.count();
+                newTotalMs += timer.totalTime(TimeUnit.MILLISECONDS);
+            }
+            long samples = newCount - count;
+            double mean = samples > 0 ? (newTotalMs - totalMs) / samples : 0;
+            count = newCount;
+            totalMs = newTotalMs;
+            return mean;
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.gui.car_rental_booking_service.service;
+
+import com.gui.car_rental_booking_service.enums.BookingStatus;
+import com.gui.car_rental_booking_service.respositories.BookingRepository;
+import com.gui.car_rental_booking_service.respositories.BookingWindow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Read model of the calendar days each car is taken on, for the next {@code booking.occupancy.horizon-days}
+ * days starting today. A day counts as taken if any active booking covers part of it.
+ * <p>
+ * Car ids are interned to dense ints. Each car owns {@code horizon / 64} words in two flat {@code long[]}
+ * planes, indexed by epoch day modulo the horizon, so the index is a ring that moves forward one day at a time
+ * without shifting. The planes hold a two-bit counter per day: rentals last at least a day and don't overlap,
+ * so at most two bookings of a car share a day, the one being returned and the one picked up. That way
+ * releasing one of them keeps the other's day taken. Counters saturate at both ends: the index misses changes
+ * made by other instances, and releasing a day that isn't held leaves it free instead of wrapping it to taken.
+ * With the default 128-day horizon a car costs 32 bytes of bitmap plus its interning slot.
+ * <p>
+ * A car's words are guarded by one of {@code booking.occupancy.lock-stripes} locks, so unrelated cars don't
+ * contend; only interning a new car and moving the horizon lock the whole index.
+ * <p>
+ * Bookings reaching past the horizon are kept aside and their days are filled in as the ring moves forward.
+ * Answers are at day granularity and may be stale, so the index is never used alone to reject a booking;
+ * {@link CarAvailabilityIndex} and the database remain the guards for exact rental windows.
+ */
+@Component
+public class DailyOccupancyIndex implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(DailyOccupancyIndex.class);
+
+    private final BookingRepository bookingRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int horizonDays;
+    private final int wordsPerCar;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantReadWriteLock[] stripes;
+    private final UuidInterner cars = new UuidInterner(1024);
+    private final List<DayRange> beyondHorizon = Collections.synchronizedList(new ArrayList<>());
+    private long[] low = new long[0];
+    private long[] high = new long[0];
+    private volatile long firstDay;
+    private volatile boolean running;
+
+    public DailyOccupancyIndex(BookingRepository bookingRepository, TransactionTemplate transactionTemplate,
+                               @Value("${booking.occupancy.horizon-days:128}") int horizonDays,
+                               @Value("${booking.occupancy.lock-stripes:64}") int lockStripes) {
+        this.bookingRepository = bookingRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.stripes = new ReentrantReadWriteLock[Integer.highestOneBit(Math.max(1, lockStripes - 1)) << 1];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        this.wordsPerCar = Math.max(1, (horizonDays + 63) / 64);
+        this.horizonDays = wordsPerCar * 64;
+        this.firstDay = LocalDate.now().toEpochDay();
+    }
+
+    /**
+     * Marks the days of a booking of the car as taken.
+     */
+    public void occupy(UUID carId, LocalDateTime start, LocalDateTime end) {
+        update(carId, start, end, true);
+    }
+
+    /**
+     * Frees the days of a booking previously passed to {@link #occupy(UUID, LocalDateTime, LocalDateTime)}.
+     */
+    public void release(UUID carId, LocalDateTime start, LocalDateTime end) {
+        update(carId, start, end, false);
+    }
+
+    /**
+     * @return true if none of the days in {@code [from, to)} is taken
+     * @throws IllegalArgumentException if the days aren't within {@link #covers(LocalDate, LocalDate) the horizon}
+     */
+    public boolean isFree(UUID carId, LocalDate from, LocalDate to) {
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay();
+        advanceTo(LocalDate.now());
+        ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            checkCovered(fromDay, toDay);
+            int car = cars.find(carId);
+            if (car < 0) {
+                return true;
+            }
+            ReentrantReadWriteLock.ReadLock carLock = stripe(car).readLock();
+            carLock.lock();
+            try {
+                return isFree(car, fromDay, toDay);
+            } finally {
+                carLock.unlock();
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private boolean isFree(int car, long fromDay, long toDay) {
+        for (long day = fromDay; day < toDay; ) {
+            int bit = bit(day);
+            int word = car * wordsPerCar + (bit >>> 6);
+            int bits = (int) Math.min(64 - (bit & 63), toDay - day);
+            long mask = bits == 64 ? -1L : ((1L << bits) - 1) << (bit & 63);
+            if (((low[word] | high[word]) & mask) != 0) {
+                return false;
+            }
+            day += bits;
+        }
+        return true;
+    }
+
+    /**
+     * @return the taken days in {@code [from, to)}, in order
+     * @throws IllegalArgumentException if the days aren't within {@link #covers(LocalDate, LocalDate) the horizon}
+     */
+    public List<LocalDate> takenDays(UUID carId, LocalDate from, LocalDate to) {
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay();
+        advanceTo(LocalDate.now());
+        ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            checkCovered(fromDay, toDay);
+            int car = cars.find(carId);
+            List<LocalDate> taken = new ArrayList<>();
+            if (car < 0) {
+                return taken;
+            }
+            ReentrantReadWriteLock.ReadLock carLock = stripe(car).readLock();
+            carLock.lock();
+            try {
+                for (long day = fromDay; day < toDay; day++) {
+                    int bit = bit(day);
+                    int word = car * wordsPerCar + (bit >>> 6);
+                    if (((low[word] | high[word]) & (1L << (bit & 63))) != 0) {
+                        taken.add(LocalDate.ofEpochDay(day));
+                    }
+                }
+            } finally {
+                carLock.unlock();
+            }
+            return taken;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @return true if the index can answer for all days in {@code [from, to)}
+     */
+    public boolean covers(LocalDate from, LocalDate to) {
+        return from.toEpochDay() >= firstDay && to.toEpochDay() <= firstDay + horizonDays;
+    }
+
+    /**
+     * Moves the start of the horizon to the given day, dropping the days before it and filling in the days
+     * that enter the horizon from bookings that reach further out. Called on every access with today's date.
+     */
+    public void advanceTo(LocalDate today) {
+        long newFirstDay = today.toEpochDay();
+        if (newFirstDay <= firstDay) {
+            return;
+        }
+        ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            long oldFirstDay = firstDay;
+            if (newFirstDay <= oldFirstDay) {
+                return;
+            }
+            long dropped = Math.min(newFirstDay - oldFirstDay, horizonDays);
+            for (long day = oldFirstDay; day < oldFirstDay + dropped; day++) {
+                clearDay(bit(day));
+            }
+            firstDay = newFirstDay;
+            long enteredFrom = Math.max(oldFirstDay + horizonDays, newFirstDay);
+            long enteredTo = newFirstDay + horizonDays;
+            for (Iterator<DayRange> it = beyondHorizon.iterator(); it.hasNext(); ) {
+                DayRange range = it.next();
+                apply(range.car, Math.max(range.firstDay, enteredFrom), Math.min(range.lastDay, enteredTo - 1), true);
+                if (range.lastDay < enteredTo) {
+                    it.remove();
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public int carCount() {
+        return cars.size();
+    }
+
+    /**
+     * Rebuilds the index from the active bookings that haven't ended yet.
+     */
+    public void load() {
+        long started = System.nanoTime();
+        int loaded = transactionTemplate.execute(status -> {
+            int count = 0;
+            try (Stream<BookingWindow> windows = bookingRepository.streamByBookingStatusInAndRentalEndDateAfter(
+                    BookingStatus.ACTIVE, LocalDateTime.now())) {
+                for (Iterator<BookingWindow> it = windows.iterator(); it.hasNext(); ) {
+                    BookingWindow window = it.next();
+                    if (window.getRentalStartDate() != null && window.getRentalEndDate() != null) {
+                        occupy(window.getCarId(), window.getRentalStartDate(), window.getRentalEndDate());
+                        count++;
+                    }
+                }
+            }
+            return count;
+        });
+        logger.info("Loaded {} booking windows for {} cars into the occupancy index in {} ms",
+                loaded, cars.size(), Duration.ofNanos(System.nanoTime() - started).toMillis());
+    }
+
+    private void update(UUID carId, LocalDateTime start, LocalDateTime end, boolean occupy) {
+        long startDay = start.toLocalDate().toEpochDay();
+        // a rental ending exactly at midnight doesn't take the day that starts then
+        long lastDay = end.minusNanos(1).toLocalDate().toEpochDay();
+        advanceTo(LocalDate.now());
+        if (lastDay < startDay) {
+            return;
+        }
+        int car = car(carId, occupy);
+        if (car < 0) {
+            return;
+        }
+        ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            long horizonEnd = firstDay + horizonDays;
+            if (lastDay < firstDay) {
+                return;
+            }
+            ReentrantReadWriteLock.WriteLock carLock = stripe(car).writeLock();
+            carLock.lock();
+            try {
+                apply(car, Math.max(startDay, firstDay), Math.min(lastDay, horizonEnd - 1), occupy);
+            } finally {
+                carLock.unlock();
+            }
+            if (lastDay >= horizonEnd) {
+                DayRange range = new DayRange(car, startDay, lastDay);
+                if (occupy) {
+                    beyondHorizon.add(range);
+                } else {
+                    beyondHorizon.remove(range);
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Increments or decrements the two-bit day counters of the car for the days in {@code [fromDay, toDay]},
+     * saturating at 3 and 0. Callers hold the car's stripe lock or the whole index.
+     */
+    private void apply(int car, long fromDay, long toDay, boolean occupy) {
+        for (long day = fromDay; day <= toDay; ) {
+            int bit = bit(day);
+            int word = car * wordsPerCar + (bit >>> 6);
+            int bits = (int) Math.min(64 - (bit & 63), toDay - day + 1);
+            long mask = bits == 64 ? -1L : ((1L << bits) - 1) << (bit & 63);
+            if (occupy) {
+                long counting = mask & ~(low[word] & high[word]);
+                long carry = low[word] & counting;
+                low[word] ^= counting;
+                high[word] |= carry;
+            } else {
+                long counting = mask & (low[word] | high[word]);
+                long borrow = ~low[word] & counting;
+                low[word] ^= counting;
+                high[word] &= ~borrow;
+            }
+            day += bits;
+        }
+    }
+
+    private void clearDay(int bit) {
+        long keep = ~(1L << bit);
+        for (int word = bit >>> 6; word < low.length; word += wordsPerCar) {
+            low[word] &= keep;
+            high[word] &= keep;
+        }
+    }
+
+    /**
+     * @return the car's dense id, interning it if asked to, or -1
+     */
+    private int car(UUID carId, boolean intern) {
+        ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int car = cars.find(carId);
+            if (car >= 0 || !intern) {
+                return car;
+            }
+        } finally {
+            readLock.unlock();
+        }
+        ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return intern(carId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private int intern(UUID carId) {
+        int car = cars.intern(carId);
+        int required = (car + 1) * wordsPerCar;
+        if (required > low.length) {
+            int capacity = Math.max(required, Math.max(64 * wordsPerCar, low.length * 2));
+            low = Arrays.copyOf(low, capacity);
+            high = Arrays.copyOf(high, capacity);
+        }
+        return car;
+    }
+
+    private ReentrantReadWriteLock stripe(int car) {
+        return stripes[car & (stripes.length - 1)];
+    }
+
+    private int bit(long day) {
+        return (int) Math.floorMod(day, (long) horizonDays);
+    }
+
+    private void checkCovered(long fromDay, long toDay) {
+        if (fromDay < firstDay || toDay > firstDay + horizonDays || toDay < fromDay) {
+            throw new IllegalArgumentException(String.format("Days %s to %s are outside the occupancy horizon %s to %s",
+                    LocalDate.ofEpochDay(fromDay), LocalDate.ofEpochDay(toDay), LocalDate.ofEpochDay(firstDay),
+                    LocalDate.ofEpochDay(firstDay + horizonDays)));
+        }
+    }
+
+    /**
+     * Loads before the Kafka listener containers start consuming.
+     */
+    @Override
+    public void start() {
+        load();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    /**
+     * Days of a booking reaching beyond the horizon, inclusive.
+     */
+    private record DayRange(int car, long firstDay, long lastDay) {
+    }
+}
@@ -0,0 +1,67 @@
+package com.gui.car_rental_booking_service.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Caps how many commands work against the database at once. Permits default to the Hikari pool size, so
+ * with virtual-thread listeners the surplus waits here, cheaply, instead of piling up on the pool and
+ * failing with connection timeouts. Callers that can't get a permit within the acquire timeout fail with a
+ * {@link TransientDataAccessResourceException}.
+ * <p>
+ * Not reentrant: a holder must not call back into the bulkhead.
+ */
+@Component
+public class DatabaseBulkhead {
+
+    private final Semaphore permits;
+    private final long acquireTimeoutMs;
+
+    public DatabaseBulkhead(MeterRegistry meterRegistry,
+                            @Value("${booking.db.bulkhead.permits:${spring.datasource.hikari.maximum-pool-size:10}}") int permits,
+                            @Value("${booking.db.bulkhead.acquire-timeout-ms:30000}") long acquireTimeoutMs) {
+        this.permits = new Semaphore(permits, true);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        Gauge.builder("booking.db.bulkhead.available", this.permits, Semaphore::availablePermits)
+                .description("Free database permits")
+                .register(meterRegistry);
+        Gauge.builder("booking.db.bulkhead.waiting", this.permits, Semaphore::getQueueLength)
+                .description("Threads waiting for a database permit")
+                .register(meterRegistry);
+    }
+
+    public <T> T call(Supplier<T> work) {
+        acquire();
+        try {
+            return work.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public void run(Runnable work) {
+        call(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    private void acquire() {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new TransientDataAccessResourceException(
+                        String.format("No database permit free after %d ms", acquireTimeoutMs));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransientDataAccessResourceException("Interrupted waiting for a database permit", e);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.gui.car_rental_booking_service.service;
+
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs consumed records on a fixed set of single-threaded lanes picked by record key, so records with the same
+ * key are handled one after the other in offset order while different keys proceed in parallel.
+ * <p>
+ * For every partition it tracks the offsets still in flight. {@link #committableOffsets(Collection)} returns
+ * the lowest of them, or the offset after the last submitted record if none is in flight, so a commit never
+ * moves past a record that hasn't been fully handled. A handler that throws is retried in its lane with
+ * exponential backoff, holding back both its key and its partition's committed offset, up to
+ * {@code booking.kafka.keyed.max-attempts} attempts in all; then the record's recoverer takes over and the
+ * record counts as handled.
+ * <p>
+ * Submitting never blocks. Callers check {@link #isSaturated()} after submitting a poll and stop fetching until
+ * {@link #hasCapacity()}, so {@code booking.kafka.keyed.max-in-flight} may be exceeded by one poll at most.
+ * <p>
+ * Submitting, committing and forgetting partitions must happen on the consumer thread that owns them.
+ */
+@Component
+public class KeyedCommandDispatcher implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeyedCommandDispatcher.class);
+    private static final long INITIAL_BACKOFF_MS = 100;
+
+    private final int laneCount;
+    private final int maxInFlight;
+    private final int maxAttempts;
+    private final long maxBackoffMs;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<TopicPartition, PartitionOffsets> partitions = new ConcurrentHashMap<>();
+    private volatile ExecutorService[] lanes;
+    private volatile boolean running;
+
+    public KeyedCommandDispatcher(@Value("${booking.kafka.keyed.lanes:0}") int lanes,
+                                  @Value("${booking.kafka.keyed.max-in-flight:1000}") int maxInFlight,
+                                  @Value("${booking.kafka.keyed.max-attempts:${booking.kafka.retry.attempts:4}}")
+                                  int maxAttempts,
+                                  @Value("${booking.kafka.keyed.max-backoff-ms:30000}") long maxBackoffMs) {
+        this.laneCount = lanes > 0 ? lanes : Runtime.getRuntime().availableProcessors();
+        this.maxInFlight = maxInFlight;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    /**
+     * Queues the handler behind earlier records with the same key. If it still fails after
+     * {@code booking.kafka.keyed.max-attempts} attempts, the recoverer is handed the last failure.
+     */
+    public void submit(TopicPartition partition, long offset, String key, Runnable handler,
+                       Consumer<RuntimeException> recoverer) {
+        PartitionOffsets offsets = partitions.computeIfAbsent(partition, p -> new PartitionOffsets());
+        inFlight.incrementAndGet();
+        offsets.inFlight.add(offset);
+        offsets.next = offset + 1;
+        lane(key).execute(() -> {
+            try {
+                runWithRetries(partition, offset, handler, recoverer);
+            } finally {
+                offsets.inFlight.remove(offset);
+                inFlight.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * @return whether {@code booking.kafka.keyed.max-in-flight} records are queued or running, so no more should
+     * be fetched
+     */
+    public boolean isSaturated() {
+        return inFlight.get() >= maxInFlight;
+    }
+
+    /**
+     * @return whether the records queued or running went down to half of {@code booking.kafka.keyed.max-in-flight},
+     * so fetching can resume
+     */
+    public boolean hasCapacity() {
+        return inFlight.get() <= maxInFlight / 2;
+    }
+
+    /**
+     * @return the offsets that can be committed for the given partitions, leaving out those that didn't move
+     * since the last call
+     */
+    public Map<TopicPartition, OffsetAndMetadata> committableOffsets(Collection<TopicPartition> assigned) {
+        Map<TopicPartition, OffsetAndMetadata> committable = new HashMap<>();
+        for (TopicPartition partition : assigned) {
+            PartitionOffsets offsets = partitions.get(partition);
+            if (offsets == null) {
+                continue;
+            }
+            Long lowestInFlight = offsets.inFlight.ceiling(Long.MIN_VALUE);
+            long offset = lowestInFlight != null ? lowestInFlight : offsets.next;
+            if (offset > offsets.committed) {
+                offsets.committed = offset;
+                committable.put(partition, new OffsetAndMetadata(offset));
+            }
+        }
+        return committable;
+    }
+
+    /**
+     * Waits up to the timeout for the records of the partitions to finish, before they are handed over to
+     * another consumer.
+     *
+     * @return true if nothing is in flight for them anymore
+     */
+    public boolean drain(Collection<TopicPartition> revoked, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (TopicPartition partition : revoked) {
+            PartitionOffsets offsets = partitions.get(partition);
+            while (offsets != null && !offsets.inFlight.isEmpty()) {
+                if (System.nanoTime() > deadline) {
+                    logger.warn("{} records of {} still in flight after draining for {} ms", offsets.inFlight.size(),
+                            partition, timeout.toMillis());
+                    return false;
+                }
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public void forget(Collection<TopicPartition> released) {
+        released.forEach(partitions::remove);
+    }
+
+    private void runWithRetries(TopicPartition partition, long offset, Runnable handler,
+                                Consumer<RuntimeException> recoverer) {
+        long backoffMs = INITIAL_BACKOFF_MS;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                handler.run();
+                return;
+            } catch (RuntimeException e) {
+                if (!running) {
+                    logger.warn("Dropping record {}@{} on shutdown, it will be redelivered: {}", partition, offset,
+                            e.getMessage());
+                    return;
+                }
+                if (attempt >= maxAttempts) {
+                    logger.error("Handling record {}@{} failed {} times, giving up: {}", partition, offset, attempt,
+                            e.getMessage(), e);
+                    recover(partition, offset, recoverer, e);
+                    return;
+                }
+                logger.warn("Handling record {}@{} failed, retrying in {} ms: {}", partition, offset, backoffMs,
+                        e.getMessage());
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, maxBackoffMs);
+            }
+        }
+    }
+
+    private static void recover(TopicPartition partition, long offset, Consumer<RuntimeException> recoverer,
+                                RuntimeException failure) {
+        try {
+            recoverer.accept(failure);
+        } catch (RuntimeException e) {
+            logger.error("Recovering record {}@{} failed, it is skipped: {}", partition, offset, e.getMessage(), e);
+        }
+    }
+
+    private ExecutorService lane(String key) {
+        ExecutorService[] current = lanes;
+        if (current == null) {
+            synchronized (this) {
+                if (lanes == null) {
+                    lanes = startLanes();
+                }
+                current = lanes;
+            }
+        }
+        int h = key == null ? 0 : key.hashCode();
+        return current[Math.floorMod(h ^ (h >>> 16), current.length)];
+    }
+
+    private ExecutorService[] startLanes() {
+        AtomicInteger index = new AtomicInteger();
+        ExecutorService[] started = new ExecutorService[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            started[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "booking-lane-" + index.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return started;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    /**
+     * Lets queued records finish for a while, then interrupts the lanes. Whatever didn't finish was not
+     * committed and is consumed again after restart.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        ExecutorService[] current = lanes;
+        if (current == null) {
+            return;
+        }
+        for (ExecutorService lane : current) {
+            lane.shutdown();
+        }
+        try {
+            for (ExecutorService lane : current) {
+                if (!lane.awaitTermination(10, TimeUnit.SECONDS)) {
+                    lane.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts before and stops after the listener containers.
+     */
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private static final class PartitionOffsets {
+        private final NavigableSet<Long> inFlight = new ConcurrentSkipListSet<>();
+        private volatile long next;
+        private long committed = -1;
+    }
+}
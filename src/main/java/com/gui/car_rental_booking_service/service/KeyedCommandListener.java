@@ -0,0 +1,142 @@
+package com.gui.car_rental_booking_service.service;
+
+import com.gui.car_rental_common.commands.BookingCreationCommand;
+import com.gui.car_rental_common.commands.CancelBookingCommand;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consumes {@code rental-saga-booking-commands} when {@code booking.kafka.listener.mode=keyed}. Each poll is
+ * fanned out over the lanes of {@link KeyedCommandDispatcher} by record key, falling back to the
+ * {@link BookingEventOutbox#messageKey car} of the command for unkeyed records, so commands for one car stay
+ * in order while different cars are handled in parallel. Offsets are committed here, on the consumer thread,
+ * up to the lowest record still in flight per partition; the container itself never commits.
+ * <p>
+ * Once the dispatcher is saturated, the assigned partitions are paused instead of blocking the consumer thread,
+ * which keeps polling within {@code max.poll.interval.ms}; they are resumed when it has room again.
+ * <p>
+ * A failing command is retried in its lane, which keeps the commands of its car in order, as many times as the
+ * dispatcher allows. Then it is sent to the dead-letter topic and answered with a failure event, so the saga can
+ * finish. A record that couldn't be deserialized has no command to retry and is sent to the dead-letter topic
+ * from its lane right away.
+ */
+@Component
+public class KeyedCommandListener {
+
+    public static final String LISTENER_ID = "booking-command-keyed-listener";
+
+    private static final Logger logger = LoggerFactory.getLogger(KeyedCommandListener.class);
+    private static final LogAccessor headerLogger = new LogAccessor(KeyedCommandListener.class);
+
+    private final BookingService bookingService;
+    private final KeyedCommandDispatcher dispatcher;
+    private final DeadLetterPublishingRecoverer deadLetterPublishingRecoverer;
+    private final KafkaListenerEndpointRegistry registry;
+
+    public KeyedCommandListener(BookingService bookingService, KeyedCommandDispatcher dispatcher,
+                                DeadLetterPublishingRecoverer deadLetterPublishingRecoverer,
+                                KafkaListenerEndpointRegistry registry) {
+        this.bookingService = bookingService;
+        this.dispatcher = dispatcher;
+        this.deadLetterPublishingRecoverer = deadLetterPublishingRecoverer;
+        this.registry = registry;
+    }
+
+    @KafkaListener(id = LISTENER_ID, topics = "rental-saga-booking-commands",
+            groupId = "booking-service-group", containerFactory = "keyedKafkaListenerContainerFactory",
+            autoStartup = "#{'${booking.kafka.listener.mode:record}' == 'keyed'}")
+    public void consumeCommands(List<ConsumerRecord<String, Object>> records, Consumer<?, ?> consumer) {
+        for (ConsumerRecord<String, Object> record : records) {
+            Object command = record.value();
+            DeserializationException poisonPill = SerializationUtils.getExceptionFromHeader(record,
+                    SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, headerLogger);
+            if (poisonPill != null) {
+                dispatcher.submit(new TopicPartition(record.topic(), record.partition()), record.offset(),
+                        record.key(), () -> deadLetterPublishingRecoverer.accept(record, poisonPill),
+                        failure -> logger.error("Dead-lettering unreadable record {}@{} failed",
+                                record.topic(), record.offset(), failure));
+                continue;
+            }
+            dispatcher.submit(new TopicPartition(record.topic(), record.partition()), record.offset(),
+                    record.key() != null ? record.key() : key(command),
+                    () -> BookingEventOutbox.withRecordTimestamp(record.timestamp(), () -> {
+                        handle(command);
+                        return null;
+                    }),
+                    failure -> {
+                        deadLetterPublishingRecoverer.accept(record, failure);
+                        bookingService.publishCommandFailed(command, failure);
+                    });
+        }
+        throttle(consumer.assignment());
+        commit(consumer);
+    }
+
+    /**
+     * Commits what finished since the last poll, and resumes fetching once there is room, while no new records
+     * arrive.
+     */
+    @EventListener(condition = "event.listenerId.startsWith('" + LISTENER_ID + "')")
+    public void onIdle(ListenerContainerIdleEvent event) {
+        throttle(event.getConsumer().assignment());
+        commit(event.getConsumer());
+    }
+
+    private void throttle(Collection<TopicPartition> assigned) {
+        MessageListenerContainer container = registry.getListenerContainer(LISTENER_ID);
+        if (container == null) {
+            return;
+        }
+        if (dispatcher.isSaturated()) {
+            assigned.stream().filter(partition -> !container.isPartitionPauseRequested(partition))
+                    .forEach(container::pausePartition);
+        } else if (dispatcher.hasCapacity()) {
+            assigned.stream().filter(container::isPartitionPauseRequested).forEach(container::resumePartition);
+        }
+    }
+
+    private void commit(Consumer<?, ?> consumer) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = dispatcher.committableOffsets(consumer.assignment());
+        if (!offsets.isEmpty()) {
+            consumer.commitSync(offsets);
+        }
+    }
+
+    private void handle(Object command) {
+        if (command instanceof BookingCreationCommand creationCommand) {
+            bookingService.consumeBookingCreationCommand(creationCommand);
+        } else if (command instanceof CancelBookingCommand cancelCommand) {
+            bookingService.consumeCancelBookingCommand(cancelCommand);
+        } else {
+            logger.warn("Skipping unsupported command type {}", command == null ? null : command.getClass().getName());
+        }
+    }
+
+    private static String key(Object command) {
+        if (command instanceof BookingCreationCommand creationCommand) {
+            return BookingEventOutbox.messageKey(creationCommand.getBookingDto());
+        }
+        if (command instanceof CancelBookingCommand cancelCommand) {
+            return BookingEventOutbox.messageKey(cancelCommand.getBookingDto());
+        }
+        return null;
+    }
+}
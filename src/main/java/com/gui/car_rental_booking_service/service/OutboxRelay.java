@@ -0,0 +1,280 @@
+package com.gui.car_rental_booking_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gui.car_rental_booking_service.entities.OutboxEvent;
+import com.gui.car_rental_booking_service.entities.OutboxRelayLease;
+import com.gui.car_rental_booking_service.respositories.OutboxEventRepository;
+import com.gui.car_rental_booking_service.respositories.OutboxRelayLeaseRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.core.KafkaProducerException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains {@code booking_outbox} into Kafka. Each pass reads rows in id order with a keyset scan, sends the
+ * whole chunk without waiting in between so the producer can batch it, then deletes the acknowledged prefix
+ * with one statement. A failed send stops the pass; the unsent rows stay in the table and are retried in
+ * order on the next run. Every pass starts again from the lowest id, so a row whose transaction committed
+ * after a higher id was relayed is picked up by the next pass rather than skipped.
+ * <p>
+ * Only one instance relays at a time, the one holding the {@link OutboxRelayLease}. It renews the lease before
+ * every chunk, for {@code booking.outbox.relay.lease-ms}; another instance takes over once it lapses, so the
+ * rows aren't published once per instance and keep their order. A chunk waits at most
+ * {@code booking.outbox.relay.send-timeout-ms} for its acknowledgements in total, so the lease must be longer
+ * than that; otherwise a relay still waiting loses it and another one sends the same rows.
+ * <p>
+ * A row whose payload can't be read is set aside with {@code failed_at} and counted as
+ * {@code booking.outbox.set-aside}, so it doesn't block the rows behind it.
+ * <p>
+ * Delivery is at-least-once: a crash after the send but before the delete, or a lease lost in the middle of a
+ * pass, replays the chunk.
+ * <p>
+ * Every send is timed per topic as {@code booking.outbox.send} with an {@code outcome} tag, failures are also
+ * counted per exception as {@code booking.outbox.send.errors}. After a failed pass the relay backs off
+ * exponentially, up to {@code booking.outbox.relay.retry-max-backoff-ms}, before trying the kept rows again.
+ * <p>
+ * For events stamped with the timestamp of the command record that caused them, the time from that record to
+ * the broker acknowledging the event is recorded as {@code booking.saga.end-to-end} and the latest value is
+ * exposed as the {@code booking.saga.end-to-end.lag} gauge.
+ */
+@Component
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+    private static final String LEASE = "booking-outbox-relay";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxRelayLeaseRepository leaseRepository;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Class<?>> payloadTypes = new ConcurrentHashMap<>();
+    private final AtomicLong endToEndLagMs = new AtomicLong();
+    private int consecutiveFailures;
+    private long retryAt;
+
+    @Value("${booking.outbox.relay.batch-size:500}")
+    private int batchSize;
+
+    @Value("${booking.outbox.relay.send-timeout-ms:30000}")
+    private long sendTimeoutMs;
+
+    @Value("${booking.outbox.relay.retry-initial-backoff-ms:500}")
+    private long retryInitialBackoffMs;
+
+    @Value("${booking.outbox.relay.retry-max-backoff-ms:30000}")
+    private long retryMaxBackoffMs;
+
+    @Value("${booking.outbox.relay.lease-ms:60000}")
+    private long leaseMs;
+
+    private boolean leaseCreated;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository, OutboxRelayLeaseRepository leaseRepository,
+                       KafkaTemplate<String, Object> kafkaTemplate, ObjectMapper objectMapper,
+                       MeterRegistry meterRegistry) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.leaseRepository = leaseRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("booking.saga.end-to-end.lag", endToEndLagMs, AtomicLong::get)
+                .description("Time from the latest acknowledged event's command record to its acknowledgement")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${booking.outbox.relay.interval-ms:200}")
+    public void relay() {
+        if (consecutiveFailures > 0 && System.nanoTime() - retryAt < 0) {
+            return;
+        }
+        long lastId = 0L;
+        while (holdLease()) {
+            List<OutboxEvent> chunk = outboxEventRepository.findByIdGreaterThanAndFailedAtIsNullOrderByIdAsc(lastId,
+                    Limit.of(batchSize));
+            if (chunk.isEmpty()) {
+                consecutiveFailures = 0;
+                return;
+            }
+            Sent sent = sendChunk(chunk);
+            if (!sent.acknowledged().isEmpty()) {
+                outboxEventRepository.deleteAllByIdInBatch(sent.acknowledged());
+            }
+            if (sent.unsent() > 0) {
+                backOff(sent.unsent());
+                return;
+            }
+            consecutiveFailures = 0;
+            if (chunk.size() < batchSize) {
+                return;
+            }
+            lastId = chunk.get(chunk.size() - 1).getId();
+        }
+    }
+
+    /**
+     * Takes or renews the relay lease, creating its row the first time.
+     *
+     * @return true if this instance may relay
+     */
+    private boolean holdLease() {
+        LocalDateTime now = LocalDateTime.now();
+        if (!leaseCreated) {
+            if (!leaseRepository.existsById(LEASE)) {
+                try {
+                    leaseRepository.saveAndFlush(new OutboxRelayLease(LEASE, now));
+                } catch (DataIntegrityViolationException e) {
+                    // another instance created it first
+                }
+            }
+            leaseCreated = true;
+        }
+        return leaseRepository.acquire(LEASE, instanceId, now, now.plusNanos(TimeUnit.MILLISECONDS.toNanos(leaseMs))) == 1;
+    }
+
+    private void backOff(int unsent) {
+        long backoffMs = Math.min(retryMaxBackoffMs, retryInitialBackoffMs << Math.min(consecutiveFailures, 20));
+        consecutiveFailures++;
+        retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs);
+        logger.warn("{} outbox events kept for retry in {} ms after {} failed passes", unsent, backoffMs,
+                consecutiveFailures);
+    }
+
+    /**
+     * Ids of the leading events of a chunk the broker acknowledged, and how many of the others are left.
+     */
+    private record Sent(List<Long> acknowledged, int unsent) {
+    }
+
+    /**
+     * Sends the chunk, setting aside events whose payload can't be read.
+     */
+    private Sent sendChunk(List<OutboxEvent> chunk) {
+        List<OutboxEvent> sending = new ArrayList<>(chunk.size());
+        List<CompletableFuture<SendResult<String, Object>>> futures = new ArrayList<>(chunk.size());
+        int setAside = 0;
+        for (OutboxEvent event : chunk) {
+            Object payload;
+            try {
+                payload = readPayload(event);
+            } catch (Exception e) {
+                setAside(event, e);
+                setAside++;
+                continue;
+            }
+            long started = System.nanoTime();
+            sending.add(event);
+            try {
+                CompletableFuture<SendResult<String, Object>> future =
+                        kafkaTemplate.send(event.getTopic(), event.getMessageKey(), payload);
+                future.whenComplete((result, e) -> {
+                    recordSend(event.getTopic(), started, e);
+                    if (e == null && event.getRecordTimestamp() != null) {
+                        recordEndToEnd(event.getTopic(), event.getRecordTimestamp());
+                    }
+                });
+                futures.add(future);
+            } catch (Exception e) {
+                recordSend(event.getTopic(), started, e);
+                logger.error("Could not send outbox event {}: {}", event.getId(), e.getMessage());
+                futures.add(CompletableFuture.failedFuture(e));
+                break;
+            }
+        }
+        List<Long> acknowledged = new ArrayList<>(futures.size());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        for (CompletableFuture<SendResult<String, Object>> future : futures) {
+            OutboxEvent event = sending.get(acknowledged.size());
+            try {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                acknowledged.add(event.getId());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                logger.error("Outbox event {} was not acknowledged, retrying on next run: {}",
+                        event.getId(), e.getMessage());
+                break;
+            }
+        }
+        return new Sent(acknowledged, chunk.size() - setAside - acknowledged.size());
+    }
+
+    private void setAside(OutboxEvent event, Exception e) {
+        String failure = e.getClass().getSimpleName() + ": " + e.getMessage();
+        outboxEventRepository.markFailed(event.getId(), LocalDateTime.now(),
+                failure.length() > 1000 ? failure.substring(0, 1000) : failure);
+        Counter.builder("booking.outbox.set-aside")
+                .description("Outbox events set aside because their payload couldn't be read")
+                .tag("topic", event.getTopic())
+                .register(meterRegistry)
+                .increment();
+        logger.error("Set aside outbox event {} of type {}: {}", event.getId(), event.getPayloadType(), failure);
+    }
+
+    private void recordSend(String topic, long started, Throwable failure) {
+        Timer.builder("booking.outbox.send")
+                .description("Time from handing an outbox event to the producer until the broker answered")
+                .tag("topic", topic)
+                .tag("outcome", failure == null ? "success" : "failure")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        if (failure != null) {
+            Throwable cause = failure;
+            while ((cause instanceof CompletionException || cause instanceof KafkaProducerException)
+                    && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            Counter.builder("booking.outbox.send.errors")
+                    .description("Outbox events the producer failed to deliver")
+                    .tag("topic", topic)
+                    .tag("exception", cause.getClass().getSimpleName())
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    private void recordEndToEnd(String topic, long recordTimestamp) {
+        long lagMs = Math.max(0, System.currentTimeMillis() - recordTimestamp);
+        endToEndLagMs.set(lagMs);
+        Timer.builder("booking.saga.end-to-end")
+                .description("Time from a command record's timestamp until the broker acknowledged the resulting event")
+                .tag("topic", topic)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(lagMs, TimeUnit.MILLISECONDS);
+    }
+
+    private Object readPayload(OutboxEvent event) throws Exception {
+        Class<?> type = payloadTypes.get(event.getPayloadType());
+        if (type == null) {
+            type = Class.forName(event.getPayloadType());
+            payloadTypes.put(event.getPayloadType(), type);
+        }
+        return objectMapper.readValue(event.getPayload(), type);
+    }
+}
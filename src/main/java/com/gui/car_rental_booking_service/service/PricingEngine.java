@@ -0,0 +1,125 @@
+package com.gui.car_rental_booking_service.service;
+
+import com.gui.car_rental_common.dtos.BookingDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns the rental window of a booking into its total price.
+ * <p>
+ * A rental is charged one day per started 24 hours from the pickup, in whole minutes and at least one day, so
+ * Monday 10:00 to Tuesday 10:00 is one day and to Tuesday 10:01 two. Each day is charged at the daily price times
+ * the multiplier of the car's {@link RateCalendar} for the date it starts on.
+ * <p>
+ * Cars listed in {@code booking.pricing.cars} get a calendar of their own, entries separated by semicolons as
+ * {@code carId=weekendMultiplier[,season...]}, e.g. {@code 0f6d...=1.2,06-15/09-15:1.4}; {@link #setRateCalendar}
+ * replaces one at runtime. Other cars use the one configured by {@code booking.pricing.weekend-multiplier} and
+ * {@code booking.pricing.seasons} (comma separated, see {@link RateCalendar.Season#parse(String)}), which charges
+ * the plain daily price by default.
+ * <p>
+ * Amounts are longs in cents; {@link BigDecimal} is only used to read the daily price and return the total.
+ */
+@Component
+public class PricingEngine {
+
+    static final int MINOR_DIGITS = 2;
+    private static final long MINUTES_PER_DAY = Duration.ofDays(1).toMinutes();
+
+    private final RateCalendar defaultCalendar;
+    private final Map<UUID, RateCalendar> calendars = new ConcurrentHashMap<>();
+
+    public PricingEngine(@Value("${booking.pricing.weekend-multiplier:1.0}") BigDecimal weekendMultiplier,
+                         @Value("${booking.pricing.seasons:}") String seasons,
+                         @Value("${booking.pricing.cars:}") String cars) {
+        this.defaultCalendar = RateCalendar.of(weekendMultiplier, parseSeasons(seasons));
+        for (String car : cars.split(";")) {
+            if (!car.isBlank()) {
+                parseCar(car);
+            }
+        }
+    }
+
+    public void setRateCalendar(UUID carId, RateCalendar calendar) {
+        calendars.put(carId, calendar);
+    }
+
+    public void removeRateCalendar(UUID carId) {
+        calendars.remove(carId);
+    }
+
+    /**
+     * @return the total price of the booking, with two decimals
+     */
+    public BigDecimal quote(BookingDto bookingDto) {
+        long total = quoteMinor(bookingDto.getCarId(), toMinor(bookingDto.getPricePerDay()),
+                bookingDto.getRentalStartDate(), bookingDto.getRentalEndDate());
+        return BigDecimal.valueOf(total, MINOR_DIGITS);
+    }
+
+    /**
+     * @return the total price in cents
+     * @throws ArithmeticException if the total doesn't fit a long
+     */
+    public long quoteMinor(UUID carId, long pricePerDayMinor, LocalDateTime start, LocalDateTime end) {
+        if (pricePerDayMinor < 0) {
+            throw new IllegalArgumentException("Price per day must not be negative, was " + pricePerDayMinor);
+        }
+        long minutes = Duration.between(start, end).toMinutes();
+        long days = Math.max(1, (minutes + MINUTES_PER_DAY - 1) / MINUTES_PER_DAY);
+        RateCalendar calendar = carId == null ? defaultCalendar : calendars.getOrDefault(carId, defaultCalendar);
+        LocalDate day = start.toLocalDate();
+        int year = day.getYear();
+        boolean leapYear = Year.isLeap(year);
+        int dayOfYear = day.getDayOfYear();
+        int dayOfWeek = day.getDayOfWeek().getValue();
+        // in ten-thousandths of a cent, rounded once at the end
+        long total = 0;
+        for (long i = 0; i < days; i++) {
+            total = Math.addExact(total,
+                    Math.multiplyExact(pricePerDayMinor, calendar.basisPoints(dayOfWeek, dayOfYear, leapYear)));
+            dayOfWeek = dayOfWeek == 7 ? 1 : dayOfWeek + 1;
+            if (++dayOfYear > (leapYear ? 366 : 365)) {
+                dayOfYear = 1;
+                leapYear = Year.isLeap(++year);
+            }
+        }
+        return (total + RateCalendar.BASIS_POINTS / 2) / RateCalendar.BASIS_POINTS;
+    }
+
+    static long toMinor(BigDecimal amount) {
+        return amount.setScale(MINOR_DIGITS, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private void parseCar(String car) {
+        String[] idAndCalendar = car.split("=");
+        String[] calendar = idAndCalendar.length == 2 ? idAndCalendar[1].split(",", 2) : new String[0];
+        if (calendar.length == 0 || calendar[0].isBlank()) {
+            throw new IllegalArgumentException(
+                    "Car rate calendar must look like carId=weekendMultiplier[,season...], was '" + car + "'");
+        }
+        setRateCalendar(UUID.fromString(idAndCalendar[0].trim()), RateCalendar.of(new BigDecimal(calendar[0].trim()),
+                parseSeasons(calendar.length == 2 ? calendar[1] : "")));
+    }
+
+    private static List<RateCalendar.Season> parseSeasons(String seasons) {
+        List<RateCalendar.Season> parsed = new ArrayList<>();
+        for (String season : seasons.split(",")) {
+            if (!season.isBlank()) {
+                parsed.add(RateCalendar.Season.parse(season));
+            }
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,96 @@
+package com.gui.car_rental_booking_service.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.MonthDay;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Daily rate multipliers of a car: one for weekend days and one per season. Multipliers are kept as basis points
+ * ({@code 10000} is the plain daily price) in a table of one slot per day of a leap year, so a quote looks a day
+ * up without allocating. Immutable.
+ */
+public final class RateCalendar {
+
+    static final int BASIS_POINTS = 10_000;
+    private static final int LEAP_YEAR = 2000;
+    private static final int FEBRUARY_29 = 59;
+
+    /** Charges the plain daily price every day. */
+    public static final RateCalendar FLAT = of(BigDecimal.ONE, List.of());
+
+    private final int weekendBasisPoints;
+    private final int[] seasonBasisPoints;
+
+    private RateCalendar(int weekendBasisPoints, int[] seasonBasisPoints) {
+        this.weekendBasisPoints = weekendBasisPoints;
+        this.seasonBasisPoints = seasonBasisPoints;
+    }
+
+    /**
+     * @param weekendMultiplier applied on Saturdays and Sundays, on top of the season's
+     * @param seasons           later seasons take precedence where they overlap
+     */
+    public static RateCalendar of(BigDecimal weekendMultiplier, List<Season> seasons) {
+        int[] seasonBasisPoints = new int[366];
+        Arrays.fill(seasonBasisPoints, BASIS_POINTS);
+        for (Season season : seasons) {
+            int basisPoints = basisPoints(season.multiplier());
+            int from = dayIndex(season.from());
+            int to = dayIndex(season.to());
+            for (int day = from; day != to; day = (day + 1) % seasonBasisPoints.length) {
+                seasonBasisPoints[day] = basisPoints;
+            }
+            seasonBasisPoints[to] = basisPoints;
+        }
+        return new RateCalendar(basisPoints(weekendMultiplier), seasonBasisPoints);
+    }
+
+    /**
+     * @param dayOfWeek ISO day of the week, Monday being 1
+     * @param dayOfYear day of the year, 1 to 366
+     * @return the multiplier of the day in basis points
+     */
+    int basisPoints(int dayOfWeek, int dayOfYear, boolean leapYear) {
+        int index = leapYear || dayOfYear <= FEBRUARY_29 ? dayOfYear - 1 : dayOfYear;
+        int season = seasonBasisPoints[index];
+        if (dayOfWeek < DayOfWeek.SATURDAY.getValue()) {
+            return season;
+        }
+        return (int) (((long) season * weekendBasisPoints + BASIS_POINTS / 2) / BASIS_POINTS);
+    }
+
+    private static int dayIndex(MonthDay monthDay) {
+        return monthDay.atYear(LEAP_YEAR).getDayOfYear() - 1;
+    }
+
+    private static int basisPoints(BigDecimal multiplier) {
+        if (multiplier.signum() < 0) {
+            throw new IllegalArgumentException("Rate multiplier must not be negative, was " + multiplier);
+        }
+        return multiplier.movePointRight(4).setScale(0, RoundingMode.HALF_UP).intValueExact();
+    }
+
+    /**
+     * Days {@code from} to {@code to}, both inclusive, charged at {@code multiplier} times the daily price. A
+     * season whose end comes before its start wraps around the new year.
+     */
+    public record Season(MonthDay from, MonthDay to, BigDecimal multiplier) {
+
+        /**
+         * Parses {@code MM-dd/MM-dd:multiplier}, e.g. {@code 12-20/01-05:1.3}.
+         */
+        public static Season parse(String season) {
+            String[] rangeAndMultiplier = season.trim().split(":");
+            String[] range = rangeAndMultiplier.length == 2 ? rangeAndMultiplier[0].split("/") : new String[0];
+            if (range.length != 2) {
+                throw new IllegalArgumentException(
+                        "Season must look like MM-dd/MM-dd:multiplier, was '" + season + "'");
+            }
+            return new Season(MonthDay.parse("--" + range[0].trim()), MonthDay.parse("--" + range[1].trim()),
+                    new BigDecimal(rangeAndMultiplier[1].trim()));
+        }
+    }
+}
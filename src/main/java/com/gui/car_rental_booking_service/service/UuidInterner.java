@@ -0,0 +1,96 @@
+package com.gui.car_rental_booking_service.service;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Assigns dense int ids, in first-seen order, to UUIDs. Keys are kept as two primitive longs in an
+ * open-addressing table, so an entry costs about 27 bytes instead of the ~100 of a {@code HashMap<UUID, Integer>}
+ * entry. Ids are never released. Not thread-safe.
+ */
+final class UuidInterner {
+
+    private static final int NO_ID = -1;
+
+    private long[] mostSignificant;
+    private long[] leastSignificant;
+    private int[] ids;
+    private int size;
+
+    UuidInterner(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(8, expectedSize * 4 / 3)) << 1);
+    }
+
+    /**
+     * @return the id of the UUID, or -1 if it was never interned
+     */
+    int find(UUID uuid) {
+        int slot = slot(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        return ids[slot];
+    }
+
+    int intern(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        int slot = slot(msb, lsb);
+        if (ids[slot] != NO_ID) {
+            return ids[slot];
+        }
+        if ((size + 1) * 4L > ids.length * 3L) {
+            grow();
+            slot = slot(msb, lsb);
+        }
+        mostSignificant[slot] = msb;
+        leastSignificant[slot] = lsb;
+        ids[slot] = size;
+        return size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slot(long msb, long lsb) {
+        int mask = ids.length - 1;
+        // halves mixed separately: UUIDs whose halves XOR to the same value must not share a probe chain
+        long h = mix(msb) * 31 + mix(lsb);
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (ids[slot] != NO_ID && (mostSignificant[slot] != msb || leastSignificant[slot] != lsb)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Finalizer of MurmurHash3, spreading every input bit over the whole word.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+
+    private void grow() {
+        long[] oldMost = mostSignificant;
+        long[] oldLeast = leastSignificant;
+        int[] oldIds = ids;
+        allocate(oldIds.length << 1);
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != NO_ID) {
+                int slot = slot(oldMost[i], oldLeast[i]);
+                mostSignificant[slot] = oldMost[i];
+                leastSignificant[slot] = oldLeast[i];
+                ids[slot] = oldIds[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        mostSignificant = new long[capacity];
+        leastSignificant = new long[capacity];
+        ids = new int[capacity];
+        Arrays.fill(ids, NO_ID);
+    }
+}
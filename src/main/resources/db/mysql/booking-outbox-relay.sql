@@ -0,0 +1,20 @@
+-- booking_outbox ids stay AUTO_INCREMENT: the relay sends rows in id order, and ids handed out in blocks per
+-- instance would let a later event overtake an earlier one. Drop the sequence table an earlier version of this
+-- script created.
+
+DROP TABLE IF EXISTS booking_outbox_seq;
+
+-- Rows whose payload can't be read are set aside instead of blocking the relay. After fixing such a row,
+-- clear failed_at to have it relayed again.
+
+ALTER TABLE booking_outbox
+    ADD COLUMN failed_at DATETIME(6) NULL,
+    ADD COLUMN failure VARCHAR(1000) NULL;
+
+-- Lease electing the single instance that relays the outbox.
+
+CREATE TABLE IF NOT EXISTS booking_outbox_relay_lease (
+    name       VARCHAR(64) NOT NULL PRIMARY KEY,
+    owner      VARCHAR(64) NULL,
+    expires_at DATETIME(6) NOT NULL
+);
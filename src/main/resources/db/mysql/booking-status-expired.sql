@@ -0,0 +1,8 @@
+-- Hibernate maps BookingStatus to a MySQL ENUM column and ddl-auto=update doesn't widen it, so existing
+-- schemas need EXPIRED added by hand before the lifecycle job can expire pending bookings.
+
+ALTER TABLE bookings
+    MODIFY booking_status ENUM ('PENDING', 'COMPLETED', 'CANCELLED', 'CONFIRMED', 'EXPIRED');
+
+ALTER TABLE bookings_archive
+    MODIFY booking_status ENUM ('PENDING', 'COMPLETED', 'CANCELLED', 'CONFIRMED', 'EXPIRED');
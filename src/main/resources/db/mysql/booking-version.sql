@@ -0,0 +1,13 @@
+-- Booking carries a @Version column for optimistic locking. Run this before deploying the version that maps it:
+-- ddl-auto=update would add the column without a default, and the bulk UPDATEs of BookingRepository bump it with
+-- version = version + 1, which leaves NULL as NULL.
+
+ALTER TABLE bookings
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+-- If ddl-auto=update already added the column, run these two statements instead of the one above:
+--
+-- UPDATE bookings SET version = 0 WHERE version IS NULL;
+--
+-- ALTER TABLE bookings
+--     MODIFY version BIGINT NOT NULL DEFAULT 0;
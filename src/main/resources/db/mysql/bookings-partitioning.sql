@@ -0,0 +1,128 @@
+-- Range-partitions bookings by month of rental_start_date on MySQL 8, so whole months of finished bookings can
+-- be moved to bookings_archive and dropped as partitions instead of shrinking the table and its indexes row by
+-- row.
+--
+-- MySQL requires every unique key of a partitioned table to contain the partitioning column, so the primary
+-- key becomes (booking_id, rental_start_date). Hibernate keeps mapping booking_id alone as the id; lookups by
+-- id probe the primary key of each partition. That key alone would accept the same booking_id twice with
+-- different start dates. Ids are UUIDv7 from TimeOrderedUuidGenerator, so that isn't expected to happen, but it
+-- is still enforced: booking_ids holds every id stored in bookings, keyed by booking_id, and a trigger claims
+-- the id there before each insert, so a duplicate fails with a duplicate key error as before. Ids stay claimed
+-- once their booking is archived or deleted. Run the conversion once, in a maintenance window: it rebuilds the
+-- table.
+
+CREATE TABLE booking_ids (
+    booking_id BINARY(16) NOT NULL PRIMARY KEY
+);
+
+INSERT INTO booking_ids (booking_id)
+SELECT booking_id FROM bookings
+UNION
+SELECT booking_id FROM bookings_archive;
+
+CREATE TRIGGER bookings_claim_booking_id
+    BEFORE INSERT ON bookings
+    FOR EACH ROW
+    INSERT INTO booking_ids (booking_id) VALUES (NEW.booking_id);
+
+ALTER TABLE bookings
+    MODIFY rental_start_date DATETIME(6) NOT NULL,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (booking_id, rental_start_date);
+
+ALTER TABLE bookings
+    PARTITION BY RANGE COLUMNS (rental_start_date) (
+        PARTITION p_before_2025 VALUES LESS THAN ('2025-01-01'),
+        PARTITION p2025_01 VALUES LESS THAN ('2025-02-01'),
+        PARTITION p2025_02 VALUES LESS THAN ('2025-03-01'),
+        PARTITION p2025_03 VALUES LESS THAN ('2025-04-01'),
+        PARTITION p2025_04 VALUES LESS THAN ('2025-05-01'),
+        PARTITION p2025_05 VALUES LESS THAN ('2025-06-01'),
+        PARTITION p2025_06 VALUES LESS THAN ('2025-07-01'),
+        PARTITION p2025_07 VALUES LESS THAN ('2025-08-01'),
+        PARTITION p2025_08 VALUES LESS THAN ('2025-09-01'),
+        PARTITION p2025_09 VALUES LESS THAN ('2025-10-01'),
+        PARTITION p2025_10 VALUES LESS THAN ('2025-11-01'),
+        PARTITION p2025_11 VALUES LESS THAN ('2025-12-01'),
+        PARTITION p2025_12 VALUES LESS THAN ('2026-01-01'),
+        PARTITION p_future VALUES LESS THAN (MAXVALUE)
+    );
+
+DELIMITER //
+
+-- Splits p_future so every month up to and including the given one has its own partition. Schedule it
+-- monthly, a few months ahead, e.g. CALL add_booking_partitions(CURDATE() + INTERVAL 3 MONTH).
+CREATE PROCEDURE add_booking_partitions(IN up_to DATE)
+BEGIN
+    DECLARE next_start DATE;
+    SELECT DATE(REPLACE(MAX(PARTITION_DESCRIPTION), '''', ''))
+    INTO next_start
+    FROM information_schema.PARTITIONS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'bookings' AND PARTITION_DESCRIPTION <> 'MAXVALUE';
+
+    WHILE next_start <= up_to DO
+        SET @split = CONCAT('ALTER TABLE bookings REORGANIZE PARTITION p_future INTO (',
+                            'PARTITION p', DATE_FORMAT(next_start, '%Y_%m'),
+                            ' VALUES LESS THAN (''', next_start + INTERVAL 1 MONTH, '''), ',
+                            'PARTITION p_future VALUES LESS THAN (MAXVALUE))');
+        PREPARE split_statement FROM @split;
+        EXECUTE split_statement;
+        DEALLOCATE PREPARE split_statement;
+        SET next_start = next_start + INTERVAL 1 MONTH;
+    END WHILE;
+END //
+
+-- Moves the monthly partitions that end on or before the given date to bookings_archive: their rows are copied
+-- with one INSERT ... SELECT, then the partition is dropped, without deleting anything row by row. A partition
+-- still holding an active booking, e.g. one stuck in PENDING, is kept and reported. Finished bookings don't
+-- change anymore and new ones don't start in the past, so nothing enters a partition between the copy and the
+-- drop; rows an interrupted run already copied are skipped. Schedule it monthly, e.g.
+-- CALL archive_booking_partitions(CURDATE() - INTERVAL 6 MONTH); BookingArchiver is then left with the
+-- finished bookings of the months that were kept.
+CREATE PROCEDURE archive_booking_partitions(IN before_date DATE)
+BEGIN
+    DECLARE done BOOLEAN DEFAULT FALSE;
+    DECLARE candidate VARCHAR(64);
+    DECLARE partition_cursor CURSOR FOR
+        SELECT PARTITION_NAME
+        FROM information_schema.PARTITIONS
+        WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'bookings' AND PARTITION_DESCRIPTION <> 'MAXVALUE'
+          AND DATE(REPLACE(PARTITION_DESCRIPTION, '''', '')) <= before_date
+        ORDER BY PARTITION_ORDINAL_POSITION;
+    DECLARE CONTINUE HANDLER FOR NOT FOUND SET done = TRUE;
+
+    OPEN partition_cursor;
+    archive_loop:
+    LOOP
+        FETCH partition_cursor INTO candidate;
+        IF done THEN
+            LEAVE archive_loop;
+        END IF;
+        SET @count_active = CONCAT('SELECT COUNT(*) INTO @active FROM bookings PARTITION (', candidate, ') ',
+                                   'WHERE booking_status IN (''PENDING'', ''CONFIRMED'')');
+        PREPARE count_statement FROM @count_active;
+        EXECUTE count_statement;
+        DEALLOCATE PREPARE count_statement;
+        IF @active = 0 THEN
+            SET @copy_partition = CONCAT(
+                    'INSERT INTO bookings_archive (booking_id, car_id, user_id, user_email, rental_start_date, ',
+                    'rental_end_date, booking_status, total_price, created_at, updated_at, archived_at) ',
+                    'SELECT b.booking_id, b.car_id, b.user_id, b.user_email, b.rental_start_date, ',
+                    'b.rental_end_date, b.booking_status, b.total_price, b.created_at, b.updated_at, NOW(6) ',
+                    'FROM bookings PARTITION (', candidate, ') b ',
+                    'WHERE NOT EXISTS (SELECT 1 FROM bookings_archive a WHERE a.booking_id = b.booking_id)');
+            PREPARE copy_statement FROM @copy_partition;
+            EXECUTE copy_statement;
+            DEALLOCATE PREPARE copy_statement;
+            SET @drop_partition = CONCAT('ALTER TABLE bookings DROP PARTITION ', candidate);
+            PREPARE drop_statement FROM @drop_partition;
+            EXECUTE drop_statement;
+            DEALLOCATE PREPARE drop_statement;
+        ELSE
+            SELECT candidate AS kept_partition, @active AS active_bookings;
+        END IF;
+    END LOOP;
+    CLOSE partition_cursor;
+END //
+
+DELIMITER ;
@@ -0,0 +1,73 @@
+package com.gui.car_rental_booking_service.Config;
+
+import com.gui.car_rental_common.commands.CancelBookingCommand;
+import com.gui.car_rental_common.dtos.BookingDto;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.kafka.listener.ListenerExecutionFailedException;
+import org.springframework.kafka.support.serializer.DeserializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadLetterHeadersTest {
+
+    private static final String TOPIC = "rental-saga-booking-commands";
+
+    @Test
+    void of_shouldDescribeCommand_whenProcessingFailedTransiently() {
+        // Arrange
+        UUID sagaId = UUID.randomUUID();
+        ConsumerRecord<String, Object> record = new ConsumerRecord<>(TOPIC, 0, 42L, "car",
+                new CancelBookingCommand(sagaId, new BookingDto()));
+        Exception failure = new ListenerExecutionFailedException("Listener failed",
+                new QueryTimeoutException("Lock wait timeout exceeded"));
+
+        // Act
+        Headers headers = DeadLetterHeaders.of(record, failure);
+
+        // Assert
+        assertEquals("transient", value(headers, DeadLetterHeaders.FAILURE));
+        assertEquals(CancelBookingCommand.class.getName(), value(headers, DeadLetterHeaders.COMMAND_TYPE));
+        assertEquals(sagaId.toString(), value(headers, DeadLetterHeaders.SAGA_ID));
+    }
+
+    @Test
+    void of_shouldMarkDeserializationFailure_withoutCommandHeaders() {
+        // Arrange
+        ConsumerRecord<String, Object> record = new ConsumerRecord<>(TOPIC, 0, 43L, "car", null);
+        Exception failure = new ListenerExecutionFailedException("Listener failed",
+                new DeserializationException("Unknown message version", new byte[]{(byte) 0xB7, 9}, false, null));
+
+        // Act
+        Headers headers = DeadLetterHeaders.of(record, failure);
+
+        // Assert
+        assertEquals("deserialization", value(headers, DeadLetterHeaders.FAILURE));
+        assertNull(headers.lastHeader(DeadLetterHeaders.COMMAND_TYPE));
+        assertNull(headers.lastHeader(DeadLetterHeaders.SAGA_ID));
+    }
+
+    @Test
+    void of_shouldMarkOtherFailuresTerminal() {
+        // Arrange
+        ConsumerRecord<String, Object> record = new ConsumerRecord<>(TOPIC, 0, 44L, "car", "unexpected");
+
+        // Act
+        Headers headers = DeadLetterHeaders.of(record, new IllegalStateException("Booking is COMPLETED"));
+
+        // Assert
+        assertEquals("terminal", value(headers, DeadLetterHeaders.FAILURE));
+        assertEquals(String.class.getName(), value(headers, DeadLetterHeaders.COMMAND_TYPE));
+    }
+
+    private static String value(Headers headers, String key) {
+        Header header = headers.lastHeader(key);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+}
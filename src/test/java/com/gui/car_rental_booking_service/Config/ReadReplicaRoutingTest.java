@@ -0,0 +1,114 @@
+package com.gui.car_rental_booking_service.Config;
+
+import com.gui.car_rental_booking_service.entities.Booking;
+import com.gui.car_rental_booking_service.enums.BookingStatus;
+import com.gui.car_rental_booking_service.respositories.BookingRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two in-memory H2 databases stand in for the primary and a replica; a third replica URL points at a database
+ * that doesn't exist. Nothing replicates, so where a read went shows in what it finds.
+ */
+@DataJpaTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "booking.datasource.replica-urls=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1,"
+                + "jdbc:h2:mem:routing-missing;IFEXISTS=TRUE",
+        "booking.datasource.replica-retry-after-failure=PT1H"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ReadReplicaConfig.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReadReplicaRoutingTest {
+
+    private static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    void setUp() {
+        replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+        replica.execute("DROP ALL OBJECTS");
+        List<String> schema = new JdbcTemplate(primaryDataSource).queryForList("SCRIPT NODATA", String.class);
+        schema.stream().filter(statement -> statement.startsWith("CREATE")).forEach(replica::execute);
+        new JdbcTemplate(primaryDataSource).execute("DELETE FROM bookings");
+    }
+
+    @Test
+    void readOnlyCalls_shouldGoToReplica_andWritesToPrimary() {
+        Booking saved = bookingRepository.save(booking());
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        assertThat(bookingRepository.findById(saved.getBookingId())).isEmpty();
+        Long onReplica = readOnly.execute(status -> bookingRepository.count());
+        Long onPrimary = new TransactionTemplate(transactionManager).execute(status -> bookingRepository.count());
+
+        assertThat(onReplica).isZero();
+        assertThat(onPrimary).isEqualTo(1);
+        assertThat(replica.queryForObject("SELECT COUNT(*) FROM bookings", Long.class)).isZero();
+    }
+
+    @Test
+    void onPrimary_shouldReadOwnWrite() {
+        Booking saved = bookingRepository.save(booking());
+
+        assertThat(ReplicaRoutingDataSource.onPrimary(() -> bookingRepository.findById(saved.getBookingId())))
+                .isPresent();
+    }
+
+    @Test
+    void failingReplica_shouldBeSkipped() {
+        bookingRepository.save(booking());
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(bookingRepository.findAll()).isEmpty();
+        }
+        assertThat(replicaRoutingDataSource.upReplicaCount()).isEqualTo(1);
+    }
+
+    private static Booking booking() {
+        Booking booking = new Booking();
+        booking.setCarId(UUID.randomUUID());
+        booking.setRentalStartDate(LocalDateTime.now().plusDays(2));
+        booking.setRentalEndDate(LocalDateTime.now().plusDays(4));
+        booking.setBookingStatus(BookingStatus.PENDING);
+        booking.setTotalPrice(BigDecimal.TEN);
+        return booking;
+    }
+}
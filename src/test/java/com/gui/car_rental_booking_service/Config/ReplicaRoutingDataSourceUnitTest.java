@@ -0,0 +1,90 @@
+package com.gui.car_rental_booking_service.Config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReplicaRoutingDataSourceUnitTest {
+
+    private static final Duration MAX_LAG = Duration.ofSeconds(5);
+
+    @Mock
+    private DataSource primary;
+
+    @Mock
+    private DataSource replica;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Statement statement;
+
+    @Mock
+    private ResultSet status;
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        routingDataSource = new ReplicaRoutingDataSource(primary, List.of(replica), Duration.ofMinutes(1));
+        when(replica.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery("SHOW REPLICA STATUS")).thenReturn(status);
+    }
+
+    @Test
+    void checkLag_shouldSkipReplicaTooFarBehind_untilItCaughtUp() throws SQLException {
+        // Arrange
+        when(status.next()).thenReturn(true);
+        when(status.getObject("Seconds_Behind_Source", Long.class)).thenReturn(30L, 1L);
+
+        // Act
+        routingDataSource.checkLag(MAX_LAG);
+        int upWhileLagging = routingDataSource.upReplicaCount();
+        routingDataSource.checkLag(MAX_LAG);
+
+        // Assert
+        assertEquals(0, upWhileLagging);
+        assertEquals(1, routingDataSource.upReplicaCount());
+    }
+
+    @Test
+    void checkLag_shouldSkipReplica_whenReplicationIsStopped() throws SQLException {
+        // Arrange
+        when(status.next()).thenReturn(true);
+        when(status.getObject("Seconds_Behind_Source", Long.class)).thenReturn(null);
+
+        // Act
+        routingDataSource.checkLag(MAX_LAG);
+
+        // Assert
+        assertEquals(0, routingDataSource.upReplicaCount());
+    }
+
+    @Test
+    void checkLag_shouldKeepReplica_whenStatusCannotBeRead() throws SQLException {
+        // Arrange
+        when(statement.executeQuery("SHOW REPLICA STATUS")).thenThrow(new SQLException("Access denied"));
+
+        // Act
+        routingDataSource.checkLag(MAX_LAG);
+
+        // Assert
+        assertEquals(1, routingDataSource.upReplicaCount());
+    }
+}
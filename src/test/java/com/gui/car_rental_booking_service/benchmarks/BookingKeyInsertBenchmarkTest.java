@@ -0,0 +1,126 @@
+package com.gui.car_rental_booking_service.benchmarks;
+
+import com.gui.car_rental_booking_service.entities.TimeOrderedUuidGenerator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Insert throughput of random (v4) against time-ordered (v7) {@code BINARY(16)} primary keys on a table shaped
+ * like {@code bookings}. Each strategy fills its own table with {@code benchmark.rows} rows in JDBC batches and
+ * reports the rate of the first and the last slice, so the cost of random page splits on a large index shows
+ * up as the gap between the two.
+ * <p>
+ * Runs against a file-backed H2 database by default; point {@code benchmark.jdbc.url} (plus
+ * {@code benchmark.jdbc.user} and {@code benchmark.jdbc.password}) at a MySQL schema to measure InnoDB. Only
+ * runs with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class BookingKeyInsertBenchmarkTest {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 1_000_000);
+    private static final int BATCH_SIZE = 1_000;
+    private static final int SLICE = Math.max(BATCH_SIZE, ROWS / 10 / BATCH_SIZE * BATCH_SIZE);
+
+    @Test
+    void randomVersusTimeOrderedKeys() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(
+                System.getProperty("benchmark.jdbc.url", "jdbc:h2:file:./target/benchmark/booking-keys"),
+                System.getProperty("benchmark.jdbc.user", "sa"),
+                System.getProperty("benchmark.jdbc.password", ""))) {
+            connection.setAutoCommit(false);
+            Result random = run(connection, "bench_bookings_v4", UUID::randomUUID);
+            Result timeOrdered = run(connection, "bench_bookings_v7", TimeOrderedUuidGenerator::generate);
+
+            System.out.printf("%-12s %12s %16s %16s%n", "keys", "total rows/s", "first slice/s", "last slice/s");
+            System.out.println(random.format("random v4"));
+            System.out.println(timeOrdered.format("time v7"));
+        }
+    }
+
+    private static Result run(Connection connection, String table, Supplier<UUID> keys) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists " + table);
+            statement.execute("create table " + table + " (booking_id binary(16) not null primary key, " +
+                    "car_id binary(16) not null, user_id binary(16), user_email varchar(255), " +
+                    "rental_start_date timestamp(6), rental_end_date timestamp(6), booking_status varchar(16), " +
+                    "total_price decimal(38,2), created_at timestamp(6), updated_at timestamp(6))");
+        }
+        connection.commit();
+
+        LocalDateTime start = LocalDateTime.now().plusDays(2);
+        long firstSlice = 0;
+        long lastSliceStarted = 0;
+        long started = System.nanoTime();
+        try (PreparedStatement insert = connection.prepareStatement("insert into " + table +
+                " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (int row = 0; row < ROWS; row++) {
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                insert.setBytes(1, toBytes(keys.get()));
+                insert.setBytes(2, toBytes(UUID.randomUUID()));
+                insert.setBytes(3, toBytes(UUID.randomUUID()));
+                insert.setString(4, "user" + row + "@example.com");
+                insert.setTimestamp(5, Timestamp.valueOf(start.plusDays(row % 30)));
+                insert.setTimestamp(6, Timestamp.valueOf(start.plusDays(row % 30 + 3)));
+                insert.setString(7, "PENDING");
+                insert.setBigDecimal(8, java.math.BigDecimal.TEN);
+                insert.setTimestamp(9, now);
+                insert.setTimestamp(10, now);
+                insert.addBatch();
+                if ((row + 1) % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                    connection.commit();
+                    if (row + 1 == SLICE) {
+                        firstSlice = System.nanoTime() - started;
+                    }
+                    if (row + 1 == ROWS - SLICE) {
+                        lastSliceStarted = System.nanoTime();
+                    }
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+        long finished = System.nanoTime();
+
+        try (Statement statement = connection.createStatement();
+             var count = statement.executeQuery("select count(*) from " + table)) {
+            count.next();
+            assertEquals(ROWS, count.getLong(1));
+        }
+        return new Result(Duration.ofNanos(finished - started), Duration.ofNanos(firstSlice),
+                Duration.ofNanos(finished - lastSliceStarted));
+    }
+
+    private static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    private record Result(Duration total, Duration firstSlice, Duration lastSlice) {
+
+        String format(String name) {
+            return String.format("%-12s %12.0f %16.0f %16.0f", name, rate(ROWS, total), rate(SLICE, firstSlice),
+                    rate(SLICE, lastSlice));
+        }
+
+        private static double rate(int rows, Duration elapsed) {
+            return rows / (elapsed.toNanos() / 1e9);
+        }
+    }
+}
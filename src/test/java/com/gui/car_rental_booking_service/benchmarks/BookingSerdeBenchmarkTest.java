@@ -0,0 +1,90 @@
+package com.gui.car_rental_booking_service.benchmarks;
+
+import com.gui.car_rental_booking_service.serde.BookingBinaryDeserializer;
+import com.gui.car_rental_booking_service.serde.BookingBinarySerializer;
+import com.gui.car_rental_common.commands.BookingCreationCommand;
+import com.gui.car_rental_common.dtos.BookingDto;
+import com.gui.car_rental_common.events.booking.BookingCreatedEvent;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Bytes per message and encode/decode ns/op of the binary format against the current JSON path, for a
+ * creation command and a created event. Numbers come from a warmed-up loop rather than JMH, so use them to
+ * compare the two formats on the same machine. Both paths pay for a fresh header copy per decode since the
+ * JSON deserializer consumes its type headers. Only runs with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class BookingSerdeBenchmarkTest {
+
+    private static final String TOPIC = "rental-saga-booking-commands";
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 1_000_000);
+
+    @Test
+    void binaryVersusJson() {
+        BookingDto dto = new BookingDto();
+        dto.setBookingId(UUID.randomUUID());
+        dto.setCarId(UUID.randomUUID());
+        dto.setUserId(UUID.randomUUID());
+        dto.setEmail("customer@example.com");
+        dto.setPricePerDay(new BigDecimal("89.90"));
+        dto.setAmount(new BigDecimal("359.60"));
+        dto.setRentalStartDate(LocalDateTime.now().plusDays(3));
+        dto.setRentalEndDate(LocalDateTime.now().plusDays(7));
+        Object[] messages = {new BookingCreationCommand(UUID.randomUUID(), dto), new BookingCreatedEvent(UUID.randomUUID(), dto)};
+
+        Map<String, Object> configs = Map.of(BookingBinarySerializer.BINARY_TOPICS, TOPIC,
+                JsonDeserializer.TRUSTED_PACKAGES, "com.gui.car_rental_common.*");
+        Serializer<Object> json = new JsonSerializer<>();
+        json.configure(configs, false);
+        Deserializer<Object> jsonReader = new JsonDeserializer<>();
+        jsonReader.configure(configs, false);
+        Serializer<Object> binary = new BookingBinarySerializer();
+        binary.configure(configs, false);
+        Deserializer<Object> binaryReader = new BookingBinaryDeserializer();
+        binaryReader.configure(configs, false);
+
+        System.out.printf("%-22s %-7s %8s %12s %12s%n", "message", "format", "bytes", "encode ns", "decode ns");
+        for (Object message : messages) {
+            System.out.println(measure(message, "json", json, jsonReader));
+            System.out.println(measure(message, "binary", binary, binaryReader));
+        }
+    }
+
+    private static String measure(Object message, String format, Serializer<Object> serializer,
+                                  Deserializer<Object> deserializer) {
+        RecordHeaders headers = new RecordHeaders();
+        byte[] bytes = serializer.serialize(TOPIC, headers, message);
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += serializer.serialize(TOPIC, new RecordHeaders(), message).length;
+            sink += deserializer.deserialize(TOPIC, new RecordHeaders(headers.toArray()), bytes).hashCode();
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += serializer.serialize(TOPIC, new RecordHeaders(), message).length;
+        }
+        long encode = System.nanoTime() - started;
+        started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += deserializer.deserialize(TOPIC, new RecordHeaders(headers.toArray()), bytes).hashCode();
+        }
+        long decode = System.nanoTime() - started;
+        assertEquals(message.getClass(), deserializer.deserialize(TOPIC, new RecordHeaders(headers.toArray()), bytes).getClass());
+        return String.format("%-22s %-7s %8d %12.0f %12.0f%s", message.getClass().getSimpleName(), format,
+                bytes.length, (double) encode / ITERATIONS, (double) decode / ITERATIONS, sink == 42 ? " " : "");
+    }
+}
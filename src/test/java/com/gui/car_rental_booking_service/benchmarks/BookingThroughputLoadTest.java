@@ -0,0 +1,278 @@
+package com.gui.car_rental_booking_service.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.gui.car_rental_booking_service.service.BookingEventOutbox;
+import com.gui.car_rental_common.commands.BookingCreationCommand;
+import com.gui.car_rental_common.commands.CancelBookingCommand;
+import com.gui.car_rental_common.dtos.BookingDto;
+import com.gui.car_rental_common.events.booking.BookingCancellationFailedEvent;
+import com.gui.car_rental_common.events.booking.BookingCancelledEvent;
+import com.gui.car_rental_common.events.booking.BookingCreatedEvent;
+import com.gui.car_rental_common.events.booking.BookingCreationFailedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.Environment;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Offline end-to-end throughput run: the whole application against an embedded broker and an in-memory H2
+ * database. Creation commands for a pool of cars are sent as fast as the producer takes them; a share of the
+ * bookings created is cancelled again as their {@link BookingCreatedEvent}s come back, so the mix depends on
+ * the volume that actually succeeded. The run ends once every command was answered on the events topic.
+ * <p>
+ * Throughput, handler latency percentiles per outcome, end-to-end latency percentiles and the consumer lag
+ * sampled over time are written as JSON to {@code benchmark.load.output}. The listener mode and the other
+ * {@code booking.*} settings are taken from system properties, so runs of different builds or configurations
+ * can be compared file by file:
+ * <pre>
+ * mvn test -Pbenchmark -Dtest=BookingThroughputLoadTest -Dbenchmark.load.commands=20000 \
+ *     -Dbooking.kafka.listener.mode=batch
+ * </pre>
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.cloud.config.import-check.enabled=false",
+        "eureka.client.enabled=false",
+        "spring.cloud.discovery.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:booking-load;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "management.metrics.distribution.percentiles.booking.handler=0.5,0.99,0.999",
+        "management.metrics.distribution.percentiles.booking.saga.end-to-end=0.5,0.99,0.999",
+        "logging.level.com.gui.car_rental_booking_service=WARN",
+        "logging.level.org.apache.kafka=WARN"
+})
+@EmbeddedKafka(partitions = BookingThroughputLoadTest.PARTITIONS,
+        topics = {BookingThroughputLoadTest.COMMANDS_TOPIC, BookingEventOutbox.BOOKING_EVENTS_TOPIC},
+        bootstrapServersProperty = "spring.kafka.bootstrap-servers")
+class BookingThroughputLoadTest {
+
+    static final int PARTITIONS = 4;
+    static final String COMMANDS_TOPIC = "rental-saga-booking-commands";
+    private static final String GROUP_ID = "booking-service-group";
+
+    private static final int COMMANDS = Integer.getInteger("benchmark.load.commands", 5_000);
+    private static final int CARS = Integer.getInteger("benchmark.load.cars", 1_000);
+    private static final double CANCEL_RATIO = Double.parseDouble(System.getProperty("benchmark.load.cancel-ratio", "0.2"));
+    private static final long TIMEOUT_MS = Long.getLong("benchmark.load.timeout-ms", 600_000);
+    private static final long SAMPLE_INTERVAL_MS = Long.getLong("benchmark.load.sample-interval-ms", 500);
+    private static final String OUTPUT = System.getProperty("benchmark.load.output",
+            "target/benchmarks/booking-load-" + System.getProperty("booking.kafka.listener.mode", "record") + ".json");
+
+    @Autowired
+    private KafkaTemplate<String, Object> kafkaTemplate;
+    @Autowired
+    private KafkaListenerEndpointRegistry listenerRegistry;
+    @Autowired
+    private EmbeddedKafkaBroker broker;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private Environment environment;
+
+    @Test
+    void sustainedCreationAndCancellation() throws Exception {
+        for (MessageListenerContainer container : listenerRegistry.getListenerContainers()) {
+            if (container.isRunning()) {
+                ContainerTestUtils.waitForAssignment(container, PARTITIONS);
+            }
+        }
+        Random random = new Random(42);
+        List<Map<String, Object>> lagSamples = new ArrayList<>();
+        Map<String, Integer> outcomes = new LinkedHashMap<>();
+        int cancelsSent = 0;
+        int creationAnswers = 0;
+        int cancellationAnswers = 0;
+
+        try (Consumer<String, Object> events = eventConsumer(); Admin admin = admin()) {
+            events.subscribe(List.of(BookingEventOutbox.BOOKING_EVENTS_TOPIC));
+            events.poll(Duration.ofMillis(100));
+
+            long started = System.nanoTime();
+            for (int i = 0; i < COMMANDS; i++) {
+                BookingCreationCommand command = creationCommand(random);
+                kafkaTemplate.send(COMMANDS_TOPIC, BookingEventOutbox.messageKey(command.getBookingDto()), command);
+            }
+            kafkaTemplate.flush();
+            long sent = System.nanoTime();
+
+            long nextSample = 0;
+            long deadline = started + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MS);
+            while (creationAnswers < COMMANDS || cancellationAnswers < cancelsSent) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException(String.format("Timed out with %d/%d creations and %d/%d cancellations answered",
+                            creationAnswers, COMMANDS, cancellationAnswers, cancelsSent));
+                }
+                for (ConsumerRecord<String, Object> record : events.poll(Duration.ofMillis(50))) {
+                    Object event = record.value();
+                    outcomes.merge(event.getClass().getSimpleName(), 1, Integer::sum);
+                    if (event instanceof BookingCreatedEvent created) {
+                        creationAnswers++;
+                        if (random.nextDouble() < CANCEL_RATIO) {
+                            kafkaTemplate.send(COMMANDS_TOPIC, record.key(),
+                                    new CancelBookingCommand(UUID.randomUUID(), created.getBookingDto()));
+                            cancelsSent++;
+                        }
+                    } else if (event instanceof BookingCreationFailedEvent) {
+                        creationAnswers++;
+                    } else if (event instanceof BookingCancelledEvent || event instanceof BookingCancellationFailedEvent) {
+                        cancellationAnswers++;
+                    }
+                }
+                long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                if (elapsedMs >= nextSample) {
+                    lagSamples.add(Map.of("elapsedMs", elapsedMs, "consumerLag", consumerLag(admin),
+                            "answered", creationAnswers + cancellationAnswers));
+                    nextSample = elapsedMs + SAMPLE_INTERVAL_MS;
+                }
+            }
+            long finished = System.nanoTime();
+
+            int commands = COMMANDS + cancelsSent;
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("timestamp", Instant.now().toString());
+            result.put("configuration", configuration());
+            result.put("commands", Map.of("creations", COMMANDS, "cancellations", cancelsSent));
+            result.put("sendDurationMs", TimeUnit.NANOSECONDS.toMillis(sent - started));
+            result.put("durationMs", TimeUnit.NANOSECONDS.toMillis(finished - started));
+            result.put("throughputPerSecond", commands / ((finished - started) / 1e9));
+            result.put("outcomes", outcomes);
+            result.put("handlerLatency", percentiles("booking.handler"));
+            result.put("endToEndLatency", percentiles("booking.saga.end-to-end"));
+            result.put("consumerLag", lagSamples);
+            write(result);
+
+            assertEquals(commands, creationAnswers + cancellationAnswers);
+        }
+    }
+
+    private static BookingCreationCommand creationCommand(Random random) {
+        LocalDate start = LocalDate.now().plusDays(2 + random.nextInt(50));
+        BookingDto bookingDto = new BookingDto();
+        bookingDto.setCarId(new UUID(0, random.nextInt(CARS)));
+        bookingDto.setUserId(UUID.randomUUID());
+        bookingDto.setEmail("load@example.com");
+        bookingDto.setPricePerDay(new BigDecimal("89.90"));
+        bookingDto.setRentalStartDate(start.atTime(10, 0));
+        bookingDto.setRentalEndDate(start.plusDays(1 + random.nextInt(7)).atTime(10, 0));
+        return new BookingCreationCommand(UUID.randomUUID(), bookingDto);
+    }
+
+    private Map<String, Object> configuration() {
+        Map<String, Object> configuration = new LinkedHashMap<>();
+        configuration.put("cars", CARS);
+        configuration.put("cancelRatio", CANCEL_RATIO);
+        configuration.put("partitions", PARTITIONS);
+        for (String key : List.of("booking.kafka.listener.mode", "booking.kafka.listener.concurrency",
+                "booking.kafka.batch.max-poll-records", "booking.kafka.keyed.lanes", "booking.kafka.serde.binary-topics",
+                "booking.db.bulkhead.permits", "booking.jpa.batch-size", "spring.threads.virtual.enabled")) {
+            configuration.put(key, environment.getProperty(key));
+        }
+        configuration.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        configuration.put("javaVersion", System.getProperty("java.version"));
+        return configuration;
+    }
+
+    private List<Map<String, Object>> percentiles(String timerName) {
+        List<Map<String, Object>> timers = new ArrayList<>();
+        for (Timer timer : meterRegistry.find(timerName).timers()) {
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+            Map<String, Object> entry = new LinkedHashMap<>();
+            timer.getId().getTags().forEach(tag -> entry.put(tag.getKey(), tag.getValue()));
+            entry.put("count", snapshot.count());
+            entry.put("meanMs", snapshot.mean(TimeUnit.MILLISECONDS));
+            entry.put("maxMs", snapshot.max(TimeUnit.MILLISECONDS));
+            for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+                entry.put("p" + percentileLabel(percentile.percentile()) + "Ms", percentile.value(TimeUnit.MILLISECONDS));
+            }
+            timers.add(entry);
+        }
+        return timers;
+    }
+
+    private static String percentileLabel(double percentile) {
+        return String.valueOf(percentile * 100).replaceAll("\\.0$", "").replace(".", "");
+    }
+
+    private long consumerLag(Admin admin) throws Exception {
+        Map<TopicPartition, OffsetAndMetadata> committed =
+                admin.listConsumerGroupOffsets(GROUP_ID).partitionsToOffsetAndMetadata().get();
+        Set<TopicPartition> partitions = IntStream.range(0, PARTITIONS)
+                .mapToObj(partition -> new TopicPartition(COMMANDS_TOPIC, partition))
+                .collect(Collectors.toSet());
+        Map<TopicPartition, OffsetSpec> latest = partitions.stream()
+                .collect(Collectors.toMap(partition -> partition, partition -> OffsetSpec.latest()));
+        long lag = 0;
+        for (var end : admin.listOffsets(latest).all().get().entrySet()) {
+            OffsetAndMetadata offset = committed.get(end.getKey());
+            lag += end.getValue().offset() - (offset == null ? 0 : offset.offset());
+        }
+        return lag;
+    }
+
+    private Consumer<String, Object> eventConsumer() {
+        Map<String, Object> props = new LinkedHashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, "booking-load-test");
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 1000);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
+        props.put(JsonDeserializer.TRUSTED_PACKAGES, "com.gui.car_rental_common.*");
+        return new KafkaConsumer<>(props);
+    }
+
+    private Admin admin() {
+        return Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString()));
+    }
+
+    private static void write(Map<String, Object> result) throws Exception {
+        File file = new File(OUTPUT);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, result);
+        System.out.printf("Load test results written to %s%n", file.getAbsolutePath());
+    }
+}
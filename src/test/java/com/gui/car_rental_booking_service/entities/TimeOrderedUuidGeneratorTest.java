@@ -0,0 +1,37 @@
+package com.gui.car_rental_booking_service.entities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeOrderedUuidGeneratorTest {
+
+    @Test
+    void generate_shouldProduceVersion7UuidsInIncreasingByteOrder() {
+        // Arrange
+        long before = System.currentTimeMillis();
+        List<UUID> ids = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(TimeOrderedUuidGenerator.generate());
+        }
+
+        // Assert
+        for (int i = 0; i < ids.size(); i++) {
+            UUID id = ids.get(i);
+            assertEquals(7, id.version());
+            assertEquals(2, id.variant());
+            if (i > 0) {
+                // unsigned comparison matches how BINARY(16) columns sort
+                assertTrue(Long.compareUnsigned(ids.get(i - 1).getMostSignificantBits(), id.getMostSignificantBits()) < 0);
+            }
+        }
+        assertTrue(ids.get(0).getMostSignificantBits() >>> 16 >= before);
+    }
+}
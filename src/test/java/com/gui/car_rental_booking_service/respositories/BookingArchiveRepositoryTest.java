@@ -0,0 +1,134 @@
+package com.gui.car_rental_booking_service.respositories;
+
+import com.gui.car_rental_booking_service.entities.Booking;
+import com.gui.car_rental_booking_service.entities.ProcessedCommand;
+import com.gui.car_rental_booking_service.enums.BookingStatus;
+import com.gui.car_rental_booking_service.enums.CommandOutcome;
+import com.gui.car_rental_booking_service.service.BookingArchiver;
+import com.gui.car_rental_booking_service.service.DatabaseBulkhead;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.cloud.config.enabled=false")
+class BookingArchiveRepositoryTest {
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private ArchivedBookingRepository archivedBookingRepository;
+
+    @Autowired
+    private ProcessedCommandRepository processedCommandRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private BookingArchiver bookingArchiver;
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        bookingArchiver = new BookingArchiver(bookingRepository, archivedBookingRepository, processedCommandRepository,
+                new TransactionTemplate(transactionManager), new DatabaseBulkhead(meterRegistry, 1, 1000),
+                meterRegistry);
+        ReflectionTestUtils.setField(bookingArchiver, "chunkSize", 2);
+        ReflectionTestUtils.setField(bookingArchiver, "pauseMs", 0L);
+        now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    @Test
+    void archiveEndedBefore_shouldMoveOnlyFinishedBookingsThatEndedBeforeCutoff() {
+        Booking completed = save(BookingStatus.COMPLETED, now.minusDays(200));
+        Booking cancelled = save(BookingStatus.CANCELLED, now.minusDays(300));
+        Booking cancelledToo = save(BookingStatus.CANCELLED, now.minusDays(250));
+        Booking cancelledLast = save(BookingStatus.CANCELLED, now.minusDays(190));
+        Booking recent = save(BookingStatus.COMPLETED, now.minusDays(10));
+        Booking stuck = save(BookingStatus.PENDING, now.minusDays(200));
+
+        int archived = bookingArchiver.archiveEndedBefore(now.minusDays(180));
+
+        assertThat(archived).isEqualTo(4);
+        assertThat(bookingRepository.findAllById(List.of(completed.getBookingId(), cancelled.getBookingId(),
+                cancelledToo.getBookingId(), cancelledLast.getBookingId()))).isEmpty();
+        assertThat(bookingRepository.findById(recent.getBookingId())).isPresent();
+        assertThat(bookingRepository.findById(stuck.getBookingId())).isPresent();
+        assertThat(archivedBookingRepository.findById(cancelled.getBookingId()))
+                .hasValueSatisfying(a -> {
+                    assertThat(a.getBookingStatus()).isEqualTo(BookingStatus.CANCELLED);
+                    assertThat(a.getCarId()).isEqualTo(cancelled.getCarId());
+                    assertThat(a.getTotalPrice()).isEqualByComparingTo(cancelled.getTotalPrice());
+                    assertThat(a.getArchivedAt()).isNotNull();
+                });
+        assertThat(meterRegistry.get("booking.archive.rows").counter().count()).isEqualTo(4.0);
+    }
+
+    @Test
+    void toBooking_shouldRestoreArchivedBooking() {
+        Booking completed = save(BookingStatus.COMPLETED, now.minusDays(200));
+
+        bookingArchiver.archiveEndedBefore(now.minusDays(180));
+
+        Booking restored = archivedBookingRepository.findById(completed.getBookingId()).orElseThrow().toBooking();
+        assertThat(restored.getBookingId()).isEqualTo(completed.getBookingId());
+        assertThat(restored.getUserEmail()).isEqualTo(completed.getUserEmail());
+        assertThat(restored.getRentalEndDate()).isEqualTo(completed.getRentalEndDate());
+        assertThat(restored.getBookingStatus()).isEqualTo(BookingStatus.COMPLETED);
+    }
+
+    @Test
+    void pruneProcessedCommandsBefore_shouldDeleteOnlyResultsOlderThanCutoff() {
+        record(now.minusDays(20));
+        record(now.minusDays(16));
+        record(now.minusDays(15));
+        record(null);
+        ProcessedCommand recent = record(now.minusDays(1));
+
+        int pruned = bookingArchiver.pruneProcessedCommandsBefore(now.minusDays(14));
+
+        assertThat(pruned).isEqualTo(4);
+        assertThat(jdbcTemplate.queryForList("select saga_transaction_id from processed_commands", UUID.class))
+                .containsExactly(recent.getSagaTransactionId());
+        assertThat(meterRegistry.get("booking.dedup.pruned").counter().count()).isEqualTo(4.0);
+    }
+
+    private ProcessedCommand record(LocalDateTime processedAt) {
+        ProcessedCommand processed = processedCommandRepository.saveAndFlush(new ProcessedCommand(
+                UUID.randomUUID(), "BookingCreationCommand", CommandOutcome.SUCCEEDED, UUID.randomUUID(), null));
+        jdbcTemplate.update("update processed_commands set processed_at = ? where saga_transaction_id = ?",
+                processedAt, processed.getSagaTransactionId());
+        return processed;
+    }
+
+    private Booking save(BookingStatus status, LocalDateTime end) {
+        Booking booking = new Booking();
+        booking.setCarId(UUID.randomUUID());
+        booking.setUserId(UUID.randomUUID());
+        booking.setUserEmail("archived@example.com");
+        booking.setRentalStartDate(end.minusDays(3));
+        booking.setRentalEndDate(end);
+        booking.setBookingStatus(status);
+        booking.setTotalPrice(new BigDecimal("300.00"));
+        return bookingRepository.saveAndFlush(booking);
+    }
+}
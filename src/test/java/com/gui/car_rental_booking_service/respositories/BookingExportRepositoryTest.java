@@ -0,0 +1,188 @@
+package com.gui.car_rental_booking_service.respositories;
+
+import com.gui.car_rental_booking_service.entities.Booking;
+import com.gui.car_rental_booking_service.enums.BookingStatus;
+import com.gui.car_rental_booking_service.service.BookingExporter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+@DataJpaTest(properties = "spring.cloud.config.enabled=false")
+class BookingExportRepositoryTest {
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    private Path dir;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void export_shouldWriteMatchingBookingsAsGzippedNdjson() throws IOException {
+        Booking confirmed = save(BookingStatus.CONFIRMED, "a\"quoted\"@example.com");
+        save(BookingStatus.CANCELLED, "cancelled@example.com");
+        Path target = dir.resolve("bookings.ndjson.gz");
+
+        BookingExporter.Result result = exporter(jdbcTemplate, 100).export(BookingExporter.Format.NDJSON,
+                new BookingExporter.Filter(LocalDateTime.now().minusDays(1), null, Set.of(BookingStatus.CONFIRMED)),
+                target);
+
+        List<String> lines = gunzip(target).lines().toList();
+        assertThat(result.rows()).isEqualTo(1);
+        assertThat(result.resumed()).isFalse();
+        assertThat(lines).hasSize(1);
+        assertThat(lines.get(0))
+                .startsWith("{\"bookingId\":\"" + confirmed.getBookingId() + "\"")
+                .contains("\"userEmail\":\"a\\\"quoted\\\"@example.com\"")
+                .contains("\"bookingStatus\":\"CONFIRMED\"")
+                .contains("\"totalPrice\":300.00")
+                .endsWith("\"version\":0}");
+        assertThat(meterRegistry.get("booking.export.rows").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void export_shouldResumeFromCheckpoint_afterFailingMidway() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            save(BookingStatus.PENDING, "user" + i + "@example.com, fleet");
+        }
+        Path expected = dir.resolve("expected.csv.gz");
+        exporter(jdbcTemplate, 2).export(BookingExporter.Format.CSV, BookingExporter.Filter.all(), expected);
+        Path target = dir.resolve("bookings.csv.gz");
+
+        assertThatThrownBy(() -> exporter(failingAfter(3), 2)
+                .export(BookingExporter.Format.CSV, BookingExporter.Filter.all(), target))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(dir.resolve("bookings.csv.gz.checkpoint")).exists();
+        BookingExporter.Result result = exporter(jdbcTemplate, 2)
+                .export(BookingExporter.Format.CSV, BookingExporter.Filter.all(), target);
+
+        assertThat(result.resumed()).isTrue();
+        assertThat(result.rows()).isEqualTo(5);
+        assertThat(dir.resolve("bookings.csv.gz.checkpoint")).doesNotExist();
+        String csv = gunzip(target);
+        assertThat(csv).isEqualTo(gunzip(expected));
+        assertThat(csv.lines()).hasSize(6).first().asString().startsWith("booking_id,car_id");
+        assertThat(csv).contains("\"user0@example.com, fleet\"");
+    }
+
+    @Test
+    void export_shouldResumeFromCheckpoint_amongBookingsWithoutCreationTime() throws IOException {
+        for (int i = 0; i < 4; i++) {
+            Booking booking = save(BookingStatus.CANCELLED, "user" + i + "@example.com");
+            if (i % 2 == 0) {
+                jdbcTemplate.update("update bookings set created_at = null where booking_id = ?",
+                        booking.getBookingId());
+            }
+        }
+        Path expected = dir.resolve("expected.ndjson.gz");
+        exporter(jdbcTemplate, 1).export(BookingExporter.Format.NDJSON, BookingExporter.Filter.all(), expected);
+        Path target = dir.resolve("bookings.ndjson.gz");
+
+        assertThatThrownBy(() -> exporter(failingAfter(3), 1)
+                .export(BookingExporter.Format.NDJSON, BookingExporter.Filter.all(), target))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        BookingExporter.Result result = exporter(jdbcTemplate, 1)
+                .export(BookingExporter.Format.NDJSON, BookingExporter.Filter.all(), target);
+
+        assertThat(result.resumed()).isTrue();
+        assertThat(result.rows()).isEqualTo(4);
+        String ndjson = gunzip(target);
+        assertThat(ndjson).isEqualTo(gunzip(expected));
+        assertThat(ndjson.lines().limit(2)).allMatch(line -> line.contains("\"createdAt\":null"));
+    }
+
+    @Test
+    void export_shouldRefuseCheckpointOfAnotherExport() throws IOException {
+        save(BookingStatus.PENDING, "user@example.com");
+        save(BookingStatus.PENDING, "user@example.com");
+        save(BookingStatus.PENDING, "user@example.com");
+        Path target = dir.resolve("bookings.csv.gz");
+        assertThatThrownBy(() -> exporter(failingAfter(2), 1)
+                .export(BookingExporter.Format.CSV, BookingExporter.Filter.all(), target))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+
+        assertThatThrownBy(() -> exporter(jdbcTemplate, 1)
+                .export(BookingExporter.Format.NDJSON, BookingExporter.Filter.all(), target))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private BookingExporter exporter(JdbcTemplate template, long checkpointRows) {
+        BookingExporter exporter = new BookingExporter(template, meterRegistry);
+        ReflectionTestUtils.setField(exporter, "fetchSize", 2);
+        ReflectionTestUtils.setField(exporter, "checkpointRows", checkpointRows);
+        ReflectionTestUtils.setField(exporter, "bufferBytes", 512);
+        return exporter;
+    }
+
+    /**
+     * A template whose connection drops while the given row comes off the cursor.
+     */
+    private JdbcTemplate failingAfter(int rows) {
+        JdbcTemplate failing = spy(jdbcTemplate);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            int[] seen = {0};
+            jdbcTemplate.query(invocation.<PreparedStatementCreator>getArgument(0), rs -> {
+                if (++seen[0] == rows) {
+                    throw new DataAccessResourceFailureException("Connection lost");
+                }
+                handler.processRow(rs);
+            });
+            return null;
+        }).when(failing).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        return failing;
+    }
+
+    private Booking save(BookingStatus status, String email) {
+        Booking booking = new Booking();
+        booking.setCarId(UUID.randomUUID());
+        booking.setUserId(UUID.randomUUID());
+        booking.setUserEmail(email);
+        booking.setRentalStartDate(LocalDateTime.now().plusDays(2));
+        booking.setRentalEndDate(LocalDateTime.now().plusDays(5));
+        booking.setBookingStatus(status);
+        booking.setTotalPrice(new BigDecimal("300.00"));
+        return bookingRepository.saveAndFlush(booking);
+    }
+
+    private static String gunzip(Path file) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
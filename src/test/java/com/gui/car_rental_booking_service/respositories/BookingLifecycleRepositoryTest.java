@@ -0,0 +1,158 @@
+package com.gui.car_rental_booking_service.respositories;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.gui.car_rental_booking_service.entities.Booking;
+import com.gui.car_rental_booking_service.entities.OutboxEvent;
+import com.gui.car_rental_booking_service.enums.BookingStatus;
+import com.gui.car_rental_booking_service.service.BookingCache;
+import com.gui.car_rental_booking_service.service.BookingEventOutbox;
+import com.gui.car_rental_booking_service.service.BookingLifecycleJob;
+import com.gui.car_rental_booking_service.service.CarAvailabilityIndex;
+import com.gui.car_rental_booking_service.service.DailyOccupancyIndex;
+import com.gui.car_rental_booking_service.service.DatabaseBulkhead;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.cloud.config.enabled=false")
+class BookingLifecycleRepositoryTest {
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CarAvailabilityIndex carAvailabilityIndex;
+    private BookingLifecycleJob bookingLifecycleJob;
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        carAvailabilityIndex = new CarAvailabilityIndex(bookingRepository, transactionTemplate, 4);
+        bookingLifecycleJob = new BookingLifecycleJob(bookingRepository,
+                new BookingEventOutbox(outboxEventRepository, new ObjectMapper().registerModule(new JavaTimeModule())),
+                transactionTemplate, new DatabaseBulkhead(meterRegistry, 1, 1000), carAvailabilityIndex,
+                new DailyOccupancyIndex(bookingRepository, transactionTemplate, 128, 8),
+                new BookingCache(meterRegistry, 100, Duration.ofMinutes(5)), meterRegistry);
+        ReflectionTestUtils.setField(bookingLifecycleJob, "chunkSize", 2);
+        now = LocalDateTime.now();
+    }
+
+    @Test
+    void completeEndedBefore_shouldCompleteEndedConfirmedBookingsAcrossChunks() {
+        List<Booking> ended = List.of(
+                save(BookingStatus.CONFIRMED, now.minusDays(9), now.minusDays(6)),
+                save(BookingStatus.CONFIRMED, now.minusDays(8), now.minusDays(5)),
+                save(BookingStatus.CONFIRMED, now.minusDays(7), now.minusDays(4)));
+        Booking ongoing = save(BookingStatus.CONFIRMED, now.minusDays(10), now.plusDays(1));
+        Booking cancelled = save(BookingStatus.CANCELLED, now.minusDays(9), now.minusDays(6));
+
+        int completed = bookingLifecycleJob.completeEndedBefore(now);
+
+        assertThat(completed).isEqualTo(3);
+        for (Booking booking : ended) {
+            assertThat(status(booking)).isEqualTo(BookingStatus.COMPLETED);
+        }
+        assertThat(status(ongoing)).isEqualTo(BookingStatus.CONFIRMED);
+        assertThat(status(cancelled)).isEqualTo(BookingStatus.CANCELLED);
+        assertThat(outboxEventRepository.findAll())
+                .hasSize(3)
+                .allSatisfy(event -> {
+                    assertThat(event.getTopic()).isEqualTo(BookingEventOutbox.BOOKING_LIFECYCLE_TOPIC);
+                    assertThat(event.getPayload()).contains("\"type\":\"COMPLETED\"");
+                });
+        assertThat(meterRegistry.get("booking.lifecycle.bookings").tag("transition", "complete").counter().count())
+                .isEqualTo(3.0);
+        assertThat(meterRegistry.get("booking.lifecycle.run").tag("transition", "complete").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void expirePendingCreatedBefore_shouldExpireStalePendingBookingsAndFreeTheirCar() {
+        Booking pending = save(BookingStatus.PENDING, now.plusDays(3), now.plusDays(5));
+        Booking confirmed = save(BookingStatus.CONFIRMED, now.plusDays(3), now.plusDays(5));
+        carAvailabilityIndex.load();
+        assertThat(carAvailabilityIndex.isAvailable(pending.getCarId(), pending.getRentalStartDate(),
+                pending.getRentalEndDate())).isFalse();
+
+        int notYetStale = bookingLifecycleJob.expirePendingCreatedBefore(now.minusHours(1));
+        int expired = bookingLifecycleJob.expirePendingCreatedBefore(now.plusMinutes(1));
+
+        assertThat(notYetStale).isZero();
+        assertThat(expired).isEqualTo(1);
+        assertThat(status(pending)).isEqualTo(BookingStatus.EXPIRED);
+        assertThat(status(confirmed)).isEqualTo(BookingStatus.CONFIRMED);
+        assertThat(carAvailabilityIndex.isAvailable(pending.getCarId(), pending.getRentalStartDate(),
+                pending.getRentalEndDate())).isTrue();
+        assertThat(outboxEventRepository.findAll())
+                .singleElement()
+                .extracting(OutboxEvent::getPayload)
+                .asString()
+                .contains("\"type\":\"EXPIRED\"", pending.getBookingId().toString());
+    }
+
+    @Test
+    void expirePendingCreatedBefore_shouldExpirePendingBookingsWithoutCreationTime() {
+        List<Booking> legacy = List.of(
+                save(BookingStatus.PENDING, now.plusDays(3), now.plusDays(5)),
+                save(BookingStatus.PENDING, now.plusDays(4), now.plusDays(6)),
+                save(BookingStatus.PENDING, now.plusDays(5), now.plusDays(7)));
+        Booking legacyConfirmed = save(BookingStatus.CONFIRMED, now.plusDays(3), now.plusDays(5));
+        Booking recent = save(BookingStatus.PENDING, now.plusDays(3), now.plusDays(5));
+        for (Booking booking : List.of(legacy.get(0), legacy.get(1), legacy.get(2), legacyConfirmed)) {
+            jdbcTemplate.update("update bookings set created_at = null where booking_id = ?", booking.getBookingId());
+        }
+
+        int expired = bookingLifecycleJob.expirePendingCreatedBefore(now.minusHours(1));
+
+        assertThat(expired).isEqualTo(3);
+        for (Booking booking : legacy) {
+            assertThat(status(booking)).isEqualTo(BookingStatus.EXPIRED);
+        }
+        assertThat(status(legacyConfirmed)).isEqualTo(BookingStatus.CONFIRMED);
+        assertThat(status(recent)).isEqualTo(BookingStatus.PENDING);
+        assertThat(meterRegistry.get("booking.lifecycle.run").tag("transition", "expire").timer().count())
+                .isEqualTo(1);
+    }
+
+    private BookingStatus status(Booking booking) {
+        return bookingRepository.findById(booking.getBookingId()).orElseThrow().getBookingStatus();
+    }
+
+    private Booking save(BookingStatus status, LocalDateTime start, LocalDateTime end) {
+        Booking booking = new Booking();
+        booking.setCarId(UUID.randomUUID());
+        booking.setUserId(UUID.randomUUID());
+        booking.setUserEmail("lifecycle@example.com");
+        booking.setRentalStartDate(start);
+        booking.setRentalEndDate(end);
+        booking.setBookingStatus(status);
+        booking.setTotalPrice(new BigDecimal("300.00"));
+        return bookingRepository.saveAndFlush(booking);
+    }
+}
@@ -0,0 +1,127 @@
+package com.gui.car_rental_booking_service.respositories;
+
+import com.gui.car_rental_booking_service.entities.Booking;
+import com.gui.car_rental_booking_service.enums.BookingStatus;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the SQL Hibernate generates for the secondary-index queries through {@code EXPLAIN} on H2 and checks
+ * the plan picks the composite index declared on {@link Booking}.
+ */
+@DataJpaTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.gui.car_rental_booking_service.respositories.BookingRepositoryQueryPlanTest$CapturingStatementInspector"
+})
+class BookingRepositoryQueryPlanTest {
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        LocalDateTime start = LocalDateTime.now().plusDays(2);
+        for (int i = 0; i < 200; i++) {
+            Booking booking = new Booking();
+            booking.setCarId(UUID.randomUUID());
+            booking.setUserId(UUID.randomUUID());
+            booking.setRentalStartDate(start.plusDays(i % 30));
+            booking.setRentalEndDate(start.plusDays(i % 30 + 3));
+            booking.setBookingStatus(BookingStatus.values()[i % BookingStatus.values().length]);
+            booking.setTotalPrice(BigDecimal.TEN);
+            bookingRepository.save(booking);
+        }
+        bookingRepository.flush();
+        jdbcTemplate.execute("ANALYZE");
+        CapturingStatementInspector.statements.clear();
+    }
+
+    @Test
+    void findOverlapping_shouldUseCarRentalWindowIndex() {
+        bookingRepository.findOverlapping(UUID.randomUUID(), LocalDateTime.now(), LocalDateTime.now().plusDays(3));
+
+        assertThat(explainLastSelect()).containsIgnoringCase("IDX_BOOKINGS_CAR_RENTAL_WINDOW");
+    }
+
+    @Test
+    void findOverlappingForUpdate_shouldUseCarRentalWindowIndex() {
+        bookingRepository.findOverlappingForUpdate(UUID.randomUUID(), LocalDateTime.now(),
+                LocalDateTime.now().plusDays(3), BookingStatus.ACTIVE);
+
+        assertThat(explainLastSelect()).containsIgnoringCase("IDX_BOOKINGS_CAR_RENTAL_WINDOW");
+    }
+
+    @Test
+    void findByUserId_shouldUseUserCreatedIndex() {
+        bookingRepository.findByUserIdOrderByCreatedAtDesc(UUID.randomUUID(), Limit.of(20));
+
+        assertThat(explainLastSelect()).containsIgnoringCase("IDX_BOOKINGS_USER_CREATED");
+    }
+
+    @Test
+    void findByStatusStartingBefore_shouldUseStatusRentalStartIndex() {
+        bookingRepository.findByBookingStatusAndRentalStartDateBeforeOrderByRentalStartDateAsc(
+                BookingStatus.CONFIRMED, LocalDateTime.now().plusDays(5), Limit.of(100));
+
+        assertThat(explainLastSelect()).containsIgnoringCase("IDX_BOOKINGS_STATUS_RENTAL_START");
+    }
+
+    @Test
+    void findEndedBeforeForUpdate_shouldUseStatusRentalStartIndex() {
+        bookingRepository.findEndedBeforeForUpdate(BookingStatus.CONFIRMED, LocalDateTime.now().plusDays(5),
+                LocalDateTime.now().minusDays(1), UUID.randomUUID(), Limit.of(100));
+
+        assertThat(explainLastSelect()).containsIgnoringCase("IDX_BOOKINGS_STATUS_RENTAL_START");
+    }
+
+    @Test
+    void findCreatedBeforeForUpdate_shouldUseStatusCreatedIndex() {
+        bookingRepository.findCreatedBeforeForUpdate(BookingStatus.PENDING, LocalDateTime.now(),
+                LocalDateTime.now().minusDays(1), UUID.randomUUID(), Limit.of(100));
+
+        assertThat(explainLastSelect()).containsIgnoringCase("IDX_BOOKINGS_STATUS_CREATED");
+    }
+
+    @Test
+    void findWithoutCreationTimeForUpdate_shouldUseACreatedIndex() {
+        bookingRepository.findWithoutCreationTimeForUpdate(BookingStatus.PENDING, UUID.randomUUID(), Limit.of(100));
+
+        assertThat(explainLastSelect()).containsPattern("IDX_BOOKINGS_(STATUS_)?CREATED");
+    }
+
+    private String explainLastSelect() {
+        List<String> selects = CapturingStatementInspector.statements.stream()
+                .filter(sql -> sql.startsWith("select"))
+                .toList();
+        assertThat(selects).isNotEmpty();
+        String sql = selects.get(selects.size() - 1).replaceAll("\\s+for update$", "");
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+    }
+
+    public static class CapturingStatementInspector implements StatementInspector {
+
+        static final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.gui.car_rental_booking_service.respositories;
+
+import com.gui.car_rental_booking_service.entities.Booking;
+import com.gui.car_rental_booking_service.enums.BookingStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.cloud.config.enabled=false")
+class BookingRepositoryStatusUpdateTest {
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void updateStatus_shouldOnlyMoveBookingsInTheExpectedStatus() {
+        Booking pending = save(BookingStatus.PENDING);
+
+        int first = bookingRepository.updateStatus(pending.getBookingId(), EnumSet.of(BookingStatus.PENDING),
+                BookingStatus.CONFIRMED, LocalDateTime.now());
+        int second = bookingRepository.updateStatus(pending.getBookingId(), EnumSet.of(BookingStatus.PENDING),
+                BookingStatus.CONFIRMED, LocalDateTime.now());
+
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isZero();
+        assertThat(bookingRepository.findById(pending.getBookingId()))
+                .hasValueSatisfying(b -> assertThat(b.getBookingStatus()).isEqualTo(BookingStatus.CONFIRMED));
+    }
+
+    @Test
+    void updateStatusIn_shouldCancelActiveBookingsInOneStatement() {
+        Booking pending = save(BookingStatus.PENDING);
+        Booking confirmed = save(BookingStatus.CONFIRMED);
+        Booking completed = save(BookingStatus.COMPLETED);
+
+        int cancelled = bookingRepository.updateStatusIn(
+                List.of(pending.getBookingId(), confirmed.getBookingId(), completed.getBookingId(), UUID.randomUUID()),
+                BookingStatus.ACTIVE, BookingStatus.CANCELLED, LocalDateTime.now());
+
+        assertThat(cancelled).isEqualTo(2);
+        assertThat(bookingRepository.findById(completed.getBookingId()))
+                .hasValueSatisfying(b -> assertThat(b.getBookingStatus()).isEqualTo(BookingStatus.COMPLETED));
+    }
+
+    @Test
+    void updateDetails_shouldOverwriteExistingBooking_andReturnZeroForMissingOne() {
+        Booking booking = save(BookingStatus.PENDING);
+        booking.setUserEmail("changed@example.com");
+
+        assertThat(bookingRepository.updateDetails(booking, EnumSet.of(BookingStatus.PENDING))).isEqualTo(1);
+        assertThat(bookingRepository.findById(booking.getBookingId()))
+                .hasValueSatisfying(b -> assertThat(b.getUserEmail()).isEqualTo("changed@example.com"));
+
+        booking.setBookingId(UUID.randomUUID());
+        assertThat(bookingRepository.updateDetails(booking, EnumSet.of(BookingStatus.PENDING))).isZero();
+    }
+
+    @Test
+    void updateDetails_shouldRejectStaleVersion_afterAnyOtherWrite() {
+        Booking booking = save(BookingStatus.PENDING);
+        Long readVersion = booking.getVersion();
+
+        bookingRepository.updateStatus(booking.getBookingId(), EnumSet.of(BookingStatus.PENDING),
+                BookingStatus.CANCELLED, LocalDateTime.now());
+        booking.setBookingStatus(BookingStatus.CONFIRMED);
+
+        assertThat(bookingRepository.updateDetails(booking, BookingStatus.predecessorsOf(BookingStatus.CONFIRMED)))
+                .isZero();
+        assertThat(bookingRepository.findById(booking.getBookingId())).hasValueSatisfying(b -> {
+            assertThat(b.getBookingStatus()).isEqualTo(BookingStatus.CANCELLED);
+            assertThat(b.getVersion()).isEqualTo(readVersion + 1);
+        });
+    }
+
+    @Test
+    void updateDetails_shouldRejectTransitionNotAllowedFromStoredStatus() {
+        Booking booking = save(BookingStatus.CANCELLED);
+        entityManager.detach(booking);
+        booking.setBookingStatus(BookingStatus.CONFIRMED);
+
+        assertThat(bookingRepository.updateDetails(booking, BookingStatus.predecessorsOf(BookingStatus.CONFIRMED)))
+                .isZero();
+        assertThat(bookingRepository.findById(booking.getBookingId()))
+                .hasValueSatisfying(b -> assertThat(b.getBookingStatus()).isEqualTo(BookingStatus.CANCELLED));
+    }
+
+    private Booking save(BookingStatus status) {
+        Booking booking = new Booking();
+        booking.setCarId(UUID.randomUUID());
+        booking.setRentalStartDate(LocalDateTime.now().plusDays(2));
+        booking.setRentalEndDate(LocalDateTime.now().plusDays(4));
+        booking.setBookingStatus(status);
+        booking.setTotalPrice(BigDecimal.TEN);
+        return bookingRepository.saveAndFlush(booking);
+    }
+}
@@ -0,0 +1,51 @@
+package com.gui.car_rental_booking_service.respositories;
+
+import com.gui.car_rental_booking_service.entities.OutboxEvent;
+import com.gui.car_rental_booking_service.entities.OutboxRelayLease;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.cloud.config.enabled=false")
+class OutboxRelayLeaseRepositoryTest {
+
+    @Autowired
+    private OutboxRelayLeaseRepository leaseRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Test
+    void acquire_shouldLetOneOwnerHoldTheLease_untilItLapses() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        leaseRepository.saveAndFlush(new OutboxRelayLease("relay", now));
+
+        assertThat(leaseRepository.acquire("relay", "a", now, now.plusSeconds(15))).isEqualTo(1);
+        assertThat(leaseRepository.acquire("relay", "b", now.plusSeconds(5), now.plusSeconds(20))).isZero();
+        assertThat(leaseRepository.acquire("relay", "a", now.plusSeconds(10), now.plusSeconds(25))).isEqualTo(1);
+        assertThat(leaseRepository.acquire("relay", "b", now.plusSeconds(30), now.plusSeconds(45))).isEqualTo(1);
+        assertThat(leaseRepository.acquire("relay", "a", now.plusSeconds(31), now.plusSeconds(46))).isZero();
+    }
+
+    @Test
+    void findByIdGreaterThanAndFailedAtIsNull_shouldSkipRowsSetAside() {
+        List<OutboxEvent> events = outboxEventRepository.saveAllAndFlush(List.of(event(), event(), event()));
+
+        outboxEventRepository.markFailed(events.get(1).getId(), LocalDateTime.now(), "unreadable");
+
+        assertThat(outboxEventRepository.findByIdGreaterThanAndFailedAtIsNullOrderByIdAsc(0L, Limit.of(10)))
+                .extracting(OutboxEvent::getId)
+                .containsExactly(events.get(0).getId(), events.get(2).getId());
+    }
+
+    private static OutboxEvent event() {
+        return new OutboxEvent("booking-service-events", null, "java.lang.String", "\"x\"");
+    }
+}
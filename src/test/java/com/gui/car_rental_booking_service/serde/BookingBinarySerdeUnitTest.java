@@ -0,0 +1,167 @@
+package com.gui.car_rental_booking_service.serde;
+
+import com.gui.car_rental_common.commands.BookingCreationCommand;
+import com.gui.car_rental_common.commands.CancelBookingCommand;
+import com.gui.car_rental_common.dtos.BookingDto;
+import com.gui.car_rental_common.events.booking.BookingCancellationFailedEvent;
+import com.gui.car_rental_common.events.booking.BookingCancelledEvent;
+import com.gui.car_rental_common.events.booking.BookingCreatedEvent;
+import com.gui.car_rental_common.events.booking.BookingCreationFailedEvent;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookingBinarySerdeUnitTest {
+
+    private static final String BINARY_TOPIC = "rental-saga-booking-commands";
+    private static final String JSON_TOPIC = "booking-service-events";
+
+    private BookingBinarySerializer serializer;
+    private BookingBinaryDeserializer deserializer;
+    private BookingDto bookingDto;
+
+    @BeforeEach
+    void setUp() {
+        serializer = new BookingBinarySerializer();
+        serializer.configure(Map.of(BookingBinarySerializer.BINARY_TOPICS, BINARY_TOPIC), false);
+        deserializer = new BookingBinaryDeserializer();
+        deserializer.configure(Map.of(JsonDeserializer.TRUSTED_PACKAGES, "com.gui.car_rental_common.*"), false);
+
+        bookingDto = new BookingDto();
+        bookingDto.setBookingId(UUID.randomUUID());
+        bookingDto.setCarId(UUID.randomUUID());
+        bookingDto.setUserId(UUID.randomUUID());
+        bookingDto.setEmail("jörg@example.com");
+        bookingDto.setPricePerDay(new BigDecimal("89.90"));
+        bookingDto.setAmount(new BigDecimal("-0.005"));
+        bookingDto.setRentalStartDate(LocalDateTime.of(2026, 11, 2, 9, 30, 15, 123_456_000));
+        bookingDto.setRentalEndDate(LocalDateTime.of(1969, 12, 31, 23, 59, 59));
+    }
+
+    @AfterEach
+    void tearDown() {
+        serializer.close();
+        deserializer.close();
+    }
+
+    @Test
+    void binaryTopic_shouldRoundTripCommandWithAllFields() {
+        // Arrange
+        BookingCreationCommand command = new BookingCreationCommand(UUID.randomUUID(), bookingDto);
+
+        // Act
+        byte[] bytes = serializer.serialize(BINARY_TOPIC, new RecordHeaders(), command);
+        Object decoded = deserializer.deserialize(BINARY_TOPIC, new RecordHeaders(), bytes);
+
+        // Assert
+        assertEquals(BookingMessageCodec.MAGIC, bytes[0]);
+        BookingCreationCommand result = assertInstanceOf(BookingCreationCommand.class, decoded);
+        assertEquals(command.getSagaTransactionId(), result.getSagaTransactionId());
+        BookingDto dto = result.getBookingDto();
+        assertEquals(bookingDto.getBookingId(), dto.getBookingId());
+        assertEquals(bookingDto.getCarId(), dto.getCarId());
+        assertEquals(bookingDto.getUserId(), dto.getUserId());
+        assertEquals(bookingDto.getEmail(), dto.getEmail());
+        assertEquals(bookingDto.getPricePerDay(), dto.getPricePerDay());
+        assertEquals(bookingDto.getAmount(), dto.getAmount());
+        assertEquals(bookingDto.getRentalStartDate(), dto.getRentalStartDate());
+        assertEquals(bookingDto.getRentalEndDate(), dto.getRentalEndDate());
+    }
+
+    @Test
+    void binaryTopic_shouldKeepFailureMessagesAndMissingFields() {
+        // Arrange
+        BookingDto sparse = new BookingDto();
+        sparse.setBookingId(UUID.randomUUID());
+        BookingCreationFailedEvent creationFailed = new BookingCreationFailedEvent(UUID.randomUUID(), sparse);
+        creationFailed.setMessage("Booking creation failed: car unavailable");
+        BookingCancellationFailedEvent cancellationFailed = new BookingCancellationFailedEvent(null, null, "No value present");
+
+        // Act
+        BookingCreationFailedEvent first = (BookingCreationFailedEvent) BookingMessageCodec.decode(
+                serializer.serialize(BINARY_TOPIC, creationFailed));
+        BookingCancellationFailedEvent second = (BookingCancellationFailedEvent) BookingMessageCodec.decode(
+                serializer.serialize(BINARY_TOPIC, cancellationFailed));
+
+        // Assert
+        assertEquals(creationFailed.getMessage(), first.getMessage());
+        assertEquals(sparse.getBookingId(), first.getBookingDto().getBookingId());
+        assertNull(first.getBookingDto().getCarId());
+        assertNull(first.getBookingDto().getRentalStartDate());
+        assertNull(second.getSagaTransactionId());
+        assertNull(second.getBookingDto());
+        assertEquals("No value present", second.getMessage());
+    }
+
+    @Test
+    void binaryTopic_shouldKeepMessagesOfSuccessEvents() {
+        // Arrange
+        BookingCreatedEvent created = new BookingCreatedEvent(UUID.randomUUID(), bookingDto);
+        created.setMessage("Booking created");
+        BookingCancelledEvent cancelled = new BookingCancelledEvent(UUID.randomUUID(), bookingDto);
+        cancelled.setMessage("Booking cancelled by the customer");
+
+        // Act
+        BookingCreatedEvent first = (BookingCreatedEvent) BookingMessageCodec.decode(
+                serializer.serialize(BINARY_TOPIC, created));
+        BookingCancelledEvent second = (BookingCancelledEvent) BookingMessageCodec.decode(
+                serializer.serialize(BINARY_TOPIC, cancelled));
+
+        // Assert
+        assertEquals(created.getSagaTransactionId(), first.getSagaTransactionId());
+        assertEquals("Booking created", first.getMessage());
+        assertEquals(bookingDto.getBookingId(), first.getBookingDto().getBookingId());
+        assertEquals(cancelled.getSagaTransactionId(), second.getSagaTransactionId());
+        assertEquals("Booking cancelled by the customer", second.getMessage());
+        assertEquals(bookingDto.getCarId(), second.getBookingDto().getCarId());
+    }
+
+    @Test
+    void otherTopics_shouldStayJson_andStillBeReadable() {
+        // Arrange
+        CancelBookingCommand command = new CancelBookingCommand(UUID.randomUUID(), bookingDto);
+        RecordHeaders headers = new RecordHeaders();
+
+        // Act
+        byte[] bytes = serializer.serialize(JSON_TOPIC, headers, command);
+        Object decoded = deserializer.deserialize(JSON_TOPIC, headers, bytes);
+
+        // Assert
+        assertEquals('{', bytes[0]);
+        CancelBookingCommand result = assertInstanceOf(CancelBookingCommand.class, decoded);
+        assertEquals(command.getSagaTransactionId(), result.getSagaTransactionId());
+        assertEquals(bookingDto.getCarId(), result.getBookingDto().getCarId());
+    }
+
+    @Test
+    void decode_shouldRejectUnknownVersion() {
+        // Arrange
+        byte[] bytes = BookingMessageCodec.encode(new CancelBookingCommand(UUID.randomUUID(), bookingDto));
+        bytes[1] = 2;
+
+        // Act & Assert
+        assertThrows(SerializationException.class, () -> BookingMessageCodec.decode(bytes));
+    }
+
+    @Test
+    void serialize_shouldPassRawBytesThrough() {
+        // Arrange
+        byte[] poisonPill = {(byte) 0xB7, 0x09, 0x00, '{'};
+
+        // Act
+        byte[] bytes = serializer.serialize(BINARY_TOPIC + "-dlt", new RecordHeaders(), poisonPill);
+
+        // Assert
+        assertArrayEquals(poisonPill, bytes);
+    }
+}
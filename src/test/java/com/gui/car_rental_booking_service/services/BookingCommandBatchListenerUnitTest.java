@@ -0,0 +1,60 @@
+package com.gui.car_rental_booking_service.services;
+
+import com.gui.car_rental_booking_service.service.BookingCommandBatchListener;
+import com.gui.car_rental_booking_service.service.BookingService;
+import com.gui.car_rental_common.commands.BookingCreationCommand;
+import com.gui.car_rental_common.dtos.BookingDto;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookingCommandBatchListenerUnitTest {
+
+    @Mock
+    private BookingService bookingService;
+
+    private BookingCommandBatchListener listener;
+
+    @BeforeEach
+    void setUp() {
+        listener = new BookingCommandBatchListener(bookingService);
+    }
+
+    @Test
+    void consumeCommands_shouldBlameTheCreationThatFailed_whenBatchFails() {
+        // Arrange
+        BookingCreationCommand healthy = new BookingCreationCommand(UUID.randomUUID(), new BookingDto());
+        BookingCreationCommand failing = new BookingCreationCommand(UUID.randomUUID(), new BookingDto());
+        ConsumerRecord<String, Object> healthyRecord = new ConsumerRecord<>("rental-saga-booking-commands", 0, 10L,
+                "car-1", healthy);
+        ConsumerRecord<String, Object> failingRecord = new ConsumerRecord<>("rental-saga-booking-commands", 0, 11L,
+                "car-2", failing);
+        when(bookingService.consumeBookingCreationCommands(anyList()))
+                .thenThrow(new CannotAcquireLockException("Lock wait timeout exceeded"));
+        when(bookingService.consumeBookingCreationCommand(same(healthy))).thenReturn(null);
+        when(bookingService.consumeBookingCreationCommand(same(failing)))
+                .thenThrow(new CannotAcquireLockException("Lock wait timeout exceeded"));
+
+        // Act
+        BatchListenerFailedException thrown = assertThrows(BatchListenerFailedException.class,
+                () -> listener.consumeCommands(List.of(healthyRecord, failingRecord)));
+
+        // Assert
+        assertSame(failingRecord, thrown.getRecord());
+        verify(bookingService).consumeBookingCreationCommand(same(healthy));
+    }
+}
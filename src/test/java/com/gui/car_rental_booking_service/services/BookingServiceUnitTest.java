@@ -1,9 +1,22 @@
 package com.gui.car_rental_booking_service.services;
 
+import com.gui.car_rental_booking_service.entities.ArchivedBooking;
 import com.gui.car_rental_booking_service.entities.Booking;
+import com.gui.car_rental_booking_service.entities.ProcessedCommand;
 import com.gui.car_rental_booking_service.enums.BookingStatus;
+import com.gui.car_rental_booking_service.enums.CommandOutcome;
+import com.gui.car_rental_booking_service.respositories.ArchivedBookingRepository;
 import com.gui.car_rental_booking_service.respositories.BookingRepository;
+import com.gui.car_rental_booking_service.service.BookingCache;
+import com.gui.car_rental_booking_service.service.BookingEventOutbox;
+import com.gui.car_rental_booking_service.service.BookingMetrics;
+import com.gui.car_rental_booking_service.service.BookingPage;
 import com.gui.car_rental_booking_service.service.BookingService;
+import com.gui.car_rental_booking_service.service.CarAvailabilityIndex;
+import com.gui.car_rental_booking_service.service.CommandDeduplicator;
+import com.gui.car_rental_booking_service.service.DailyOccupancyIndex;
+import com.gui.car_rental_booking_service.service.DatabaseBulkhead;
+import com.gui.car_rental_booking_service.service.PricingEngine;
 import com.gui.car_rental_common.commands.BookingCreationCommand;
 import com.gui.car_rental_common.commands.CancelBookingCommand;
 import com.gui.car_rental_common.dtos.BookingDto;
@@ -11,25 +24,36 @@ import com.gui.car_rental_common.events.booking.BookingCancellationFailedEvent;
 import com.gui.car_rental_common.events.booking.BookingCancelledEvent;
 import com.gui.car_rental_common.events.booking.BookingCreatedEvent;
 import com.gui.car_rental_common.events.booking.BookingCreationFailedEvent;
+import jakarta.persistence.EntityManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.persistence.EntityNotFoundException;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.awt.print.Book;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -40,9 +64,26 @@ public class BookingServiceUnitTest {
     private BookingRepository bookingRepository;
 
     @Mock
-    private KafkaTemplate<String, Object> kafkaTemplate;
+    private ArchivedBookingRepository archivedBookingRepository;
+
+    @Mock
+    private BookingEventOutbox bookingEventOutbox;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private CommandDeduplicator commandDeduplicator;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private CarAvailabilityIndex carAvailabilityIndex;
+
+    private DailyOccupancyIndex dailyOccupancyIndex;
+
+    private SimpleMeterRegistry meterRegistry;
 
-    @InjectMocks
     private BookingService bookingService;
 
     private UUID bookingId;
@@ -52,6 +93,16 @@ public class BookingServiceUnitTest {
 
     @BeforeEach
     void setUp() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        carAvailabilityIndex = new CarAvailabilityIndex(bookingRepository, transactionTemplate, 4);
+        dailyOccupancyIndex = new DailyOccupancyIndex(bookingRepository, transactionTemplate, 128, 8);
+        meterRegistry = new SimpleMeterRegistry();
+        bookingService = new BookingService(bookingRepository, archivedBookingRepository, bookingEventOutbox,
+                transactionTemplate, commandDeduplicator, carAvailabilityIndex, dailyOccupancyIndex, entityManager,
+                new BookingCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(5)),
+                new DatabaseBulkhead(new SimpleMeterRegistry(), 4, 1000), new BookingMetrics(meterRegistry),
+                new PricingEngine(BigDecimal.ONE, "", ""));
+
         booking = new Booking();
         booking.setBookingId( UUID.randomUUID());
         booking.setCarId(UUID.randomUUID());
@@ -59,6 +110,8 @@ public class BookingServiceUnitTest {
         booking.setRentalEndDate(LocalDateTime.now().plusDays(5));
         booking.setUserId(UUID.randomUUID());
         booking.setUserEmail("test@example.com");
+        booking.setBookingStatus(BookingStatus.PENDING);
+        booking.setVersion(0L);
 
         bookingDto = new BookingDto();
         bookingDto.setBookingId(booking.getBookingId());
@@ -89,6 +142,7 @@ public class BookingServiceUnitTest {
     @Test
     void getBookingByID_shouldReturnEmptyOptional_whenNotFound(){
         //Arrange
+        bookingId = UUID.randomUUID();
         when(bookingRepository.findById(bookingId)).thenReturn(Optional.empty());
 
         //act
@@ -100,6 +154,68 @@ public class BookingServiceUnitTest {
 
     }
 
+    @Test
+    void getBookingById_shouldFallBackToArchive_whenNotInLiveTable() {
+        // Arrange
+        bookingId = booking.getBookingId();
+        ArchivedBooking archived = mock(ArchivedBooking.class);
+        when(archived.toBooking()).thenReturn(booking);
+        when(bookingRepository.findById(bookingId)).thenReturn(Optional.empty());
+        when(archivedBookingRepository.findById(bookingId)).thenReturn(Optional.of(archived));
+
+        // Act
+        Optional<Booking> result = bookingService.getBookingById(bookingId);
+
+        // Assert
+        assertSame(booking, result.orElseThrow());
+        verify(archivedBookingRepository, times(1)).findById(bookingId);
+    }
+
+    @Test
+    void getBookingById_shouldServeRepeatedReadsFromCache() {
+        // Arrange
+        bookingId = booking.getBookingId();
+        when(bookingRepository.findById(bookingId)).thenReturn(Optional.of(booking));
+
+        // Act
+        bookingService.getBookingById(bookingId);
+        Optional<Booking> result = bookingService.getBookingById(bookingId);
+
+        // Assert
+        assertSame(booking, result.orElseThrow());
+        verify(bookingRepository, times(1)).findById(bookingId);
+    }
+
+    @Test
+    void getBookingById_shouldNotCacheMissingBooking() {
+        // Arrange
+        bookingId = UUID.randomUUID();
+        when(bookingRepository.findById(bookingId)).thenReturn(Optional.empty());
+
+        // Act
+        bookingService.getBookingById(bookingId);
+        bookingService.getBookingById(bookingId);
+
+        // Assert
+        verify(bookingRepository, times(2)).findById(bookingId);
+    }
+
+    @Test
+    void updateBooking_shouldInvalidateCachedBooking() {
+        // Arrange
+        bookingId = booking.getBookingId();
+        when(bookingRepository.findById(bookingId)).thenReturn(Optional.of(booking));
+        when(bookingRepository.updateDetails(eq(booking), anyCollection())).thenReturn(1);
+        bookingService.getBookingById(bookingId);
+
+        // Act
+        bookingService.updateBooking(booking);
+        bookingService.getBookingById(bookingId);
+
+        // Assert
+        verify(bookingRepository, times(2)).findById(bookingId);
+    }
+
     @Test
     void getAllBookings_shouldReturnListOfBookings() {
         // Arrange
@@ -115,11 +231,41 @@ public class BookingServiceUnitTest {
         assertEquals(booking,result.get(0));
         verify(bookingRepository, times(1)).findAll();
     }
+    @Test
+    void getBookingsPage_shouldReturnCursorForNextPage_whenMoreBookingsExist() {
+        // Arrange
+        Booking second = new Booking();
+        second.setBookingId(UUID.randomUUID());
+        second.setCreatedAt(LocalDateTime.now());
+        booking.setCreatedAt(second.getCreatedAt().minusSeconds(1));
+        Booking third = new Booking();
+        third.setBookingId(UUID.randomUUID());
+        when(bookingRepository.findAllByOrderByCreatedAtAscBookingIdAsc(Limit.of(3)))
+                .thenReturn(List.of(booking, second, third));
+        when(bookingRepository.findPageAfter(second.getCreatedAt(), second.getBookingId(), Limit.of(3)))
+                .thenReturn(List.of(third));
+
+        // Act
+        BookingPage firstPage = bookingService.getBookingsPage(null, 2);
+        BookingPage nextPage = bookingService.getBookingsPage(firstPage.nextCursor(), 2);
+
+        // Assert
+        assertEquals(List.of(booking, second), firstPage.bookings());
+        assertNotNull(firstPage.nextCursor());
+        assertEquals(List.of(third), nextPage.bookings());
+        assertNull(nextPage.nextCursor());
+    }
+
+    @Test
+    void getBookingsPage_shouldRejectMalformedCursor() {
+        assertThrows(IllegalArgumentException.class, () -> bookingService.getBookingsPage("not-a-cursor", 10));
+        verifyNoInteractions(bookingRepository);
+    }
+
     @Test
     void updateBooking_shouldUpdateAndReturnBooking_whenExists() {
         // Arrange
-        when(bookingRepository.existsById(booking.getBookingId())).thenReturn(true);
-        when(bookingRepository.save(booking)).thenReturn(booking);
+        when(bookingRepository.updateDetails(eq(booking), anyCollection())).thenReturn(1);
 
         // Act
         Booking updatedBooking = bookingService.updateBooking(booking);
@@ -127,14 +273,17 @@ public class BookingServiceUnitTest {
         // Assert
         assertNotNull(updatedBooking);
         assertEquals(booking.getBookingId(), updatedBooking.getBookingId());
-        verify(bookingRepository, times(1)).existsById(booking.getBookingId());
-        verify(bookingRepository, times(1)).save(booking);
+        assertNotNull(updatedBooking.getUpdatedAt());
+        assertEquals(1L, updatedBooking.getVersion());
+        verify(bookingRepository, times(1)).updateDetails(eq(booking), anyCollection());
+        verify(bookingRepository, never()).existsById(any());
+        verify(bookingRepository, never()).save(any());
     }
 
     @Test
     void updateBooking_shouldThrowException_whenBookingDoesNotExist() {
         // Arrange
-        when(bookingRepository.existsById(booking.getBookingId())).thenReturn(false);
+        when(bookingRepository.updateDetails(eq(booking), anyCollection())).thenReturn(0);
 
         // Act
         EntityNotFoundException exception = assertThrows(
@@ -143,17 +292,104 @@ public class BookingServiceUnitTest {
         );
         // assert
         assertEquals("Booking not found with ID: " + booking.getBookingId(), exception.getMessage());
-        verify(bookingRepository, times(1)).existsById(booking.getBookingId());
+        verify(bookingRepository, times(1)).updateDetails(eq(booking), anyCollection());
+        verify(bookingRepository, never()).save(any());
+    }
+
+    @Test
+    void updateBooking_shouldThrowConflict_whenBookingChangedSinceRead() {
+        // Arrange
+        Booking stored = new Booking();
+        stored.setBookingId(booking.getBookingId());
+        stored.setBookingStatus(BookingStatus.CANCELLED);
+        stored.setVersion(1L);
+        when(bookingRepository.updateDetails(eq(booking), anyCollection())).thenReturn(0);
+        when(bookingRepository.findById(booking.getBookingId())).thenReturn(Optional.of(stored));
+
+        // Act & Assert
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> bookingService.updateBooking(booking));
+        assertEquals(1.0, meterRegistry.get("booking.conflicts").tag("operation", "update").counter().count());
+    }
+
+    @Test
+    void updateBooking_shouldRejectConfirmingCancelledBooking() {
+        // Arrange
+        Booking stored = new Booking();
+        stored.setBookingId(booking.getBookingId());
+        stored.setBookingStatus(BookingStatus.CANCELLED);
+        stored.setVersion(0L);
+        booking.setBookingStatus(BookingStatus.CONFIRMED);
+        when(bookingRepository.updateDetails(booking, EnumSet.of(BookingStatus.PENDING, BookingStatus.CONFIRMED)))
+                .thenReturn(0);
+        when(bookingRepository.findById(booking.getBookingId())).thenReturn(Optional.of(stored));
+
+        // Act
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> bookingService.updateBooking(booking));
+
+        // Assert
+        assertEquals("Booking " + booking.getBookingId() + " is CANCELLED and can't become CONFIRMED",
+                exception.getMessage());
+    }
+
+    @Test
+    void updateBooking_shouldRejectBookingWithoutVersion() {
+        // Arrange
+        booking.setVersion(null);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> bookingService.updateBooking(booking));
+        verify(bookingRepository, never()).updateDetails(any(), any());
+    }
+
+    @Test
+    void confirmBooking_shouldReturnTrue_whenPendingBookingWasUpdated() {
+        // Arrange
+        when(bookingRepository.updateStatus(eq(booking.getBookingId()), eq(EnumSet.of(BookingStatus.PENDING)),
+                eq(BookingStatus.CONFIRMED), any())).thenReturn(1);
+
+        // Act & Assert
+        assertTrue(bookingService.confirmBooking(booking.getBookingId()));
+        verify(bookingRepository, never()).findById(any());
         verify(bookingRepository, never()).save(any());
     }
 
+    @Test
+    void confirmBooking_shouldReturnFalse_whenBookingIsMissingOrNotPending() {
+        // Act & Assert
+        assertFalse(bookingService.confirmBooking(booking.getBookingId()));
+    }
+
+    @Test
+    void cancelBookings_shouldUpdateInChunksAndFreeCarsInIndex() {
+        // Arrange
+        CarAvailabilityIndex.Hold hold = carAvailabilityIndex.tryHold(booking.getCarId(),
+                booking.getRentalStartDate(), booking.getRentalEndDate()).orElseThrow();
+        carAvailabilityIndex.confirm(hold, booking.getBookingId());
+        List<UUID> bookingIds = new ArrayList<>();
+        bookingIds.add(booking.getBookingId());
+        for (int i = 1; i < 1500; i++) {
+            bookingIds.add(UUID.randomUUID());
+        }
+        when(bookingRepository.updateStatusIn(anyCollection(), eq(BookingStatus.ACTIVE), eq(BookingStatus.CANCELLED), any()))
+                .thenReturn(1000, 500);
+
+        // Act
+        int cancelled = bookingService.cancelBookings(bookingIds);
+
+        // Assert
+        assertEquals(1500, cancelled);
+        verify(bookingRepository, times(2)).updateStatusIn(anyCollection(), any(), any(), any());
+        assertTrue(carAvailabilityIndex.isAvailable(booking.getCarId(), booking.getRentalStartDate(),
+                booking.getRentalEndDate()));
+    }
+
 
     @Test
     void consumeBookingCreationCommand_shouldCreateBookingAndPublishEvent(){
         //arrange in the setup
 
         when(bookingRepository.save(any(Booking.class))).thenReturn(booking);
-        when(kafkaTemplate.send(eq("booking-service-events"), any(BookingCreatedEvent.class))).thenReturn(CompletableFuture.completedFuture(null));
         //act
         Booking result = bookingService.consumeBookingCreationCommand(bookingCreationCommand);
 
@@ -168,14 +404,15 @@ public class BookingServiceUnitTest {
 
         LocalDateTime start = bookingCreationCommand.getBookingDto().getRentalStartDate();
         LocalDateTime end = bookingCreationCommand.getBookingDto().getRentalEndDate();
-        long numberOfDays = Duration.between(start, end).toDays() + 1;
+        // one day per started 24 hours
+        long numberOfDays = (Duration.between(start, end).toMinutes() + 1439) / 1440;
 
         assertEquals(bookingCreationCommand.getBookingDto().getPricePerDay().multiply(BigDecimal.valueOf(numberOfDays))
-                ,bookingToSave.getTotalPrice());
+                .setScale(2), bookingToSave.getTotalPrice());
 
 
         verify(bookingRepository, times(1)).save(any(Booking.class));
-        verify(kafkaTemplate, times(1)).send(eq("booking-service-events"), any(BookingCreatedEvent.class));
+        verify(bookingEventOutbox, times(1)).enqueue(any(BookingCreatedEvent.class));
     }
 
 
@@ -185,14 +422,13 @@ public class BookingServiceUnitTest {
         bookingDto.setRentalStartDate(LocalDateTime.now().plusDays(1));
         bookingDto.setRentalEndDate(LocalDateTime.now().plusDays(5));
 
-        when(kafkaTemplate.send(eq("booking-service-events"), any(BookingCreationFailedEvent.class))).thenReturn(CompletableFuture.completedFuture(null));
         //act
         Booking result = bookingService.consumeBookingCreationCommand(bookingCreationCommand);
         //assert
         assertNull(result);
         verify(bookingRepository, never()).save(any(Booking.class));
         ArgumentCaptor<BookingCreationFailedEvent> eventCaptor = ArgumentCaptor.forClass(BookingCreationFailedEvent.class);
-        verify(kafkaTemplate, times(1)).send(eq("booking-service-events"), eventCaptor.capture());
+        verify(bookingEventOutbox, times(1)).enqueue(eventCaptor.capture());
         BookingCreationFailedEvent eventSent = eventCaptor.getValue();
 
         assertTrue(eventSent.getMessage().contains("Start date"), "Expected message to contain 'Start date'");
@@ -206,8 +442,6 @@ public class BookingServiceUnitTest {
         bookingDto.setRentalStartDate(LocalDateTime.now().plusDays(2));
         bookingDto.setRentalEndDate(bookingDto.getRentalStartDate().plusMonths(3));
 
-        when(kafkaTemplate.send(eq("booking-service-events"), any(BookingCreationFailedEvent.class)))
-                .thenReturn(CompletableFuture.completedFuture(null));
 
         // Act
         Booking result = bookingService.consumeBookingCreationCommand(bookingCreationCommand);
@@ -216,7 +450,7 @@ public class BookingServiceUnitTest {
         assertNull(result);
         verify(bookingRepository, never()).save(any(Booking.class));
         ArgumentCaptor<BookingCreationFailedEvent> eventCaptor = ArgumentCaptor.forClass(BookingCreationFailedEvent.class);
-        verify(kafkaTemplate, times(1)).send(eq("booking-service-events"), eventCaptor.capture());
+        verify(bookingEventOutbox, times(1)).enqueue(eventCaptor.capture());
 
         BookingCreationFailedEvent eventSent = eventCaptor.getValue();
         assertTrue(eventSent.getMessage().contains("End date"), "Expected message to contain 'End date'");
@@ -230,14 +464,13 @@ public class BookingServiceUnitTest {
         bookingDto.setRentalStartDate(LocalDateTime.now().plusDays(10));
         bookingDto.setRentalEndDate(LocalDateTime.now().plusDays(5));
 
-        when(kafkaTemplate.send(eq("booking-service-events"), any(BookingCreationFailedEvent.class))).thenReturn(CompletableFuture.completedFuture(null));
         //act
         Booking result = bookingService.consumeBookingCreationCommand(bookingCreationCommand);
         //assert
         assertNull(result);
         verify(bookingRepository, never()).save(any(Booking.class));
         ArgumentCaptor<BookingCreationFailedEvent> eventCaptor = ArgumentCaptor.forClass(BookingCreationFailedEvent.class);
-        verify(kafkaTemplate, times(1)).send(eq("booking-service-events"), eventCaptor.capture());
+        verify(bookingEventOutbox, times(1)).enqueue(eventCaptor.capture());
 
         BookingCreationFailedEvent eventSent = eventCaptor.getValue();
         assertTrue(eventSent.getMessage().contains("End date"), "Expected message to contain 'End date'");
@@ -247,30 +480,45 @@ public class BookingServiceUnitTest {
     @Test
     void consumeCancelBookingCommand_shouldCancelBookingAndSendEvent() {
         // Arrange
-        booking.setBookingStatus(BookingStatus.PENDING);
-
         CancelBookingCommand command = new CancelBookingCommand(UUID.randomUUID(), bookingDto);
-        when(bookingRepository.findById(bookingDto.getBookingId())).thenReturn(Optional.of(booking));
-        when(bookingRepository.save(any(Booking.class))).thenReturn(booking);
-        when(kafkaTemplate.send(eq("booking-service-events"), any(BookingCancelledEvent.class)))
-                .thenReturn(CompletableFuture.completedFuture(null));
+        when(bookingRepository.updateStatus(eq(bookingDto.getBookingId()), eq(BookingStatus.ACTIVE),
+                eq(BookingStatus.CANCELLED), any())).thenReturn(1);
 
         // Act
         bookingService.consumeCancelBookingCommand(command);
 
         // Assert
-        ArgumentCaptor<Booking> bookingCaptor = ArgumentCaptor.forClass(Booking.class);
-        verify(bookingRepository).save(bookingCaptor.capture());
-        assertEquals(BookingStatus.CANCELLED, bookingCaptor.getValue().getBookingStatus());
+        verify(bookingRepository, never()).findById(any());
+        verify(bookingRepository, never()).save(any());
 
         ArgumentCaptor<BookingCancelledEvent> eventCaptor = ArgumentCaptor.forClass(BookingCancelledEvent.class);
-        verify(kafkaTemplate).send(eq("booking-service-events"), eventCaptor.capture());
+        verify(bookingEventOutbox).enqueue(eventCaptor.capture());
 
         BookingCancelledEvent event = eventCaptor.getValue();
         assertEquals(command.getSagaTransactionId(), event.getSagaTransactionId());
         assertEquals(command.getBookingDto(), event.getBookingDto());
 
-        verify(kafkaTemplate, times(1)).send(eq("booking-service-events"), any(BookingCancelledEvent.class));
+        verify(bookingEventOutbox, times(1)).enqueue(any(BookingCancelledEvent.class));
+    }
+
+    @Test
+    void consumeCancelBookingCommand_shouldKeyEventByCar_whenCommandOnlyNamesBooking() {
+        // Arrange
+        UUID carId = bookingDto.getCarId();
+        bookingDto.setCarId(null);
+        CancelBookingCommand command = new CancelBookingCommand(UUID.randomUUID(), bookingDto);
+        when(bookingRepository.updateStatus(eq(bookingDto.getBookingId()), eq(BookingStatus.ACTIVE),
+                eq(BookingStatus.CANCELLED), any())).thenReturn(1);
+        when(bookingRepository.findCarIdByBookingId(bookingDto.getBookingId())).thenReturn(Optional.of(carId));
+
+        // Act
+        bookingService.consumeCancelBookingCommand(command);
+
+        // Assert
+        ArgumentCaptor<BookingCancelledEvent> eventCaptor = ArgumentCaptor.forClass(BookingCancelledEvent.class);
+        verify(bookingEventOutbox).enqueue(eventCaptor.capture());
+        assertEquals(carId, eventCaptor.getValue().getBookingDto().getCarId());
+        assertEquals(carId.toString(), BookingEventOutbox.messageKey(eventCaptor.getValue().getBookingDto()));
     }
 
     @Test
@@ -278,8 +526,6 @@ public class BookingServiceUnitTest {
         // Arrange
         CancelBookingCommand command = new CancelBookingCommand(UUID.randomUUID(), bookingDto);
         when(bookingRepository.findById(bookingDto.getBookingId())).thenReturn(Optional.empty());
-        when(kafkaTemplate.send(eq("booking-service-events"), any(BookingCancellationFailedEvent.class)))
-                .thenReturn(CompletableFuture.completedFuture(null));
 
         // Act
         bookingService.consumeCancelBookingCommand(command);
@@ -288,7 +534,7 @@ public class BookingServiceUnitTest {
         verify(bookingRepository, never()).save(any());
 
         ArgumentCaptor<BookingCancellationFailedEvent> eventCaptor = ArgumentCaptor.forClass(BookingCancellationFailedEvent.class);
-        verify(kafkaTemplate).send(eq("booking-service-events"), eventCaptor.capture());
+        verify(bookingEventOutbox).enqueue(eventCaptor.capture());
 
         BookingCancellationFailedEvent failedEvent = eventCaptor.getValue();
         assertEquals(command.getSagaTransactionId(), failedEvent.getSagaTransactionId());
@@ -296,4 +542,427 @@ public class BookingServiceUnitTest {
         assertTrue(failedEvent.getMessage().toLowerCase().contains("no value present"));
     }
 
+    @Test
+    void consumeCancelBookingCommand_shouldSucceed_whenBookingIsAlreadyCancelled() {
+        // Arrange
+        booking.setBookingStatus(BookingStatus.CANCELLED);
+        CancelBookingCommand command = new CancelBookingCommand(UUID.randomUUID(), bookingDto);
+        when(bookingRepository.findById(bookingDto.getBookingId())).thenReturn(Optional.of(booking));
+
+        // Act
+        bookingService.consumeCancelBookingCommand(command);
+
+        // Assert
+        verify(bookingEventOutbox, times(1)).enqueue(any(BookingCancelledEvent.class));
+        verify(bookingEventOutbox, never()).enqueue(any(BookingCancellationFailedEvent.class));
+    }
+
+    @Test
+    void consumeCancelBookingCommand_shouldSendFailureEvent_whenBookingIsCompleted() {
+        // Arrange
+        booking.setBookingStatus(BookingStatus.COMPLETED);
+        CancelBookingCommand command = new CancelBookingCommand(UUID.randomUUID(), bookingDto);
+        when(bookingRepository.findById(bookingDto.getBookingId())).thenReturn(Optional.of(booking));
+
+        // Act
+        bookingService.consumeCancelBookingCommand(command);
+
+        // Assert
+        ArgumentCaptor<BookingCancellationFailedEvent> eventCaptor = ArgumentCaptor.forClass(BookingCancellationFailedEvent.class);
+        verify(bookingEventOutbox).enqueue(eventCaptor.capture());
+        assertTrue(eventCaptor.getValue().getMessage().contains("can no longer be cancelled"));
+    }
+
+    @Test
+    void publishCommandFailed_shouldAnswerGivenUpCancelCommandWithFailureEvent() {
+        // Arrange
+        CancelBookingCommand command = new CancelBookingCommand(UUID.randomUUID(), bookingDto);
+
+        // Act
+        bookingService.publishCommandFailed(command, new CannotAcquireLockException("Lock wait timeout exceeded"));
+
+        // Assert
+        ArgumentCaptor<BookingCancellationFailedEvent> eventCaptor = ArgumentCaptor.forClass(BookingCancellationFailedEvent.class);
+        verify(bookingEventOutbox).enqueue(eventCaptor.capture());
+        assertEquals(command.getSagaTransactionId(), eventCaptor.getValue().getSagaTransactionId());
+        assertTrue(eventCaptor.getValue().getMessage().contains("Lock wait timeout exceeded"));
+        verify(bookingRepository, never()).updateStatus(any(), any(), any(), any());
+    }
+
+    @Test
+    void onDeadLetter_shouldAnswerSagaWithFailureEvent() {
+        // Arrange
+        ConsumerRecord<String, Object> record = new ConsumerRecord<>("rental-saga-booking-commands-dlt", 0, 7L,
+                bookingDto.getCarId().toString(), bookingCreationCommand);
+        record.headers().add(KafkaHeaders.DLT_EXCEPTION_MESSAGE,
+                "Lock wait timeout exceeded".getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        bookingService.onDeadLetter(record);
+
+        // Assert
+        ArgumentCaptor<BookingCreationFailedEvent> eventCaptor = ArgumentCaptor.forClass(BookingCreationFailedEvent.class);
+        verify(bookingEventOutbox).enqueue(eventCaptor.capture());
+        assertEquals(bookingCreationCommand.getSagaTransactionId(), eventCaptor.getValue().getSagaTransactionId());
+        assertTrue(eventCaptor.getValue().getMessage().contains("Lock wait timeout exceeded"));
+    }
+
+    @Test
+    void publishCommandFailed_shouldSkipCommandAlreadyAnswered() {
+        // Arrange
+        when(commandDeduplicator.findProcessed(bookingCreationCommand.getSagaTransactionId(), BookingCreationCommand.class))
+                .thenReturn(Optional.of(new ProcessedCommand(bookingCreationCommand.getSagaTransactionId(),
+                        BookingCreationCommand.class.getSimpleName(), CommandOutcome.FAILED, null, null)));
+
+        // Act
+        bookingService.publishCommandFailed(bookingCreationCommand, new CannotAcquireLockException("timeout"));
+
+        // Assert
+        verify(bookingEventOutbox, never()).enqueue(any());
+    }
+
+
+    @Test
+    void consumeBookingCreationCommands_shouldSaveValidCommandsInOneBatch_andFailInvalidOnes() {
+        // Arrange
+        BookingDto invalidDto = new BookingDto();
+        invalidDto.setCarId(UUID.randomUUID());
+        invalidDto.setRentalStartDate(LocalDateTime.now().plusDays(10));
+        invalidDto.setRentalEndDate(LocalDateTime.now().plusDays(5));
+        invalidDto.setPricePerDay(new BigDecimal("100.0"));
+        BookingCreationCommand invalidCommand = new BookingCreationCommand(UUID.randomUUID(), invalidDto);
+
+        when(bookingRepository.saveAll(anyList())).thenReturn(List.of(booking));
+
+        // Act
+        List<Booking> result = bookingService.consumeBookingCreationCommands(List.of(bookingCreationCommand, invalidCommand));
+
+        // Assert
+        assertEquals(1, result.size());
+        ArgumentCaptor<List<Booking>> batchCaptor = ArgumentCaptor.forClass(List.class);
+        verify(bookingRepository, times(1)).saveAll(batchCaptor.capture());
+        assertEquals(1, batchCaptor.getValue().size());
+        verify(bookingRepository, never()).save(any(Booking.class));
+        ArgumentCaptor<List<Object>> eventsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(bookingEventOutbox, times(2)).enqueueAll(eventsCaptor.capture());
+        assertInstanceOf(BookingCreationFailedEvent.class, eventsCaptor.getAllValues().get(0).get(0));
+        assertInstanceOf(BookingCreatedEvent.class, eventsCaptor.getAllValues().get(1).get(0));
+        verify(bookingEventOutbox, never()).enqueue(any());
+        assertEquals(booking.getBookingId(), bookingCreationCommand.getBookingDto().getBookingId());
+    }
+
+    @Test
+    void consumeBookingCreationCommands_shouldFallBackToSingleInserts_whenBatchInsertFails() {
+        // Arrange
+        BookingDto otherDto = new BookingDto();
+        otherDto.setCarId(UUID.randomUUID());
+        otherDto.setRentalStartDate(LocalDateTime.now().plusDays(3));
+        otherDto.setRentalEndDate(LocalDateTime.now().plusDays(6));
+        otherDto.setPricePerDay(new BigDecimal("80.0"));
+        BookingCreationCommand otherCommand = new BookingCreationCommand(UUID.randomUUID(), otherDto);
+
+        when(bookingRepository.saveAll(anyList())).thenThrow(new RuntimeException("constraint violation"));
+        when(bookingRepository.save(any(Booking.class)))
+                .thenReturn(booking)
+                .thenThrow(new RuntimeException("constraint violation"));
+
+        // Act
+        List<Booking> result = bookingService.consumeBookingCreationCommands(List.of(bookingCreationCommand, otherCommand));
+
+        // Assert
+        assertEquals(1, result.size());
+        verify(bookingRepository, times(2)).save(any(Booking.class));
+        verify(bookingEventOutbox, times(1)).enqueue(any(BookingCreatedEvent.class));
+        ArgumentCaptor<BookingCreationFailedEvent> failedCaptor = ArgumentCaptor.forClass(BookingCreationFailedEvent.class);
+        verify(bookingEventOutbox, times(1)).enqueue(failedCaptor.capture());
+        assertEquals(otherCommand.getSagaTransactionId(), failedCaptor.getValue().getSagaTransactionId());
+    }
+
+    @Test
+    void consumeBookingCreationCommand_shouldReplayRecordedResult_whenCommandWasAlreadyProcessed() {
+        // Arrange
+        UUID recordedBookingId = UUID.randomUUID();
+        ProcessedCommand processed = new ProcessedCommand(bookingCreationCommand.getSagaTransactionId(),
+                BookingCreationCommand.class.getSimpleName(), CommandOutcome.SUCCEEDED, recordedBookingId, new BigDecimal("400.0"));
+        when(commandDeduplicator.findProcessed(bookingCreationCommand.getSagaTransactionId(), BookingCreationCommand.class))
+                .thenReturn(Optional.of(processed));
+
+        // Act
+        Booking result = bookingService.consumeBookingCreationCommand(bookingCreationCommand);
+
+        // Assert
+        assertNotNull(result);
+        assertEquals(recordedBookingId, result.getBookingId());
+        assertEquals(new BigDecimal("400.0"), result.getTotalPrice());
+        assertEquals(recordedBookingId, bookingCreationCommand.getBookingDto().getBookingId());
+        verifyNoInteractions(bookingRepository, bookingEventOutbox);
+        verify(commandDeduplicator, never()).record(any());
+    }
+
+    @Test
+    void consumeCancelBookingCommand_shouldSkip_whenCommandWasAlreadyProcessed() {
+        // Arrange
+        CancelBookingCommand command = new CancelBookingCommand(UUID.randomUUID(), bookingDto);
+        when(commandDeduplicator.findProcessed(command.getSagaTransactionId(), CancelBookingCommand.class))
+                .thenReturn(Optional.of(new ProcessedCommand(command.getSagaTransactionId(),
+                        CancelBookingCommand.class.getSimpleName(), CommandOutcome.SUCCEEDED, bookingDto.getBookingId(), null)));
+
+        // Act
+        bookingService.consumeCancelBookingCommand(command);
+
+        // Assert
+        verifyNoInteractions(bookingRepository, bookingEventOutbox);
+    }
+
+    @Test
+    void consumeBookingCreationCommand_shouldPublishFailedEvent_whenIndexHitIsConfirmedByDatabase() {
+        // Arrange
+        carAvailabilityIndex.tryHold(bookingDto.getCarId(), bookingDto.getRentalStartDate().plusDays(1),
+                bookingDto.getRentalEndDate().plusDays(1));
+        when(bookingRepository.findOverlappingForUpdate(eq(bookingDto.getCarId()), any(), any(), any()))
+                .thenReturn(List.of(booking));
+
+        // Act
+        Booking result = bookingService.consumeBookingCreationCommand(bookingCreationCommand);
+
+        // Assert
+        assertNull(result);
+        verify(bookingRepository, never()).save(any(Booking.class));
+        ArgumentCaptor<BookingCreationFailedEvent> eventCaptor = ArgumentCaptor.forClass(BookingCreationFailedEvent.class);
+        verify(bookingEventOutbox, times(1)).enqueue(eventCaptor.capture());
+        assertTrue(eventCaptor.getValue().getMessage().contains("is already booked"));
+    }
+
+    @Test
+    void consumeBookingCreationCommand_shouldReleaseHold_whenDatabaseGuardFindsOverlap() {
+        // Arrange
+        when(bookingRepository.findOverlappingForUpdate(eq(bookingDto.getCarId()), any(), any(), any()))
+                .thenReturn(List.of(booking));
+
+        // Act
+        Booking result = bookingService.consumeBookingCreationCommand(bookingCreationCommand);
+
+        // Assert
+        assertNull(result);
+        verify(bookingRepository, never()).save(any(Booking.class));
+        assertTrue(carAvailabilityIndex.isAvailable(bookingDto.getCarId(), bookingDto.getRentalStartDate(),
+                bookingDto.getRentalEndDate()));
+    }
+
+    @Test
+    void consumeCancelBookingCommand_shouldFreeCarInIndex() {
+        // Arrange
+        when(bookingRepository.save(any(Booking.class))).thenReturn(booking);
+        Booking created = bookingService.consumeBookingCreationCommand(bookingCreationCommand);
+        assertFalse(carAvailabilityIndex.isAvailable(bookingDto.getCarId(), bookingDto.getRentalStartDate(),
+                bookingDto.getRentalEndDate()));
+        assertEquals(4, dailyOccupancyIndex.takenDays(bookingDto.getCarId(), LocalDate.now(),
+                LocalDate.now().plusDays(10)).size());
+        bookingDto.setBookingId(created.getBookingId());
+        when(bookingRepository.updateStatus(eq(created.getBookingId()), eq(BookingStatus.ACTIVE),
+                eq(BookingStatus.CANCELLED), any())).thenReturn(1);
+
+        // Act
+        bookingService.consumeCancelBookingCommand(new CancelBookingCommand(UUID.randomUUID(), bookingDto));
+
+        // Assert
+        assertTrue(carAvailabilityIndex.isAvailable(bookingDto.getCarId(), bookingDto.getRentalStartDate(),
+                bookingDto.getRentalEndDate()));
+        assertTrue(dailyOccupancyIndex.isFree(bookingDto.getCarId(), bookingDto.getRentalStartDate().toLocalDate(),
+                bookingDto.getRentalEndDate().toLocalDate().plusDays(1)));
+    }
+
+    @Test
+    void consumeBookingCreationCommand_shouldTimeStagesAndCountOutcome() {
+        // Arrange
+        when(bookingRepository.save(any(Booking.class))).thenReturn(booking);
+
+        // Act
+        bookingService.consumeBookingCreationCommand(bookingCreationCommand);
+
+        // Assert
+        assertEquals(1, meterRegistry.get("booking.handler")
+                .tags("handler", "creation", "outcome", "created").timer().count());
+        for (String stage : List.of("validate", "persist", "publish")) {
+            assertEquals(1, meterRegistry.get("booking.handler.stage")
+                    .tags("handler", "creation", "stage", stage, "outcome", "created").timer().count());
+        }
+        assertEquals(1.0, meterRegistry.get("booking.handler.commands")
+                .tags("handler", "creation", "outcome", "created").counter().count());
+    }
+
+    @Test
+    void consumeCancelBookingCommand_shouldCountCancellationFailed_whenBookingNotFound() {
+        // Arrange
+        CancelBookingCommand command = new CancelBookingCommand(UUID.randomUUID(), bookingDto);
+        when(bookingRepository.findById(bookingDto.getBookingId())).thenReturn(Optional.empty());
+
+        // Act
+        bookingService.consumeCancelBookingCommand(command);
+
+        // Assert
+        assertEquals(1.0, meterRegistry.get("booking.handler.commands")
+                .tags("handler", "cancellation", "outcome", "cancellation-failed").counter().count());
+        assertEquals(1, meterRegistry.get("booking.handler.stage")
+                .tags("handler", "cancellation", "stage", "publish", "outcome", "cancellation-failed").timer().count());
+    }
+
+    @Test
+    void consumeBookingCreationCommands_shouldCountEachCommandOfABatch() {
+        // Arrange
+        BookingDto invalidDto = new BookingDto();
+        invalidDto.setCarId(UUID.randomUUID());
+        invalidDto.setRentalStartDate(LocalDateTime.now().minusDays(1));
+        invalidDto.setRentalEndDate(LocalDateTime.now().plusDays(3));
+        BookingCreationCommand invalidCommand = new BookingCreationCommand(UUID.randomUUID(), invalidDto);
+        when(bookingRepository.saveAll(anyList())).thenReturn(List.of(booking));
+
+        // Act
+        bookingService.consumeBookingCreationCommands(List.of(bookingCreationCommand, invalidCommand));
+
+        // Assert
+        assertEquals(1, meterRegistry.get("booking.handler")
+                .tags("handler", "creation-batch", "outcome", "partial").timer().count());
+        assertEquals(1.0, meterRegistry.get("booking.handler.commands")
+                .tags("handler", "creation-batch", "outcome", "created").counter().count());
+        assertEquals(1.0, meterRegistry.get("booking.handler.commands")
+                .tags("handler", "creation-batch", "outcome", "failed").counter().count());
+    }
+
+    @Test
+    void consumeBookingCreationCommand_shouldRethrowTransientFailure_withoutFailedEvent() {
+        // Arrange
+        when(bookingRepository.save(any(Booking.class)))
+                .thenThrow(new CannotAcquireLockException("Lock wait timeout exceeded"));
+
+        // Act & Assert
+        assertThrows(CannotAcquireLockException.class,
+                () -> bookingService.consumeBookingCreationCommand(bookingCreationCommand));
+        verify(bookingEventOutbox, never()).enqueue(any());
+        assertTrue(carAvailabilityIndex.isAvailable(bookingDto.getCarId(), bookingDto.getRentalStartDate(),
+                bookingDto.getRentalEndDate()));
+        assertEquals(1.0, meterRegistry.get("booking.handler.commands")
+                .tags("handler", "creation", "outcome", "retried").counter().count());
+    }
+
+    @Test
+    void consumeCancelBookingCommand_shouldRethrowLostConnection_withoutFailureEvent() {
+        // Arrange
+        CancelBookingCommand command = new CancelBookingCommand(UUID.randomUUID(), bookingDto);
+        when(bookingRepository.findById(bookingDto.getBookingId()))
+                .thenThrow(new DataAccessResourceFailureException("Communications link failure"));
+
+        // Act & Assert
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> bookingService.consumeCancelBookingCommand(command));
+        verify(bookingEventOutbox, never()).enqueue(any());
+    }
+
+    @Test
+    void isTransient_shouldLookThroughCauses() {
+        // Arrange
+        RuntimeException wrapped = new RuntimeException(new java.sql.SQLTransientConnectionException("timeout"));
+
+        // Act & Assert
+        assertTrue(BookingService.isTransient(wrapped));
+        assertFalse(BookingService.isTransient(new IllegalArgumentException("Start date must be before end date")));
+    }
+
+    @Test
+    void consumeBookingCreationCommand_shouldEvictStaleWindow_whenDatabaseShowsCarIsFree() {
+        // Arrange
+        CarAvailabilityIndex.Hold stale = carAvailabilityIndex.tryHold(bookingDto.getCarId(),
+                bookingDto.getRentalStartDate(), bookingDto.getRentalEndDate()).orElseThrow();
+        UUID cancelledElsewhere = UUID.randomUUID();
+        carAvailabilityIndex.confirm(stale, cancelledElsewhere);
+        when(bookingRepository.save(any(Booking.class))).thenReturn(booking);
+
+        // Act
+        Booking result = bookingService.consumeBookingCreationCommand(bookingCreationCommand);
+
+        // Assert
+        assertNotNull(result);
+        verify(bookingEventOutbox).enqueue(any(BookingCreatedEvent.class));
+        assertTrue(carAvailabilityIndex.releaseBooking(cancelledElsewhere).isEmpty());
+        assertFalse(carAvailabilityIndex.isAvailable(bookingDto.getCarId(), bookingDto.getRentalStartDate(),
+                bookingDto.getRentalEndDate()));
+    }
+
+    @Test
+    void consumeBookingCreationCommand_shouldFail_whenOverlappingWindowIsStillBeingPersisted() {
+        // Arrange
+        carAvailabilityIndex.tryHold(bookingDto.getCarId(), bookingDto.getRentalStartDate().plusDays(1),
+                bookingDto.getRentalEndDate().plusDays(1)).orElseThrow();
+
+        // Act
+        Booking result = bookingService.consumeBookingCreationCommand(bookingCreationCommand);
+
+        // Assert
+        assertNull(result);
+        verify(bookingRepository, never()).save(any(Booking.class));
+        verify(bookingEventOutbox).enqueue(any(BookingCreationFailedEvent.class));
+    }
+
+    @Test
+    void consumeBookingCreationCommands_shouldFailSecondOfTwoOverlappingCommandsInOneBatch() {
+        // Arrange
+        BookingDto overlappingDto = new BookingDto();
+        overlappingDto.setCarId(bookingDto.getCarId());
+        overlappingDto.setRentalStartDate(bookingDto.getRentalStartDate().plusDays(1));
+        overlappingDto.setRentalEndDate(bookingDto.getRentalEndDate().plusDays(1));
+        overlappingDto.setPricePerDay(new BigDecimal("100.0"));
+        BookingCreationCommand overlappingCommand = new BookingCreationCommand(UUID.randomUUID(), overlappingDto);
+        when(bookingRepository.saveAll(anyList())).thenReturn(List.of(booking));
+
+        // Act
+        List<Booking> result = bookingService.consumeBookingCreationCommands(
+                List.of(bookingCreationCommand, overlappingCommand));
+
+        // Assert
+        assertEquals(1, result.size());
+        ArgumentCaptor<List<Booking>> batchCaptor = ArgumentCaptor.forClass(List.class);
+        verify(bookingRepository).saveAll(batchCaptor.capture());
+        assertEquals(1, batchCaptor.getValue().size());
+        assertEquals(bookingDto.getRentalStartDate(), batchCaptor.getValue().get(0).getRentalStartDate());
+        ArgumentCaptor<List<Object>> eventsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(bookingEventOutbox, times(2)).enqueueAll(eventsCaptor.capture());
+        BookingCreationFailedEvent failed = (BookingCreationFailedEvent) eventsCaptor.getAllValues().get(0).get(0);
+        assertEquals(overlappingCommand.getSagaTransactionId(), failed.getSagaTransactionId());
+    }
+
+    @Test
+    void deleteBooking_shouldFreeCarInIndex() {
+        // Arrange
+        when(bookingRepository.save(any(Booking.class))).thenReturn(booking);
+        Booking created = bookingService.consumeBookingCreationCommand(bookingCreationCommand);
+
+        // Act
+        bookingService.deleteBooking(created.getBookingId());
+
+        // Assert
+        assertTrue(carAvailabilityIndex.isAvailable(bookingDto.getCarId(), bookingDto.getRentalStartDate(),
+                bookingDto.getRentalEndDate()));
+    }
+
+    @Test
+    void updateBooking_shouldMoveWindowInIndex() {
+        // Arrange
+        booking.setCarId(bookingDto.getCarId());
+        booking.setRentalStartDate(bookingDto.getRentalStartDate());
+        booking.setRentalEndDate(bookingDto.getRentalEndDate());
+        when(bookingRepository.save(any(Booking.class))).thenReturn(booking);
+        Booking created = bookingService.consumeBookingCreationCommand(bookingCreationCommand);
+        LocalDateTime oldStart = created.getRentalStartDate();
+        LocalDateTime oldEnd = created.getRentalEndDate();
+        created.setRentalStartDate(oldStart.plusDays(30));
+        created.setRentalEndDate(oldEnd.plusDays(30));
+        when(bookingRepository.updateDetails(eq(created), any())).thenReturn(1);
+
+        // Act
+        bookingService.updateBooking(created);
+
+        // Assert
+        assertTrue(carAvailabilityIndex.isAvailable(created.getCarId(), oldStart, oldEnd));
+        assertFalse(carAvailabilityIndex.isAvailable(created.getCarId(), oldStart.plusDays(30), oldEnd.plusDays(30)));
+    }
 }
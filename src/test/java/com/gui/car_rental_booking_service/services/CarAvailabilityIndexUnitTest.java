@@ -0,0 +1,85 @@
+package com.gui.car_rental_booking_service.services;
+
+import com.gui.car_rental_booking_service.respositories.BookingRepository;
+import com.gui.car_rental_booking_service.service.CarAvailabilityIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class CarAvailabilityIndexUnitTest {
+
+    @Mock
+    private BookingRepository bookingRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CarAvailabilityIndex index;
+    private UUID carId;
+    private LocalDateTime start;
+
+    @BeforeEach
+    void setUp() {
+        index = new CarAvailabilityIndex(bookingRepository, new TransactionTemplate(transactionManager), 8);
+        carId = UUID.randomUUID();
+        start = LocalDateTime.now().plusDays(10);
+    }
+
+    @Test
+    void tryHold_shouldRejectOverlappingWindow_andAcceptAdjacentOnes() {
+        assertTrue(index.tryHold(carId, start, start.plusDays(5)).isPresent());
+
+        assertTrue(index.tryHold(carId, start.plusDays(4), start.plusDays(8)).isEmpty());
+        assertTrue(index.tryHold(carId, start.minusDays(2), start.plusDays(1)).isEmpty());
+        assertTrue(index.tryHold(carId, start.plusDays(1), start.plusDays(2)).isEmpty());
+        assertTrue(index.tryHold(carId, start.plusDays(5), start.plusDays(7)).isPresent());
+        assertTrue(index.tryHold(carId, start.minusDays(3), start).isPresent());
+        assertTrue(index.tryHold(UUID.randomUUID(), start, start.plusDays(5)).isPresent());
+    }
+
+    @Test
+    void tryHold_shouldFindLongWindowStartingWellBeforeRequest() {
+        index.tryHold(carId, start, start.plusDays(60));
+        index.tryHold(carId, start.plusDays(60), start.plusDays(61));
+
+        assertFalse(index.isAvailable(carId, start.plusDays(30), start.plusDays(31)));
+    }
+
+    @Test
+    void releaseBooking_shouldFreeConfirmedWindow() {
+        Optional<CarAvailabilityIndex.Hold> hold = index.tryHold(carId, start, start.plusDays(5));
+        UUID bookingId = UUID.randomUUID();
+        index.confirm(hold.orElseThrow(), bookingId);
+
+        index.releaseBooking(bookingId);
+
+        assertTrue(index.isAvailable(carId, start, start.plusDays(5)));
+    }
+
+    @Test
+    void evictConfirmed_shouldDropPersistedWindows_andKeepPendingHolds() {
+        CarAvailabilityIndex.Hold stale = index.tryHold(carId, start, start.plusDays(2)).orElseThrow();
+        UUID bookingId = UUID.randomUUID();
+        index.confirm(stale, bookingId);
+        index.tryHold(carId, start.plusDays(3), start.plusDays(4)).orElseThrow();
+
+        List<CarAvailabilityIndex.Hold> evicted = index.evictConfirmed(carId, start, start.plusDays(5));
+
+        assertEquals(List.of(stale), evicted);
+        assertTrue(index.isAvailable(carId, start, start.plusDays(2)));
+        assertFalse(index.isAvailable(carId, start.plusDays(3), start.plusDays(4)));
+        assertTrue(index.releaseBooking(bookingId).isEmpty());
+    }
+}
@@ -0,0 +1,164 @@
+package com.gui.car_rental_booking_service.services;
+
+import com.gui.car_rental_booking_service.service.BookingService;
+import com.gui.car_rental_booking_service.service.CommandFlowController;
+import com.gui.car_rental_booking_service.service.CommandFlowController.Signals;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CommandFlowControllerUnitTest {
+
+    private static final Signals SATURATED = new Signals(10, 10, 3, 80, 100);
+    private static final Signals SLOW_HANDLERS = new Signals(7, 10, 0, 5, 3000);
+    private static final Signals BUSY = new Signals(7, 10, 0, 5, 100);
+    private static final Signals IDLE = new Signals(2, 10, 0, 1, 50);
+
+    private KafkaListenerEndpointRegistry registry;
+    private SimpleMeterRegistry meterRegistry;
+    private CommandFlowController controller;
+    private List<AtomicBoolean> paused;
+    private List<MessageListenerContainer> containers;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        registry = mock(KafkaListenerEndpointRegistry.class);
+        meterRegistry = new SimpleMeterRegistry();
+        controller = new CommandFlowController(registry, mock(ObjectProvider.class), meterRegistry,
+                0.9, 0.6, 50, 2000, 0);
+        paused = new ArrayList<>();
+        containers = new ArrayList<>();
+    }
+
+    @Test
+    void control_shouldHalveConsumers_whenPoolIsSaturatedWithThreadsWaiting() {
+        // Arrange
+        runningRecordListener(4);
+
+        // Act
+        int allowed = controller.control(SATURATED);
+
+        // Assert
+        assertEquals(2, allowed);
+        assertEquals(List.of(false, false, true, true), paused.stream().map(AtomicBoolean::get).toList());
+        assertEquals(1.0, meterRegistry.get("booking.flow.decisions").tag("action", "shrink").counter().count());
+        assertEquals(2.0, meterRegistry.get("booking.flow.consumers.allowed").gauge().value());
+    }
+
+    @Test
+    void control_shouldPauseTheTopic_thenResumeOneConsumerPerInterval_whenPoolDrains() {
+        // Arrange
+        runningRecordListener(2);
+
+        // Act & Assert
+        assertEquals(1, controller.control(SATURATED));
+        assertEquals(0, controller.control(SATURATED));
+        assertTrue(paused.stream().allMatch(AtomicBoolean::get));
+        assertEquals(1, controller.control(IDLE));
+        assertFalse(paused.get(0).get());
+        assertTrue(paused.get(1).get());
+        assertEquals(2, controller.control(IDLE));
+        assertEquals(2, controller.control(IDLE));
+        assertFalse(paused.get(1).get());
+        assertEquals(1.0, meterRegistry.get("booking.flow.decisions").tag("action", "pause").counter().count());
+        assertEquals(1.0, meterRegistry.get("booking.flow.decisions").tag("action", "resume").counter().count());
+        assertEquals(1.0, meterRegistry.get("booking.flow.decisions").tag("action", "grow").counter().count());
+    }
+
+    @Test
+    void control_shouldDropOneConsumer_whenHandlersSlowDownBeforePoolFills() {
+        // Arrange
+        runningRecordListener(4);
+
+        // Act & Assert
+        assertEquals(3, controller.control(SLOW_HANDLERS));
+        assertTrue(paused.get(3).get());
+        assertEquals(3, controller.control(BUSY));
+    }
+
+    @Test
+    void control_shouldLeaveAllowedConsumersAlone_whenNoListenerIsRunning() {
+        // Act & Assert
+        assertEquals(0, controller.control(SATURATED));
+        runningRecordListener(2);
+        assertEquals(2, controller.control(BUSY));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void control_shouldKeepMinConsumersPolling_whenPoolIsSaturated() {
+        // Arrange
+        controller = new CommandFlowController(registry, mock(ObjectProvider.class), meterRegistry,
+                0.9, 0.6, 50, 2000, 1);
+        runningRecordListener(1);
+
+        // Act
+        int allowed = controller.control(SATURATED);
+
+        // Assert
+        assertEquals(1, allowed);
+        assertFalse(paused.get(0).get());
+    }
+
+    @Test
+    void control_shouldPauseRetryTopicConsumersFirst_andLeaveDeadLetterConsumerAlone() {
+        // Arrange
+        runningRecordListener(2);
+        runningListener(BookingService.LISTENER_ID + "-retry-5000", 1);
+        runningListener(BookingService.LISTENER_ID + "-retry-1000", 1);
+        runningListener(BookingService.LISTENER_ID + "-dlt", 1);
+
+        // Act
+        int allowed = controller.control(SATURATED);
+
+        // Assert
+        assertEquals(2, allowed);
+        assertEquals(List.of(false, false, true, true, false), paused.stream().map(AtomicBoolean::get).toList());
+        assertEquals(4.0, meterRegistry.get("booking.flow.consumers").gauge().value());
+    }
+
+    private void runningRecordListener(int concurrency) {
+        runningListener(BookingService.LISTENER_ID, concurrency);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runningListener(String listenerId, int concurrency) {
+        List<KafkaMessageListenerContainer<String, Object>> consumers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            AtomicBoolean pauseRequested = new AtomicBoolean();
+            KafkaMessageListenerContainer<String, Object> consumer = mock(KafkaMessageListenerContainer.class);
+            when(consumer.isRunning()).thenReturn(true);
+            when(consumer.isPauseRequested()).thenAnswer(invocation -> pauseRequested.get());
+            doAnswer(invocation -> {
+                pauseRequested.set(true);
+                return null;
+            }).when(consumer).pause();
+            doAnswer(invocation -> {
+                pauseRequested.set(false);
+                return null;
+            }).when(consumer).resume();
+            consumers.add(consumer);
+            paused.add(pauseRequested);
+        }
+        ConcurrentMessageListenerContainer<String, Object> container = mock(ConcurrentMessageListenerContainer.class);
+        when(container.isRunning()).thenReturn(true);
+        when(container.getContainers()).thenReturn(consumers);
+        when(container.getListenerId()).thenReturn(listenerId);
+        when(registry.getListenerContainer(listenerId)).thenReturn(container);
+        containers.add(container);
+        when(registry.getListenerContainers()).thenReturn(containers);
+    }
+}
@@ -0,0 +1,145 @@
+package com.gui.car_rental_booking_service.services;
+
+import com.gui.car_rental_booking_service.respositories.BookingRepository;
+import com.gui.car_rental_booking_service.service.DailyOccupancyIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class DailyOccupancyIndexUnitTest {
+
+    @Mock
+    private BookingRepository bookingRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private DailyOccupancyIndex index;
+    private UUID carId;
+    private LocalDate today;
+
+    @BeforeEach
+    void setUp() {
+        index = new DailyOccupancyIndex(bookingRepository, new TransactionTemplate(transactionManager), 128, 8);
+        carId = UUID.randomUUID();
+        today = LocalDate.now();
+    }
+
+    @Test
+    void occupy_shouldTakeEveryDayTheRentalTouches() {
+        // Arrange
+        LocalDate start = today.plusDays(60);
+
+        // Act
+        index.occupy(carId, start.atTime(10, 0), start.plusDays(3).atTime(10, 0));
+
+        // Assert
+        assertEquals(List.of(start, start.plusDays(1), start.plusDays(2), start.plusDays(3)),
+                index.takenDays(carId, today, today.plusDays(128)));
+        assertFalse(index.isFree(carId, start.plusDays(3), start.plusDays(10)));
+        assertTrue(index.isFree(carId, start.plusDays(4), start.plusDays(10)));
+        assertTrue(index.isFree(carId, today, start));
+        assertTrue(index.isFree(UUID.randomUUID(), start, start.plusDays(3)));
+    }
+
+    @Test
+    void release_shouldKeepDaySharedWithAdjacentBooking() {
+        // Arrange
+        LocalDate start = today.plusDays(5);
+        index.occupy(carId, start.atTime(10, 0), start.plusDays(2).atTime(10, 0));
+        index.occupy(carId, start.plusDays(2).atTime(14, 0), start.plusDays(4).atTime(9, 0));
+
+        // Act
+        index.release(carId, start.atTime(10, 0), start.plusDays(2).atTime(10, 0));
+
+        // Assert
+        assertEquals(List.of(start.plusDays(2), start.plusDays(3), start.plusDays(4)),
+                index.takenDays(carId, today, today.plusDays(30)));
+    }
+
+    @Test
+    void advanceTo_shouldDropPastDays_andFillInBookingsEnteringTheHorizon() {
+        // Arrange
+        LocalDate farStart = today.plusDays(120);
+        index.occupy(carId, today.plusDays(1).atTime(10, 0), today.plusDays(3).atTime(10, 0));
+        index.occupy(carId, farStart.atTime(10, 0), farStart.plusDays(20).atTime(10, 0));
+        LocalDate later = today.plusDays(30);
+
+        // Act
+        index.advanceTo(later);
+
+        // Assert
+        assertFalse(index.covers(today, later));
+        assertTrue(index.isFree(carId, later, farStart));
+        assertEquals(21, index.takenDays(carId, later, later.plusDays(128)).size());
+        assertFalse(index.isFree(carId, farStart.plusDays(20), farStart.plusDays(21)));
+        assertTrue(index.isFree(carId, farStart.plusDays(21), later.plusDays(128)));
+    }
+
+    @Test
+    void isFree_shouldRejectDaysOutsideHorizon() {
+        assertThrows(IllegalArgumentException.class, () -> index.isFree(carId, today, today.plusDays(129)));
+        assertThrows(IllegalArgumentException.class, () -> index.isFree(carId, today.minusDays(1), today));
+    }
+
+    @Test
+    void occupy_shouldScaleToLargeFleets() {
+        // Arrange
+        LocalDate start = today.plusDays(2);
+        UUID[] fleet = new UUID[20_000];
+        for (int i = 0; i < fleet.length; i++) {
+            // the halves of every id XOR to the same value
+            fleet[i] = new UUID(i, ~i);
+        }
+
+        // Act
+        for (UUID car : fleet) {
+            index.occupy(car, start.atStartOfDay(), start.plusDays(1).atStartOfDay());
+        }
+
+        // Assert
+        assertEquals(fleet.length, index.carCount());
+        for (int i = 0; i < fleet.length; i += 997) {
+            assertEquals(List.of(start), index.takenDays(fleet[i], today, today.plusDays(10)));
+        }
+    }
+
+    @Test
+    void release_shouldNotWrapDayThatIsNotHeld() {
+        // Arrange
+        LocalDate day = today.plusDays(3);
+        index.occupy(carId, day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+
+        // Act
+        index.release(carId, day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+        index.release(carId, day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+
+        // Assert
+        assertTrue(index.isFree(carId, day, day.plusDays(1)));
+    }
+
+    @Test
+    void occupy_shouldSaturateInsteadOfWrapping() {
+        // Arrange
+        LocalDate day = today.plusDays(3);
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            index.occupy(carId, day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+        }
+
+        // Assert
+        assertFalse(index.isFree(carId, day, day.plusDays(1)));
+    }
+}
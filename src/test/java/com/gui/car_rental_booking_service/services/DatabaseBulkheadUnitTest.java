@@ -0,0 +1,52 @@
+package com.gui.car_rental_booking_service.services;
+
+import com.gui.car_rental_booking_service.service.DatabaseBulkhead;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseBulkheadUnitTest {
+
+    @Test
+    void call_shouldFail_whenNoPermitFreesUpInTime() throws Exception {
+        // Arrange
+        DatabaseBulkhead bulkhead = new DatabaseBulkhead(new SimpleMeterRegistry(), 1, 50);
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> bulkhead.run(() -> {
+            holding.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+        // Act & Assert
+        assertThrows(TransientDataAccessResourceException.class, () -> bulkhead.call(() -> "too many"));
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        assertEquals("next", bulkhead.call(() -> "next"));
+    }
+
+    @Test
+    void call_shouldReleasePermit_whenWorkThrows() {
+        // Arrange
+        DatabaseBulkhead bulkhead = new DatabaseBulkhead(new SimpleMeterRegistry(), 1, 50);
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> bulkhead.run(() -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        // Assert
+        assertEquals("after", bulkhead.call(() -> "after"));
+    }
+}
@@ -0,0 +1,182 @@
+package com.gui.car_rental_booking_service.services;
+
+import com.gui.car_rental_booking_service.service.KeyedCommandDispatcher;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyedCommandDispatcherUnitTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("rental-saga-booking-commands", 0);
+    private static final Consumer<RuntimeException> NO_RECOVERY = failure -> {
+    };
+
+    private KeyedCommandDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new KeyedCommandDispatcher(4, 100, 5, 10);
+        dispatcher.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.stop();
+    }
+
+    @Test
+    void submit_shouldKeepRecordsWithTheSameKeyInOffsetOrder() {
+        // Arrange
+        List<Long> handled = new CopyOnWriteArrayList<>();
+
+        // Act
+        for (long offset = 0; offset < 50; offset++) {
+            long current = offset;
+            dispatcher.submit(PARTITION, offset, "car-1", () -> handled.add(current), NO_RECOVERY);
+        }
+
+        // Assert
+        assertTrue(dispatcher.drain(List.of(PARTITION), Duration.ofSeconds(5)));
+        assertEquals(50, handled.size());
+        for (int i = 0; i < handled.size(); i++) {
+            assertEquals(i, handled.get(i));
+        }
+    }
+
+    @Test
+    void committableOffsets_shouldStopAtLowestRecordStillInFlight() throws Exception {
+        // Arrange
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch otherKeysDone = new CountDownLatch(2);
+        String blockedKey = keyOnOtherLaneThan("car-2", "car-3");
+        dispatcher.submit(PARTITION, 10, blockedKey, () -> await(blocked), NO_RECOVERY);
+        dispatcher.submit(PARTITION, 11, "car-2", otherKeysDone::countDown, NO_RECOVERY);
+        dispatcher.submit(PARTITION, 12, "car-3", otherKeysDone::countDown, NO_RECOVERY);
+
+        // Act
+        assertTrue(otherKeysDone.await(5, TimeUnit.SECONDS));
+        Map<TopicPartition, OffsetAndMetadata> whileBlocked = dispatcher.committableOffsets(List.of(PARTITION));
+        blocked.countDown();
+        assertTrue(dispatcher.drain(List.of(PARTITION), Duration.ofSeconds(5)));
+        Map<TopicPartition, OffsetAndMetadata> afterwards = dispatcher.committableOffsets(List.of(PARTITION));
+
+        // Assert
+        assertEquals(10, whileBlocked.get(PARTITION).offset());
+        assertEquals(13, afterwards.get(PARTITION).offset());
+        assertTrue(dispatcher.committableOffsets(List.of(PARTITION)).isEmpty());
+    }
+
+    @Test
+    void submit_shouldRetryFailingHandlerBeforeMovingOnWithItsKey() {
+        // Arrange
+        AtomicInteger attempts = new AtomicInteger();
+        List<String> handled = new CopyOnWriteArrayList<>();
+
+        // Act
+        dispatcher.submit(PARTITION, 0, "car-1", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("database unavailable");
+            }
+            handled.add("first");
+        }, NO_RECOVERY);
+        dispatcher.submit(PARTITION, 1, "car-1", () -> handled.add("second"), NO_RECOVERY);
+
+        // Assert
+        assertTrue(dispatcher.drain(List.of(PARTITION), Duration.ofSeconds(5)));
+        assertEquals(3, attempts.get());
+        assertEquals(List.of("first", "second"), handled);
+    }
+
+    @Test
+    void submit_shouldRecoverRecordAfterMaxAttempts_andMoveOnWithItsKey() {
+        // Arrange
+        AtomicInteger attempts = new AtomicInteger();
+        List<RuntimeException> recovered = new CopyOnWriteArrayList<>();
+        List<String> handled = new CopyOnWriteArrayList<>();
+
+        // Act
+        dispatcher.submit(PARTITION, 0, "car-1", () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("database unavailable");
+        }, recovered::add);
+        dispatcher.submit(PARTITION, 1, "car-1", () -> handled.add("second"), NO_RECOVERY);
+
+        // Assert
+        assertTrue(dispatcher.drain(List.of(PARTITION), Duration.ofSeconds(5)));
+        assertEquals(5, attempts.get());
+        assertEquals(1, recovered.size());
+        assertEquals("database unavailable", recovered.get(0).getMessage());
+        assertEquals(List.of("second"), handled);
+        assertEquals(2, dispatcher.committableOffsets(List.of(PARTITION)).get(PARTITION).offset());
+    }
+
+    @Test
+    void submit_shouldNotBlock_whenSaturated_andReportCapacityOnceHalfDrained() {
+        // Arrange
+        KeyedCommandDispatcher bounded = new KeyedCommandDispatcher(4, 2, 5, 10);
+        bounded.start();
+        CountDownLatch blocked = new CountDownLatch(1);
+
+        try {
+            // Act
+            bounded.submit(PARTITION, 0, "car-1", () -> await(blocked), NO_RECOVERY);
+            bounded.submit(PARTITION, 1, "car-1", () -> await(blocked), NO_RECOVERY);
+            bounded.submit(PARTITION, 2, "car-1", () -> await(blocked), NO_RECOVERY);
+            boolean saturated = bounded.isSaturated();
+            boolean capacityWhileSaturated = bounded.hasCapacity();
+            blocked.countDown();
+
+            // Assert
+            assertTrue(saturated);
+            assertFalse(capacityWhileSaturated);
+            assertTrue(bounded.drain(List.of(PARTITION), Duration.ofSeconds(5)));
+            assertFalse(bounded.isSaturated());
+            assertTrue(bounded.hasCapacity());
+        } finally {
+            bounded.stop();
+        }
+    }
+
+    /**
+     * Finds a key whose lane differs from the lanes of the given keys, mirroring the dispatcher's lane hash.
+     */
+    private static String keyOnOtherLaneThan(String... keys) {
+        for (int i = 0; ; i++) {
+            String candidate = "car-" + (100 + i);
+            int lane = lane(candidate);
+            boolean clash = false;
+            for (String key : keys) {
+                clash |= lane(key) == lane;
+            }
+            if (!clash) {
+                return candidate;
+            }
+        }
+    }
+
+    private static int lane(String key) {
+        int h = key.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), 4);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.gui.car_rental_booking_service.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gui.car_rental_booking_service.entities.OutboxEvent;
+import com.gui.car_rental_booking_service.respositories.OutboxEventRepository;
+import com.gui.car_rental_booking_service.respositories.OutboxRelayLeaseRepository;
+import com.gui.car_rental_booking_service.service.OutboxRelay;
+import com.gui.car_rental_common.events.booking.BookingCreatedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayUnitTest {
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    @Mock
+    private OutboxRelayLeaseRepository leaseRepository;
+
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private OutboxRelay outboxRelay;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        outboxRelay = new OutboxRelay(outboxEventRepository, leaseRepository, kafkaTemplate, new ObjectMapper(),
+                meterRegistry);
+        ReflectionTestUtils.setField(outboxRelay, "batchSize", 3);
+        ReflectionTestUtils.setField(outboxRelay, "sendTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(outboxRelay, "retryInitialBackoffMs", 60_000L);
+        ReflectionTestUtils.setField(outboxRelay, "retryMaxBackoffMs", 60_000L);
+        ReflectionTestUtils.setField(outboxRelay, "leaseMs", 15_000L);
+        lenient().when(leaseRepository.acquire(anyString(), anyString(), any(), any())).thenReturn(1);
+    }
+
+    @Test
+    void relay_shouldDeleteOnlyAcknowledgedPrefix_whenASendFails() {
+        // Arrange
+        List<OutboxEvent> chunk = List.of(outboxEvent(1L), outboxEvent(2L), outboxEvent(3L));
+        when(outboxEventRepository.findByIdGreaterThanAndFailedAtIsNullOrderByIdAsc(0L, Limit.of(3))).thenReturn(chunk);
+        when(kafkaTemplate.send(eq("booking-service-events"), isNull(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("broker unavailable")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        // Act
+        outboxRelay.relay();
+
+        // Assert
+        ArgumentCaptor<List<Long>> idsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(outboxEventRepository, times(1)).deleteAllByIdInBatch(idsCaptor.capture());
+        assertEquals(List.of(1L), idsCaptor.getValue());
+        verify(outboxEventRepository, times(1)).findByIdGreaterThanAndFailedAtIsNullOrderByIdAsc(anyLong(), any());
+    }
+
+    @Test
+    void relay_shouldKeepDrainingFullChunks_inIdOrder() {
+        // Arrange
+        when(outboxEventRepository.findByIdGreaterThanAndFailedAtIsNullOrderByIdAsc(0L, Limit.of(3)))
+                .thenReturn(List.of(outboxEvent(1L), outboxEvent(2L), outboxEvent(3L)));
+        when(outboxEventRepository.findByIdGreaterThanAndFailedAtIsNullOrderByIdAsc(3L, Limit.of(3)))
+                .thenReturn(List.of(outboxEvent(4L)));
+        when(kafkaTemplate.send(eq("booking-service-events"), isNull(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        // Act
+        outboxRelay.relay();
+
+        // Assert
+        verify(kafkaTemplate, times(4)).send(eq("booking-service-events"), isNull(), any(BookingCreatedEvent.class));
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(1L, 2L, 3L));
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(4L));
+    }
+
+    @Test
+    void relay_shouldWaitForAcknowledgementsOfAChunkAtMostTheSendTimeout() {
+        // Arrange
+        when(outboxEventRepository.findByIdGreaterThanAndFailedAtIsNullOrderByIdAsc(0L, Limit.of(3)))
+                .thenReturn(List.of(outboxEvent(1L), outboxEvent(2L), outboxEvent(3L)));
+        when(kafkaTemplate.send(eq("booking-service-events"), isNull(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null))
+                .thenReturn(acknowledgedAfter(700))
+                .thenReturn(acknowledgedAfter(1400));
+
+        // Act
+        outboxRelay.relay();
+
+        // Assert
+        // each acknowledgement came within the timeout of the previous one, but not the chunk's
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(1L, 2L));
+    }
+
+    @Test
+    void relay_shouldRecordSendMetrics_andBackOffAfterFailure() {
+        // Arrange
+        when(outboxEventRepository.findByIdGreaterThanAndFailedAtIsNullOrderByIdAsc(0L, Limit.of(3)))
+                .thenReturn(List.of(outboxEvent(1L), outboxEvent(2L)));
+        when(kafkaTemplate.send(eq("booking-service-events"), isNull(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException("no leader")));
+
+        // Act
+        outboxRelay.relay();
+        outboxRelay.relay();
+
+        // Assert
+        verify(outboxEventRepository, times(1)).findByIdGreaterThanAndFailedAtIsNullOrderByIdAsc(anyLong(), any());
+        assertEquals(1, meterRegistry.get("booking.outbox.send")
+                .tags("topic", "booking-service-events", "outcome", "success").timer().count());
+        assertEquals(1.0, meterRegistry.get("booking.outbox.send.errors")
+                .tags("topic", "booking-service-events", "exception", "TimeoutException").counter().count());
+    }
+
+    @Test
+    void relay_shouldRecordEndToEndLag_forStampedEvents() {
+        // Arrange
+        OutboxEvent stamped = outboxEvent(1L);
+        stamped.setRecordTimestamp(System.currentTimeMillis() - 250);
+        when(outboxEventRepository.findByIdGreaterThanAndFailedAtIsNullOrderByIdAsc(0L, Limit.of(3)))
+                .thenReturn(List.of(stamped, outboxEvent(2L)));
+        when(kafkaTemplate.send(eq("booking-service-events"), isNull(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        // Act
+        outboxRelay.relay();
+
+        // Assert
+        assertEquals(1, meterRegistry.get("booking.saga.end-to-end")
+                .tags("topic", "booking-service-events").timer().count());
+        assertTrue(meterRegistry.get("booking.saga.end-to-end.lag").gauge().value() >= 250);
+    }
+
+    @Test
+    void relay_shouldSetAsideUnreadablePayload_andSendTheRest() {
+        // Arrange
+        OutboxEvent unreadable = outboxEvent(2L);
+        unreadable.setPayloadType("com.gui.car_rental_common.events.booking.RemovedEvent");
+        when(outboxEventRepository.findByIdGreaterThanAndFailedAtIsNullOrderByIdAsc(0L, Limit.of(3)))
+                .thenReturn(List.of(outboxEvent(1L), unreadable, outboxEvent(3L)));
+        when(kafkaTemplate.send(eq("booking-service-events"), isNull(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        // Act
+        outboxRelay.relay();
+
+        // Assert
+        verify(outboxEventRepository).markFailed(eq(2L), any(), contains("ClassNotFoundException"));
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(1L, 3L));
+        assertEquals(1.0, meterRegistry.get("booking.outbox.set-aside")
+                .tags("topic", "booking-service-events").counter().count());
+    }
+
+    @Test
+    void relay_shouldNotRead_whenAnotherInstanceHoldsTheLease() {
+        // Arrange
+        when(leaseRepository.acquire(anyString(), anyString(), any(), any())).thenReturn(0);
+
+        // Act
+        outboxRelay.relay();
+
+        // Assert
+        verify(outboxEventRepository, never()).findByIdGreaterThanAndFailedAtIsNullOrderByIdAsc(anyLong(), any());
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    private static <T> CompletableFuture<T> acknowledgedAfter(long millis) {
+        return CompletableFuture.supplyAsync(() -> null,
+                CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS));
+    }
+
+    private static OutboxEvent outboxEvent(Long id) {
+        OutboxEvent event = new OutboxEvent("booking-service-events", null,
+                BookingCreatedEvent.class.getName(), "{}");
+        event.setId(id);
+        return event;
+    }
+}
@@ -0,0 +1,161 @@
+package com.gui.car_rental_booking_service.services;
+
+import com.gui.car_rental_booking_service.service.PricingEngine;
+import com.gui.car_rental_booking_service.service.RateCalendar;
+import com.gui.car_rental_common.dtos.BookingDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.MonthDay;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PricingEngineUnitTest {
+
+    // a Monday
+    private static final LocalDate MONDAY = LocalDate.of(2025, 3, 3);
+
+    private PricingEngine pricingEngine;
+    private UUID carId;
+
+    @BeforeEach
+    void setUp() {
+        pricingEngine = new PricingEngine(BigDecimal.ONE, "", "");
+        carId = UUID.randomUUID();
+    }
+
+    @Test
+    void quote_shouldChargeDailyPriceForEachRentalDay() {
+        // Arrange
+        BookingDto bookingDto = bookingDto(new BigDecimal("89.90"), MONDAY.atTime(10, 0), MONDAY.plusDays(3).atTime(10, 0));
+
+        // Act
+        BigDecimal total = pricingEngine.quote(bookingDto);
+
+        // Assert
+        assertEquals(new BigDecimal("269.70"), total);
+    }
+
+    @Test
+    void quoteMinor_shouldChargeEachStarted24Hours() {
+        // Act
+        LocalDateTime start = MONDAY.atTime(10, 0);
+        long sameTimeNextDay = pricingEngine.quoteMinor(carId, 1_000, start, start.plusDays(1));
+        long minuteLate = pricingEngine.quoteMinor(carId, 1_000, start, start.plusDays(1).plusMinutes(1));
+        long overnight = pricingEngine.quoteMinor(carId, 1_000, MONDAY.atTime(18, 0), MONDAY.plusDays(1).atTime(9, 0));
+
+        // Assert
+        assertEquals(1_000, sameTimeNextDay);
+        assertEquals(2_000, minuteLate);
+        assertEquals(1_000, overnight);
+    }
+
+    @Test
+    void quoteMinor_shouldApplyWeekendMultiplierOnSaturdayAndSunday() {
+        // Arrange
+        pricingEngine.setRateCalendar(carId, RateCalendar.of(new BigDecimal("1.5"), List.of()));
+
+        // Act
+        long total = pricingEngine.quoteMinor(carId, 10_000, MONDAY.plusDays(4).atTime(9, 0), MONDAY.plusDays(7).atTime(9, 0));
+
+        // Assert
+        // Friday, Saturday, Sunday
+        assertEquals(10_000 + 15_000 + 15_000, total);
+        assertEquals(30_000, pricingEngine.quoteMinor(UUID.randomUUID(), 10_000,
+                MONDAY.plusDays(4).atTime(9, 0), MONDAY.plusDays(7).atTime(9, 0)));
+    }
+
+    @Test
+    void quoteMinor_shouldApplySeasonWrappingAroundNewYear() {
+        // Arrange
+        RateCalendar.Season holidays = RateCalendar.Season.parse("12-30/01-01:1.25");
+        pricingEngine.setRateCalendar(carId, RateCalendar.of(new BigDecimal("2"), List.of(holidays)));
+        LocalDateTime start = LocalDate.of(2025, 12, 29).atTime(12, 0);
+
+        // Act
+        long total = pricingEngine.quoteMinor(carId, 1_000, start, start.plusDays(4));
+
+        // Assert
+        // Mon 29 Dec, Tue 30 Dec, Wed 31 Dec, Thu 1 Jan
+        assertEquals(1_000 + 1_250 + 1_250 + 1_250, total);
+        assertEquals(MonthDay.of(12, 30), holidays.from());
+    }
+
+    @Test
+    void quoteMinor_shouldKeepSeasonOnSameDateInLeapYears() {
+        // Arrange
+        RateCalendar.Season march = new RateCalendar.Season(MonthDay.of(3, 1), MonthDay.of(3, 1), new BigDecimal("3"));
+        pricingEngine.setRateCalendar(carId, RateCalendar.of(BigDecimal.ONE, List.of(march)));
+
+        // Act
+        long leapYear = pricingEngine.quoteMinor(carId, 100, LocalDate.of(2028, 2, 28).atTime(8, 0),
+                LocalDate.of(2028, 3, 1).atTime(9, 0));
+        long commonYear = pricingEngine.quoteMinor(carId, 100, LocalDate.of(2027, 2, 28).atTime(8, 0),
+                LocalDate.of(2027, 3, 1).atTime(9, 0));
+
+        // Assert
+        assertEquals(100 + 100 + 300, leapYear);
+        assertEquals(100 + 300, commonYear);
+    }
+
+    @Test
+    void quote_shouldRoundFractionsOfCentsOnceOverTheRental() {
+        // Arrange
+        pricingEngine.setRateCalendar(carId, RateCalendar.of(BigDecimal.ONE,
+                List.of(RateCalendar.Season.parse("01-01/12-31:1.0005"))));
+
+        // Act
+        long total = pricingEngine.quoteMinor(carId, 1_001, MONDAY.atTime(10, 0), MONDAY.plusDays(10).atTime(10, 0));
+
+        // Assert
+        // 10 days of 1001.5005 cents
+        assertEquals(10_015, total);
+    }
+
+    @Test
+    void constructor_shouldLoadConfiguredCarCalendars() {
+        // Arrange
+        UUID otherCarId = UUID.randomUUID();
+        pricingEngine = new PricingEngine(BigDecimal.ONE, "",
+                carId + "=1.5, 03-03/03-03:2 ; " + otherCarId + "=1.2");
+
+        // Act
+        long total = pricingEngine.quoteMinor(carId, 1_000, MONDAY.atTime(10, 0),
+                MONDAY.plusDays(2).atTime(10, 0));
+        long otherTotal = pricingEngine.quoteMinor(otherCarId, 1_000, MONDAY.plusDays(5).atTime(10, 0),
+                MONDAY.plusDays(6).atTime(10, 0));
+
+        // Assert
+        // Monday 3 March in season, then a plain Tuesday; the other car's Saturday
+        assertEquals(2_000 + 1_000, total);
+        assertEquals(1_200, otherTotal);
+    }
+
+    @Test
+    void constructor_shouldRejectMalformedCarCalendar() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> new PricingEngine(BigDecimal.ONE, "", carId + "=,06-01/06-30:1.2"));
+        assertThrows(IllegalArgumentException.class, () -> new PricingEngine(BigDecimal.ONE, "", "not-a-car=1.2"));
+    }
+
+    @Test
+    void constructor_shouldRejectMalformedSeason() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> new PricingEngine(BigDecimal.ONE, "06-01:1.2", ""));
+    }
+
+    private BookingDto bookingDto(BigDecimal pricePerDay, LocalDateTime start, LocalDateTime end) {
+        BookingDto bookingDto = new BookingDto();
+        bookingDto.setCarId(carId);
+        bookingDto.setPricePerDay(pricePerDay);
+        bookingDto.setRentalStartDate(start);
+        bookingDto.setRentalEndDate(end);
+        return bookingDto;
+    }
+}